@@ -0,0 +1,97 @@
+/**
+   AdjacencyCounter
+      computes the number of adjacent mines of every square of a layout in one pass, for the MineField constructor
+      that takes a boolean[][] (MineField then keeps the counts up to date as mines are placed), and copies the
+      counts back out of MineField's packed cells for MineField.adjacentMineCounts.
+
+      Each row of counts is worked out from a vertical sum: for each column, the number of mines in that column in
+      the row above, the row itself and the row below.  The count of a square is then the vertical sums of its
+      column and the two beside it, minus 1 if the square itself has a mine -- three adds per square instead of
+      eight range-checked lookups.
+
+      The vertical and horizontal adds, and masking the counts out of the cells, are done with the Vector API by VectorAdjacencyCounter (in simd/), when that
+      class was compiled and the jdk.incubator.vector module is present:
+         javac --add-modules jdk.incubator.vector -d classes *.java simd/*.java
+         java --add-modules jdk.incubator.vector -cp classes MineSweeper
+      Otherwise the SCALAR version below, with the same algorithm, is used.
+ */
+
+interface AdjacencyCounter {
+
+   /**
+      The counter that doesn't need the Vector API.
+    */
+   AdjacencyCounter SCALAR = new AdjacencyCounter() {
+      public void count(boolean[][] mines, byte[] counts) {
+         int numRows = mines.length;
+         int numCols = mines[0].length;
+         byte[] columnSums = new byte[numCols + 2];        // vertical sum of column c at index c + 1
+         for (int row = 0; row < numRows; row++) {
+            boolean[] above = mines[Math.max(0, row - 1)];
+            boolean[] current = mines[row];
+            boolean[] below = mines[Math.min(numRows - 1, row + 1)];
+            int aboveWeight = (row > 0) ? 1 : 0;            // the first and last rows have no row above or below
+            int belowWeight = (row < numRows - 1) ? 1 : 0;
+            for (int col = 0; col < numCols; col++) {
+               columnSums[col + 1] = (byte) ((above[col] ? aboveWeight : 0) + (current[col] ? 1 : 0)
+                                             + (below[col] ? belowWeight : 0));
+            }
+            int rowStart = row * numCols;
+            for (int col = 0; col < numCols; col++) {
+               counts[rowStart + col] = (byte) (columnSums[col] + columnSums[col + 1] + columnSums[col + 2]
+                                                - (current[col] ? 1 : 0));
+            }
+         }
+      }
+
+      public void unpackCounts(byte[] cells, byte[] counts, int from, int length) {
+         for (int i = from; i < from + length; i++) {
+            counts[i] = (byte) (cells[i] & MineField.COUNT_MASK);
+         }
+      }
+   };
+
+
+   /**
+      The fastest counter available: VectorAdjacencyCounter if it can be loaded, otherwise SCALAR.
+    */
+   AdjacencyCounter BEST = Loader.best();
+
+
+   /**
+      Stores the number of adjacent mines of every square.
+      @param mines  the layout, true for a mine; all rows the same length, at least 1 x 1
+      @param counts  where the counts go, indexed by row * numCols + col; the count of a square with a mine is the
+                     number of mines next to it, as for MineField.numAdjacentMines
+    */
+   void count(boolean[][] mines, byte[] counts);
+
+
+   /**
+      Copies the adjacent mine counts out of packed cells: the low bits (MineField.COUNT_MASK) of each byte.
+      @param cells  row-major MineField cells
+      @param counts  where the counts go, at the same indexes as in cells
+      @param from  index of the first cell to copy
+      @param length  number of cells to copy
+    */
+   void unpackCounts(byte[] cells, byte[] counts, int from, int length);
+
+
+   /**
+      Picks BEST.
+    */
+   final class Loader {
+
+      private Loader() { }
+
+      private static AdjacencyCounter best() {
+         try {
+            return (AdjacencyCounter) Class.forName("VectorAdjacencyCounter").getDeclaredConstructor().newInstance();
+         }
+         catch (ReflectiveOperationException | LinkageError e) {   // not compiled, or the module isn't there
+            return SCALAR;
+         }
+      }
+   }
+
+}
@@ -0,0 +1,181 @@
+/**
+   BitboardFill
+      finds the squares a click on an empty square uncovers, for VisibleField's bitboard reveal mode, working on 64
+      squares at a time with shifts, ORs and ANDs instead of one square at a time.
+
+      The board is a bitboard: each row is numCols bits in (numCols + 63) / 64 longs, the square (row, col) being bit
+      col % 64 of word row * wordsPerRow + col / 64.  The fill takes two of them: zero, the squares with no mine and
+      no adjacent mines (MineField.zeroCountBits), and blocked, the squares uncovered or flagged MINE_GUESS (kept by
+      VisibleField).  The region is the 8-connected component of the clicked square in open = zero & ~blocked.
+
+      It is grown by sweeping down the rows and then up, until a sweep changes nothing.  In each row, the region
+      grows into the row from the region in the row before (that row dilated by one column each way, AND open), and
+      then along the row to the ends of the runs of open squares it touches -- at once, with the carry of an add (see
+      fillRuns).  So the number of sweeps depends on how winding the region is, not on how big it is.
+      Finally one more dilation of the region, AND ~blocked, adds the numbered squares around it.
+
+      As in squaresRecursiveFill, a MINE_GUESS or an uncovered square is never added, and stops the fill.
+ */
+
+import java.util.Arrays;
+
+final class BitboardFill {
+
+   private BitboardFill() { }
+
+
+   /**
+      @param numCols  number of columns of a board
+      @return number of longs per row of a bitboard of the board
+    */
+   static int wordsPerRow(int numCols) {
+      return (numCols + 63) >>> 6;
+   }
+
+
+   /**
+      Finds the squares that uncovering the empty square (row, col) uncovers.
+      @param zero  bitboard of the squares with no mine and no adjacent mines
+      @param blocked  bitboard of the squares uncovered or flagged MINE_GUESS
+      @param numRows  number of rows of the board
+      @param numCols  number of columns of the board
+      @param row  row of the square
+      @param col  column of the square
+      @return bitboard of the squares to uncover (none if (row, col) is blocked)
+      PRE: (row, col) has no mine and no adjacent mines
+    */
+   static long[] reveal(long[] zero, long[] blocked, int numRows, int numCols, int row, int col) {
+      int words = wordsPerRow(numCols);
+      long[] region = new long[numRows * words];
+      int start = row * words + (col >>> 6);
+      if ((blocked[start] & 1L << col) != 0) {
+         return region;
+      }
+      region[start] = 1L << col;
+
+      long[] open = new long[words];
+      long[] seeds = new long[words];
+      long[] filled = new long[words];
+      int firstRow = row;                     // the rows the region is in so far
+      int lastRow = row;
+      boolean changed = true;
+      while (changed) {
+         changed = false;
+         for (int sweep = 0; sweep < 2; sweep++) {
+            boolean down = sweep == 0;
+            for (int r = down ? firstRow : lastRow;
+                 down ? r < numRows : r >= 0; r += down ? 1 : -1) {
+               int neighbourRow = down ? r - 1 : r + 1;
+               boolean fromNeighbour = neighbourRow >= 0 && neighbourRow < numRows
+                                       && !isEmpty(region, neighbourRow * words, words);
+               if (!fromNeighbour && isEmpty(region, r * words, words)) {
+                  if ((down && r > lastRow) || (!down && r < firstRow)) {
+                     break;                   // past the region, nothing more to grow into this way
+                  }
+                  continue;
+               }
+               for (int w = 0; w < words; w++) {
+                  open[w] = zero[r * words + w] & ~blocked[r * words + w];
+                  seeds[w] = region[r * words + w];
+               }
+               if (fromNeighbour) {
+                  dilateInto(region, neighbourRow * words, words, seeds);
+               }
+               for (int w = 0; w < words; w++) {
+                  seeds[w] &= open[w];
+               }
+               fillRuns(seeds, open, filled, words);
+               for (int w = 0; w < words; w++) {
+                  if (filled[w] != region[r * words + w]) {
+                     region[r * words + w] = filled[w];
+                     changed = true;
+                  }
+               }
+               if (!isEmpty(region, r * words, words)) {
+                  firstRow = Math.min(firstRow, r);
+                  lastRow = Math.max(lastRow, r);
+               }
+            }
+         }
+      }
+
+      // the numbered squares (and nothing else: every open neighbour is in the region already) around the region
+      long[] squares = region.clone();
+      long[] around = new long[words];
+      for (int r = Math.max(0, firstRow - 1); r <= Math.min(numRows - 1, lastRow + 1); r++) {
+         Arrays.fill(around, 0);
+         for (int i = Math.max(0, r - 1); i <= Math.min(numRows - 1, r + 1); i++) {
+            dilateInto(region, i * words, words, around);
+         }
+         for (int w = 0; w < words; w++) {
+            squares[r * words + w] |= around[w] & ~blocked[r * words + w];
+         }
+      }
+      clearPadding(squares, numRows, numCols);
+      return squares;
+   }
+
+
+   // whether words [offset, offset + words) of bits are all 0
+   private static boolean isEmpty(long[] bits, int offset, int words) {
+      for (int w = 0; w < words; w++) {
+         if (bits[offset + w] != 0) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+
+   // ORs the row at bits [offset ..], and the same row shifted one column left and one right, into dest
+   private static void dilateInto(long[] bits, int offset, int words, long[] dest) {
+      for (int w = 0; w < words; w++) {
+         long word = bits[offset + w];
+         long fromLeft = (w > 0) ? bits[offset + w - 1] >>> 63 : 0;         // column 64w - 1 spreads to 64w
+         long fromRight = (w < words - 1) ? bits[offset + w + 1] << 63 : 0;  // column 64w + 64 spreads to 64w + 63
+         dest[w] |= word | word << 1 | fromLeft | word >>> 1 | fromRight;
+      }
+   }
+
+
+   /*
+      Sets filled to the runs of consecutive set bits of mask (across words) that have a bit of seeds in them.
+      Adding a seed bit to a run carries up to the end of the run, flipping every bit from the seed to there, so
+      ((mask + seeds) ^ mask) & mask, with the carry passed on from word to word, is each run from its lowest seed
+      up (OR seeds, where two seeds' carries meet); doing the same with the bits reversed gives each run from its
+      highest seed down.  PRE: seeds is a subset of mask
+    */
+   private static void fillRuns(long[] seeds, long[] mask, long[] filled, int words) {
+      long carry = 0;
+      for (int w = 0; w < words; w++) {
+         long sum = mask[w] + seeds[w];
+         long carryOut = Long.compareUnsigned(sum, mask[w]) < 0 ? 1 : 0;
+         long total = sum + carry;
+         carryOut |= (carry != 0 && total == 0) ? 1 : 0;
+         filled[w] = ((total ^ mask[w]) | seeds[w]) & mask[w];
+         carry = carryOut;
+      }
+      carry = 0;
+      for (int w = words - 1; w >= 0; w--) {
+         long reversedMask = Long.reverse(mask[w]);
+         long reversedSeeds = Long.reverse(seeds[w]);
+         long sum = reversedMask + reversedSeeds;
+         long carryOut = Long.compareUnsigned(sum, reversedMask) < 0 ? 1 : 0;
+         long total = sum + carry;
+         carryOut |= (carry != 0 && total == 0) ? 1 : 0;
+         filled[w] |= Long.reverse(((total ^ reversedMask) | reversedSeeds) & reversedMask);
+         carry = carryOut;
+      }
+   }
+
+
+   // clears the bits past numCols in the last word of each row (a dilation can spread into them)
+   private static void clearPadding(long[] bits, int numRows, int numCols) {
+      int words = wordsPerRow(numCols);
+      long lastWordMask = (numCols % 64 == 0) ? -1L : (1L << numCols % 64) - 1;
+      for (int r = 0; r < numRows; r++) {
+         bits[r * words + words - 1] &= lastWordMask;
+      }
+   }
+
+}
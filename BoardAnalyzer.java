@@ -0,0 +1,240 @@
+/**
+   BoardAnalyzer
+      measures how hard a mine field is, with the standard 3BV measure: the minimum number of left clicks needed
+      to uncover all the non-mine squares.  Each opening (a connected region of squares with no adjacent mines,
+      together with the numbered squares around it) takes one click, and so does each numbered square that isn't
+      next to any opening (an isolated number).  So 3BV = openings + isolated numbers.
+
+      The openings are labeled with union-find in one row-by-row pass over the adjacent mine counts, without
+      playing the board out with VisibleField.
+
+      Batch mode scores many seeded random boards in parallel and writes the results, in seed order, as CSV:
+         java BoardAnalyzer numRows numCols numMines numBoards [firstSeed [outputFile]]
+      Each board is MineField(numRows, numCols, numMines, seed) populated with the first click in the middle of the
+      board.  Without an output file the CSV goes to standard output.
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public final class BoardAnalyzer {
+
+   private static final int BOARDS_PER_TASK = 256;
+   private static final String CSV_HEADER = "seed,rows,cols,mines,3bv,openings,isolated_numbers";
+
+
+   /**
+      The difficulty measures of one board.
+    */
+   public static final class Result {
+
+      private final int openings;
+      private final int isolatedNumbers;
+
+      private Result(int openings, int isolatedNumbers) {
+         this.openings = openings;
+         this.isolatedNumbers = isolatedNumbers;
+      }
+
+      /** @return the minimum number of clicks needed to clear the board */
+      public int threeBV() { return openings + isolatedNumbers; }
+
+      /** @return the number of connected regions of squares with no adjacent mines */
+      public int openings() { return openings; }
+
+      /** @return the number of numbered squares that are not next to any opening */
+      public int isolatedNumbers() { return isolatedNumbers; }
+
+      public String toString() {
+         return "3BV " + threeBV() + " (" + openings + " openings, " + isolatedNumbers + " isolated numbers)";
+      }
+   }
+
+
+   private BoardAnalyzer() { }
+
+
+   /**
+      Computes the difficulty measures of a mine field, using the mines currently in it.
+      @param field  the mine field
+      @return its 3BV, number of openings and number of isolated numbers
+    */
+   public static Result analyze(MineField field) {
+      int numRows = field.numRows();
+      int numCols = field.numCols();
+      byte[] counts = adjacentMineCounts(field);       // -1 for a mine
+
+      // union-find over the empty squares (no adjacent mines), indexed by row * numCols + col; only the entries
+      // of empty squares are used.  Each empty square is joined with its empty neighbors already visited.
+      int[] parent = new int[numRows * numCols];
+      int openings = 0;
+      for (int row = 0; row < numRows; row++) {
+         for (int col = 0; col < numCols; col++) {
+            int square = row * numCols + col;
+            if (counts[square] != 0) {
+               continue;
+            }
+            parent[square] = square;
+            openings++;
+            if (col > 0 && counts[square - 1] == 0) {
+               openings -= union(parent, square, square - 1);
+            }
+            if (row > 0) {
+               for (int neighbor = Math.max(0, col - 1); neighbor <= Math.min(numCols - 1, col + 1); neighbor++) {
+                  int above = square - numCols + neighbor - col;
+                  if (counts[above] == 0) {
+                     openings -= union(parent, square, above);
+                  }
+               }
+            }
+         }
+      }
+
+      int isolatedNumbers = 0;
+      for (int row = 0; row < numRows; row++) {
+         for (int col = 0; col < numCols; col++) {
+            if (counts[row * numCols + col] > 0 && !nextToEmptySquare(counts, numRows, numCols, row, col)) {
+               isolatedNumbers++;
+            }
+         }
+      }
+      return new Result(openings, isolatedNumbers);
+   }
+
+
+   /**
+      Batch mode (see class comment).
+    */
+   public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+      if (args.length < 4 || args.length > 6) {
+         System.err.println("usage: java BoardAnalyzer numRows numCols numMines numBoards [firstSeed [outputFile]]");
+         System.exit(1);
+      }
+      int numRows = Integer.parseInt(args[0]);
+      int numCols = Integer.parseInt(args[1]);
+      int numMines = Integer.parseInt(args[2]);
+      long numBoards = Long.parseLong(args[3]);
+      long firstSeed = (args.length > 4) ? Long.parseLong(args[4]) : 0;
+
+      Writer out = (args.length > 5) ? Files.newBufferedWriter(Paths.get(args[5]), StandardCharsets.UTF_8)
+                                     : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+      try {
+         analyzeSeeds(numRows, numCols, numMines, firstSeed, numBoards, out);
+      }
+      finally {
+         out.close();
+      }
+   }
+
+
+   /**
+      Scores the boards for seeds firstSeed ... firstSeed + numBoards - 1 on all processors, writing one CSV line
+      per board in seed order.  Only a few tasks' worth of results are held in memory at a time.
+      @param out  where the CSV goes (with a header line first)
+    */
+   public static void analyzeSeeds(final int numRows, final int numCols, final int numMines, long firstSeed,
+                                   long numBoards, Writer out)
+                                   throws IOException, InterruptedException, ExecutionException {
+      int numThreads = Runtime.getRuntime().availableProcessors();
+      ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+      Queue<Future<String>> pending = new ArrayDeque<Future<String>>();
+      out.write(CSV_HEADER + "\n");
+      try {
+         for (long start = firstSeed; start < firstSeed + numBoards; start += BOARDS_PER_TASK) {
+            final long taskStart = start;
+            final long taskEnd = Math.min(start + BOARDS_PER_TASK, firstSeed + numBoards);
+            pending.add(pool.submit(new Callable<String>() {
+               public String call() {
+                  return analyzeSeedRange(numRows, numCols, numMines, taskStart, taskEnd);
+               }
+            }));
+            if (pending.size() >= 2 * numThreads) {      // keep the pool busy, but write results as they're ready
+               out.write(pending.remove().get());
+            }
+         }
+         while (!pending.isEmpty()) {
+            out.write(pending.remove().get());
+         }
+      }
+      finally {
+         pool.shutdownNow();
+      }
+   }
+
+
+   // CSV lines for seeds [start, end)
+   private static String analyzeSeedRange(int numRows, int numCols, int numMines, long start, long end) {
+      StringBuilder lines = new StringBuilder();
+      for (long seed = start; seed < end; seed++) {
+         MineField field = new MineField(numRows, numCols, numMines, seed);
+         field.populateMineField(numRows / 2, numCols / 2);
+         Result result = analyze(field);
+         lines.append(seed).append(',').append(numRows).append(',').append(numCols).append(',').append(numMines)
+              .append(',').append(result.threeBV()).append(',').append(result.openings())
+              .append(',').append(result.isolatedNumbers()).append('\n');
+      }
+      return lines.toString();
+   }
+
+
+   // adjacent mine count of every square, row by row, with -1 for the squares that have a mine
+   private static byte[] adjacentMineCounts(MineField field) {
+      byte[] counts = field.adjacentMineCounts();
+      int square = 0;
+      for (int row = 0; row < field.numRows(); row++) {
+         for (int col = 0; col < field.numCols(); col++, square++) {
+            if (field.hasMine(row, col)) {
+               counts[square] = -1;
+            }
+         }
+      }
+      return counts;
+   }
+
+
+   private static boolean nextToEmptySquare(byte[] counts, int numRows, int numCols, int row, int col) {
+      for (int i = Math.max(0, row - 1); i <= Math.min(numRows - 1, row + 1); i++) {
+         for (int j = Math.max(0, col - 1); j <= Math.min(numCols - 1, col + 1); j++) {
+            if (counts[i * numCols + j] == 0) {
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+
+
+   // root of the set containing square, halving the path on the way
+   private static int find(int[] parent, int square) {
+      while (parent[square] != square) {
+         parent[square] = parent[parent[square]];
+         square = parent[square];
+      }
+      return square;
+   }
+
+
+   // joins the sets of two squares; returns 1 if they were different sets, 0 if they were already the same
+   private static int union(int[] parent, int a, int b) {
+      int rootA = find(parent, a);
+      int rootB = find(parent, b);
+      if (rootA == rootB) {
+         return 0;
+      }
+      parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+      return 1;
+   }
+
+}
@@ -0,0 +1,167 @@
+/**
+   BoardPool
+      random boards of one size, generated ahead of time on background threads, so starting a game on an expensive
+      board (a huge one, say) doesn't wait for populateMineField on the event dispatch thread.
+
+      A board's mines can't be placed before the first click is known, so each board is populated avoiding a random
+      square of its own, its safe square.  On the first click, if the square clicked has a mine, that one mine is
+      moved to the safe square (MineField.relocateMine: O(1), plus relabeling the openings next to the two squares).  The layouts that come out are still uniform over
+      all the layouts with no mine on the square clicked: a layout with no mine on the safe square is only made by
+      populating it as it is, and one with a mine there only by populating it with that mine on the square clicked
+      instead, and both happen with the same probability.
+
+      The producers also label the openings of each board and work out its zero count bits (see MineField
+      openingOf and zeroCountBits), which relocateMine keeps up to date, so the first click on a pooled board
+      doesn't label the whole board either.
+
+      The boards wait in a bounded queue: the producers block while it's full.  poll() never waits, take() generates
+      a board itself (on the calling thread) if none is ready, and waitForBoard() waits for the producers, for
+      callers off the event dispatch thread.  Each board comes with a VisibleField on it, created by the producer
+      too; the queue hands both over safely to the thread that takes them.
+ */
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+final class BoardPool {
+
+   private final int numRows;
+   private final int numCols;
+   private final int numMines;
+   private final BlockingQueue<Board> boards;
+   private final Thread[] producers;
+   private volatile boolean isShutDown = false;
+
+   private static final long SHUTDOWN_CHECK_MILLIS = 100;    // how often waitForBoard checks for a shutdown
+
+
+   /**
+      Create the pool, and start generating boards.
+      @param numRows  number of rows of the boards, must be positive
+      @param numCols  number of columns of the boards, must be positive
+      @param numMines  number of mines of the boards
+      @param capacity  how many boards to keep ready, must be positive
+      @param numThreads  how many threads generate boards, must be positive
+      PRE: numMines < 1/3 of the number of squares
+    */
+   BoardPool(int numRows, int numCols, int numMines, int capacity, int numThreads) {
+      this.numRows = numRows;
+      this.numCols = numCols;
+      this.numMines = numMines;
+      boards = new ArrayBlockingQueue<Board>(capacity);
+      producers = new Thread[numThreads];
+      for (int i = 0; i < numThreads; i++) {
+         producers[i] = new Thread(new Runnable() {
+            public void run() {
+               try {
+                  while (true) {
+                     boards.put(generate());
+                  }
+               }
+               catch (InterruptedException e) {
+                  // shut down
+               }
+            }
+         }, "BoardPool " + i);
+         producers[i].setDaemon(true);               // don't keep the program running
+         producers[i].setPriority(Thread.MIN_PRIORITY);
+         producers[i].start();
+      }
+   }
+
+
+   /**
+      Takes a board ready to play: all covered, the mines placed except for the first click (see Board.firstClick).
+      @return the board; generated now if none is ready
+    */
+   Board take() {
+      Board board = boards.poll();
+      return (board != null) ? board : generate();
+   }
+
+
+   /**
+      Takes a board if one is ready (see take).
+      @return the board, or null if none is ready
+    */
+   Board poll() {
+      return boards.poll();
+   }
+
+
+   /**
+      Takes a board (see take), waiting for the producers to finish one if none is ready, or generating it on the
+      calling thread once the pool is shut down.  Can take as long as generating a board, so not for the event
+      dispatch thread.
+      @return the board
+      @throws InterruptedException  if interrupted while waiting
+    */
+   Board waitForBoard() throws InterruptedException {
+      while (!isShutDown) {
+         Board board = boards.poll(SHUTDOWN_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+         if (board != null) {
+            return board;
+         }
+      }
+      return generate();
+   }
+
+
+   /**
+      Stops generating boards (a board being generated is finished, then dropped).
+    */
+   void shutdown() {
+      isShutDown = true;
+      for (Thread producer : producers) {
+         producer.interrupt();
+      }
+      boards.clear();
+   }
+
+
+   private Board generate() {
+      int safeRow = ThreadLocalRandom.current().nextInt(numRows);
+      int safeCol = ThreadLocalRandom.current().nextInt(numCols);
+      MineField mineField = new MineField(numRows, numCols, numMines);
+      mineField.populateMineField(safeRow, safeCol);
+      mineField.openingOf(safeRow, safeCol);        // labels the openings, here rather than on the first click
+      mineField.zeroCountBits();
+      return new Board(new VisibleField(mineField), safeRow, safeCol);
+   }
+
+
+   /**
+      A board from the pool: a VisibleField on a populated MineField, and the square its mines avoid.
+    */
+   static final class Board {
+
+      private final VisibleField visibleField;
+      private final int safeRow;
+      private final int safeCol;
+
+      private Board(VisibleField visibleField, int safeRow, int safeCol) {
+         this.visibleField = visibleField;
+         this.safeRow = safeRow;
+         this.safeCol = safeCol;
+      }
+
+      /** @return the field to play on */
+      VisibleField visibleField() { return visibleField; }
+
+      /**
+         Makes sure there's no mine on the first square clicked, by moving a mine there to the safe square.
+         Call it before uncovering the square.
+         @param row  row of the square
+         @param col  column of the square
+       */
+      void firstClick(int row, int col) {
+         MineField mineField = visibleField.getMineField();
+         if (mineField.hasMine(row, col)) {
+            mineField.relocateMine(row, col, safeRow, safeCol);
+         }
+      }
+   }
+
+}
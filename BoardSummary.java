@@ -0,0 +1,178 @@
+/**
+   BoardSummary class
+   Per-block counts of the uncovered and the flagged (MINE_GUESS) squares of a VisibleField, at several levels of
+   detail, for drawing huge boards zoomed out.  At level L the board is cut into blocks of 2^L x 2^L squares
+   (blocks on the bottom and right edges may be smaller).  Levels go from FIRST_LEVEL up to the first level where one
+   block covers the whole board, so a block of any size can be looked up in O(1).
+
+   The counts are not updated by VisibleField itself; the owner calls update() for each square that changes,
+   clear() when the field is reset, and rebuild() only to catch up with a field it didn't follow.  Memory use is about 2/3 of a byte per square.
+ */
+
+import java.util.Arrays;
+
+class BoardSummary {
+
+   public static final int FIRST_LEVEL = 2;     // smallest blocks are 4 x 4 squares
+
+   private final VisibleField visibleField;
+   private final int numRows;
+   private final int numCols;
+
+   // indexed by [level - FIRST_LEVEL][blockRow * blocksAcross[level - FIRST_LEVEL] + blockCol]
+   private final int[][] uncovered;
+   private final int[][] flagged;
+   private final int[] blocksAcross;
+
+
+   /**
+      Create the summary for a visible field.  The counts are all zero until rebuild() is called.
+      @param visibleField  the field to summarize
+    */
+   public BoardSummary(VisibleField visibleField) {
+      this.visibleField = visibleField;
+      numRows = visibleField.getMineField().numRows();
+      numCols = visibleField.getMineField().numCols();
+
+      int numLevels = 1;
+      while (Math.max(numRows, numCols) > (1 << (FIRST_LEVEL + numLevels - 1))) {
+         numLevels++;
+      }
+      uncovered = new int[numLevels][];
+      flagged = new int[numLevels][];
+      blocksAcross = new int[numLevels];
+      for (int i = 0; i < numLevels; i++) {
+         int level = FIRST_LEVEL + i;
+         blocksAcross[i] = blocksIn(numCols, level);
+         uncovered[i] = new int[blocksAcross[i] * blocksIn(numRows, level)];
+         flagged[i] = new int[uncovered[i].length];
+      }
+   }
+
+
+   /**
+      Recompute all the counts from the VisibleField: one pass over the squares, then one pass over the blocks of
+      each level to combine them into the next.
+    */
+   public void rebuild() {
+      int[] firstUncovered = uncovered[0];
+      int[] firstFlagged = flagged[0];
+      Arrays.fill(firstUncovered, 0);
+      Arrays.fill(firstFlagged, 0);
+      for (int row = 0; row < numRows; row++) {
+         int rowStart = (row >> FIRST_LEVEL) * blocksAcross[0];
+         for (int col = 0; col < numCols; col++) {
+            int status = visibleField.getStatus(row, col);
+            if (status >= 0) {
+               firstUncovered[rowStart + (col >> FIRST_LEVEL)]++;
+            }
+            else if (status == VisibleField.MINE_GUESS) {
+               firstFlagged[rowStart + (col >> FIRST_LEVEL)]++;
+            }
+         }
+      }
+      for (int i = 1; i < uncovered.length; i++) {
+         combine(uncovered[i - 1], uncovered[i], i);
+         combine(flagged[i - 1], flagged[i], i);
+      }
+   }
+
+
+   /**
+      Set all the counts to zero, as for a field with every square covered (e.g., after resetGameDisplay).
+      O(number of blocks), with no pass over the squares.
+    */
+   public void clear() {
+      for (int i = 0; i < uncovered.length; i++) {
+         Arrays.fill(uncovered[i], 0);
+         Arrays.fill(flagged[i], 0);
+      }
+   }
+
+
+   /**
+      Update the counts for one square whose status changed.  O(number of levels).
+      @param row  row of the square
+      @param col  column of the square
+      @param oldStatus  its status before the change
+      @param newStatus  its status after the change
+    */
+   public void update(int row, int col, int oldStatus, int newStatus) {
+      int uncoveredChange = (newStatus >= 0 ? 1 : 0) - (oldStatus >= 0 ? 1 : 0);
+      int flaggedChange = (newStatus == VisibleField.MINE_GUESS ? 1 : 0) - (oldStatus == VisibleField.MINE_GUESS ? 1 : 0);
+      if (uncoveredChange == 0 && flaggedChange == 0) {
+         return;
+      }
+      for (int i = 0; i < uncovered.length; i++) {
+         int level = FIRST_LEVEL + i;
+         int block = (row >> level) * blocksAcross[i] + (col >> level);
+         uncovered[i][block] += uncoveredChange;
+         flagged[i][block] += flaggedChange;
+      }
+   }
+
+
+   /**
+      Returns the highest level, where a single block covers the whole board.
+      @return the top level
+    */
+   public int topLevel() {
+      return FIRST_LEVEL + uncovered.length - 1;
+   }
+
+
+   /**
+      Returns the number of uncovered squares in a block.
+      @param level  level of the block, in [FIRST_LEVEL, topLevel()]
+      @param blockRow  row of the block at that level (i.e., row >> level for any square row in it)
+      @param blockCol  column of the block at that level
+      @return the number of squares in the block that are uncovered
+    */
+   public int uncovered(int level, int blockRow, int blockCol) {
+      int i = level - FIRST_LEVEL;
+      return uncovered[i][blockRow * blocksAcross[i] + blockCol];
+   }
+
+
+   /**
+      Returns the number of squares with status MINE_GUESS in a block.
+      (see uncovered(level, blockRow, blockCol) for the parameters)
+      @return the number of flagged squares in the block
+    */
+   public int flagged(int level, int blockRow, int blockCol) {
+      int i = level - FIRST_LEVEL;
+      return flagged[i][blockRow * blocksAcross[i] + blockCol];
+   }
+
+
+   /**
+      Returns the number of squares of the board in a block (less than 4^level for blocks on the bottom and right
+      edges).  (see uncovered(level, blockRow, blockCol) for the parameters)
+      @return the number of squares in the block
+    */
+   public int squaresIn(int level, int blockRow, int blockCol) {
+      int height = Math.min(1 << level, numRows - (blockRow << level));
+      int width = Math.min(1 << level, numCols - (blockCol << level));
+      return height * width;
+   }
+
+
+   // sums each 2 x 2 group of blocks of the level below into one block of level (FIRST_LEVEL + i)
+   private void combine(int[] below, int[] counts, int i) {
+      Arrays.fill(counts, 0);
+      int belowAcross = blocksAcross[i - 1];
+      int belowDown = below.length / belowAcross;
+      for (int blockRow = 0; blockRow < belowDown; blockRow++) {
+         int rowStart = (blockRow >> 1) * blocksAcross[i];
+         for (int blockCol = 0; blockCol < belowAcross; blockCol++) {
+            counts[rowStart + (blockCol >> 1)] += below[blockRow * belowAcross + blockCol];
+         }
+      }
+   }
+
+
+   private static int blocksIn(int numSquares, int level) {
+      return ((numSquares - 1) >> level) + 1;
+   }
+
+}
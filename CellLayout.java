@@ -0,0 +1,72 @@
+/**
+   CellLayout
+      the order a MineField (and the VisibleFields on it) store the squares of the board in, chosen when the
+      MineField is created.  The layout only changes where a square's byte is; squares are still numbered
+      row * numCols + col everywhere else (listeners, zobristKey, openings).
+
+      With ROW_MAJOR the squares above and below a square are a whole row away, so on a wide board a flood fill or a
+      3 x 3 neighbourhood read touches three distant cache lines (and, past a few thousand columns, pages).  TILED
+      and MORTON store the board as 8 x 8 tiles of 64 bytes (one cache line), tiles in row-major order, so most
+      neighbours are in the same line.  Inside a tile, TILED is row-major and MORTON is Z-order.  Each tile is also
+      exactly one TileEpochs tile, so a reset-and-refresh clears one cache line.  The tiled layouts pad the board to
+      a multiple of 8 rows and columns.
+
+      LayoutBenchmark compares them.
+ */
+
+public enum CellLayout {
+
+   /** Squares in row-major order, with no padding */
+   ROW_MAJOR {
+      int index(int row, int col, int numCols) { return row * numCols + col; }
+      int size(int numRows, int numCols) { return numRows * numCols; }
+   },
+
+   /** 8 x 8 tiles in row-major order, each row-major inside */
+   TILED {
+      int index(int row, int col, int numCols) {
+         return tileStart(row, col, numCols) | (row & 7) << 3 | (col & 7);
+      }
+      int size(int numRows, int numCols) { return tiledSize(numRows, numCols); }
+   },
+
+   /** 8 x 8 tiles in row-major order, each in Z-order (Morton order) inside */
+   MORTON {
+      int index(int row, int col, int numCols) {
+         return tileStart(row, col, numCols) | SPREAD_BITS[row & 7] << 1 | SPREAD_BITS[col & 7];
+      }
+      int size(int numRows, int numCols) { return tiledSize(numRows, numCols); }
+   };
+
+
+   // the 3 bits of i spread out to bits 0, 2 and 4, to interleave a row and a column
+   private static final int[] SPREAD_BITS = {0, 1, 4, 5, 16, 17, 20, 21};
+
+
+   /**
+      @param row  row of a square
+      @param col  column of a square
+      @param numCols  number of columns of the board
+      @return where the square is stored, in [0, size(numRows, numCols))
+    */
+   abstract int index(int row, int col, int numCols);
+
+
+   /**
+      @param numRows  number of rows of the board
+      @param numCols  number of columns of the board
+      @return the length of the array that holds the board, including any padding
+    */
+   abstract int size(int numRows, int numCols);
+
+
+   private static int tileStart(int row, int col, int numCols) {
+      return ((row >> 3) * ((numCols + 7) >> 3) + (col >> 3)) << 6;
+   }
+
+
+   private static int tiledSize(int numRows, int numCols) {
+      return ((numRows + 7) >> 3) * ((numCols + 7) >> 3) << 6;
+   }
+
+}
@@ -1,20 +1,40 @@
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
 import java.awt.GridLayout;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSlider;
+import javax.swing.JViewport;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.border.Border;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 /**
    GameBoardPanel class
@@ -40,26 +60,56 @@ class GameBoardPanel extends JPanel {
       Design of the GameBoardPanel:
       The game data (Model) is in the visibleField instance variable (and the underlying minefield in 
       visibleField().getMineField()).
-      Contains inner classes SquareView (a JLabel) and SquareListener (a MouseListener for that label), 
-      which are the View and Controller, respectively, for an individual square (one instance of each of these 
-      is created for each square on the board).  
+      Contains inner classes BoardView (a JComponent that draws all the squares) and BoardListener (a MouseListener
+      for that component), which are the View and Controller, respectively, for the squares on the board.  
+      BoardView paints each square by copying a pre-rendered image for its status from a TileImageCache, so a
+      repaint is one drawImage call per visible square.
+      The board is in a scroll pane and can be zoomed (ctrl + mouse wheel) down to one pixel per square.  When the 
+      squares are too small to show their status, BoardView paints blocks of squares shaded by how much of each block
+      is uncovered, from a BoardSummary, instead of individual squares.  For big boards, the MinimapView inner class
+      shows the whole board (also from the BoardSummary) and where the visible part is; clicking it scrolls there.
       The Model for a single square is not a separate class, but is collectively part of visibleField and can be
       accessed using VisibleField methods getStatus(row, col) and isCovered(row, col), and can be mutated with
       VisibleField methods cycleGuess(row, col) and uncover(row, col) [the last of these can change more than one 
       square]
+      The View doesn't poll the Model after a move: the ModelListener inner class is told by visibleField which 
+      squares each move changed, updates their block counts, and hands them to a RepaintScheduler.
+      That collects the changed squares of any number of moves and repaints them at most once per display frame,
+      so fast input (replays, bots) doesn't flood the event dispatch thread with repaints.
+      Big random games are played on boards from a BoardPool, which places the mines of the next boards ahead of time
+      on a background thread; a new game then swaps in a new visibleField instead of resetting this one.  If no
+      board is ready yet (e.g., for the first game), a SwingWorker waits for one, and meanwhile the board shows all
+      covered and doesn't respond to clicks, so the event dispatch thread never generates a big board itself.
+      Every game played is recorded (see getRecording).  A GameBoardPanel created from a GameRecording is in 
+      playback mode instead: the board doesn't respond to clicks, and the ReplayControls inner class plays the moves
+      back with a GameReplay, at 1x to 1000x speed, with a slider to seek anywhere in the game.
     */
       
    private static final int BORDER_THICKNESS = 1;
-   private static final Border COVERED_BORDER = BorderFactory.createRaisedBevelBorder();
-   private static final Border UNCOVERED_BORDER = BorderFactory.createLoweredBevelBorder();
+   
+   // square sizes the user can zoom through; below MIN_TILE_SQUARE_SIZE we show blocks of squares instead
+   private static final int[] ZOOM_LEVELS = {1, 2, 3, 4, 5, 6, 8, 10, 12, 16, 20, 25, 32, 40, 48};
+   private static final int MIN_TILE_SQUARE_SIZE = 6;
+   private static final int MIN_BLOCK_PIXELS = 8;          // zoomed out, blocks are painted at least this size
+   
+   private static final int MINIMAP_SIZE = 200;            // length of the longer side of the minimap
+   private static final int MINIMAP_MIN_SIDE = 64;         // boards with a side this long or longer get a minimap
+   private static final int DEFAULT_FRAMES_PER_SECOND = 60;           // if the display's refresh rate is unknown
+   private static final int PARALLEL_REVEAL_SQUARES = 1 << 20;        // boards this big open regions in parallel
+   private static final int POOLED_BOARD_SQUARES = 1 << 20;           // random boards this big are made ahead of time
+   private static final int BOARD_POOL_CAPACITY = 2;
+   private static final Integer[] REPLAY_SPEEDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000};  // times real time
+   
+   // colors for a block of squares: [shade] for 0/SHADES .. SHADES/SHADES uncovered, [SHADES + 1 + shade] if any
+   // square in it has a mine guess
+   private static final int SHADES = 16;
+   private static final Color COVERED_BLOCK_COLOR = new Color(150, 150, 150);
+   private static final Color UNCOVERED_BLOCK_COLOR = new Color(235, 235, 235);
+   private static final Color FLAGGED_BLOCK_COLOR = Color.YELLOW;
+   private static final Color VIEWPORT_OUTLINE_COLOR = Color.RED;
+   private static final Color[] BLOCK_COLORS = blockColors();
 
    private static final Border PADDING = BorderFactory.createEmptyBorder(10, 10, 10, 10);
-   private static final Font DEFAULT_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 24);
-   private static final Font INCORRECT_GUESS_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 36);
-
-   private static final Color EXPLODED_MINE_COLOR = Color.RED;
-   private static final Color MINE_COLOR = Color.BLACK;
-   private static final Color MINE_GUESS_COLOR = Color.YELLOW;
    
    // these two files need to be in a subdir of the location of the .class files
    private static final String HAPPY_ICON_FILE_NAME = "images/facesmile.gif";
@@ -71,6 +121,7 @@ class GameBoardPanel extends JPanel {
    private static final String GAME_STATUS_TOOLTIP_TEXT = "displays whether you won or lost";
    private static final String MINE_GUESS_TOOLTIP_TEXT = "number of mines left to guess";
    private static final String NEW_GAME_TOOLTIP_TEXT = "new game";
+   private static final String PREPARING_BOARD_TEXT = "Preparing board...";
    
    private static final Border TOP_LABEL_BORDER = BorderFactory.createLineBorder(Color.black);
    private static final Border EMPTY_BORDER = BorderFactory.createEmptyBorder();
@@ -80,8 +131,14 @@ class GameBoardPanel extends JPanel {
    private JButton newGameButton;
    private JLabel gameStatusLabel;
   
-   // Grid of "buttons" (actually JLabels)
-   private SquareView[][] mySquares;  // need so we can update display en masse
+   // Grid of "buttons" (all drawn by one component)
+   private BoardView board;
+   private JScrollPane boardScrollPane;
+   private MinimapView minimap;      // null for boards that are small enough not to need one
+   private final RepaintScheduler repaints = new RepaintScheduler(new BoardRepaints(), framesPerSecond());
+   
+   // block counts for drawing zoomed out; rebuilt when needed after the Model changed
+   private BoardSummary summary;
 
    private VisibleField visibleField;     // game data (the Model in MVC)
    
@@ -89,6 +146,19 @@ class GameBoardPanel extends JPanel {
                                  // so we can guarantee it's not a mine, by generating the mines after this click.
    
    private boolean isRandomMineField;    // also can play the game with a fixed mine field
+   private boolean relocatesFirstMine;   // for a fixed mine field: a mine on the first square opened moves away
+   
+   private BoardPool boardPool;          // makes the boards of a big random game ahead of time; null if not used
+   private BoardPool.Board pooledBoard;  // the board from boardPool being played on; null while waiting for one
+   private SwingWorker<BoardPool.Board, Void> boardWaiter;   // waits for boardPool's next board; null if not waiting
+   
+   private boolean gameIsOver = false;   // set by ModelListener when visibleField reports the end of the game
+   
+   private GameRecording recording;      // moves of the current game (or of the last one, until the first move of
+                                         // the next); null until the first move
+   private boolean recordingIsOver = false;   // the next move starts a new recording
+   private long gameStartMillis;         // when the first move of the current game was made
+   private GameReplay replay;            // null unless this panel is in playback mode
    
    
    /**
@@ -98,8 +168,23 @@ class GameBoardPanel extends JPanel {
    */
    public GameBoardPanel(VisibleField visibleField) { 
       
+      this(visibleField, false);
+      
+   }
+   
+   /**
+     Creates a GameBoardPanel from a given VisibleField, like the 1-arg constructor, optionally in "relocate" mode:
+     if the first square opened in a game has a mine, that mine moves to a free square (MineField.relocateMineFrom),
+     so the user can't lose on the first click but otherwise plays the given layout.  Each game starts from the
+     original layout again.
+     @param visibleField  the VisibleField that this GUI reflects
+     @param relocateFirstMine  whether to move a mine off the first square opened
+   */
+   public GameBoardPanel(VisibleField visibleField, boolean relocateFirstMine) { 
+      
       this.visibleField = visibleField;     
       this.isRandomMineField = false;
+      this.relocatesFirstMine = relocateFirstMine;
       
       setUpGUI(); 
       
@@ -120,10 +205,64 @@ class GameBoardPanel extends JPanel {
       int limit = numRows * numCols; 
       assert numMines < limit / 3.0;
       
+      if ((long) numRows * numCols >= POOLED_BOARD_SQUARES) {
+         boardPool = new BoardPool(numRows, numCols, numMines, BOARD_POOL_CAPACITY, 1);
+      }
+      // with a pool, this (empty) field is only shown until the first board is ready
       this.visibleField = new VisibleField(new MineField(numRows, numCols, numMines));
       this.isRandomMineField = true;
       
       setUpGUI();
+      if (boardPool != null) {
+         takePooledBoard();
+      }
+   }
+   
+   /**
+     Creates a GameBoardPanel in playback mode, to watch a recorded game.  Clicking on the board does nothing; the
+     game is played back with the controls at the bottom.
+     @param recording  the game to play back.  PRE: recording.hasLayout()
+   */
+   public GameBoardPanel(GameRecording recording) {
+      
+      this.visibleField = new VisibleField(recording.newMineField());
+      this.isRandomMineField = false;
+      this.replay = new GameReplay(recording, visibleField, GameReplay.DEFAULT_CHECKPOINT_INTERVAL);
+      
+      setUpGUI();
+      newGameButton.setEnabled(false);
+      add(new ReplayControls(), BorderLayout.SOUTH);
+   }
+   
+   
+   /**
+     Returns the recording of the current game (or of the last one, once it's over), with the layout it was
+     played on: the moves the player has made so far.
+     @return the recording; null if no move has been made yet
+   */
+   public GameRecording getRecording() {
+      if (recording != null && !recordingIsOver) {   // a finished recording got its layout when the game was left
+         recording.setLayout(visibleField.getMineField());
+      }
+      return recording;
+   }
+   
+   
+   /**
+     Stops the BoardPool making boards once the panel is taken off the screen (e.g., its window was closed), and
+     stops waiting for one.  If it's shown again, each new game makes its board when it starts instead (still off
+     the event dispatch thread; a game that was waiting is played like one without a pool).
+   */
+   public void removeNotify() {
+      super.removeNotify();
+      if (boardPool != null) {
+         boardPool.shutdown();
+      }
+      if (boardWaiter != null) {
+         boardWaiter.cancel(true);
+         boardWaiter = null;
+         gameStatusLabel.setText("");
+      }
    }
    
    /**
@@ -137,23 +276,90 @@ class GameBoardPanel extends JPanel {
       
       add(top, BorderLayout.NORTH);
       
-      JPanel board = new JPanel();
-          
-      mySquares = new SquareView[visibleField.getMineField().numRows()][visibleField.getMineField().numCols()];
+      board = new BoardView();
+      boardScrollPane = new JScrollPane(board);
+      boardScrollPane.setBorder(EMPTY_BORDER);
+      board.zoomToFitWhenFirstShown();
       
-      GridLayout squareLayout = new GridLayout(mySquares.length, mySquares[0].length);   
-      squareLayout.setHgap(BORDER_THICKNESS);
-      squareLayout.setVgap(BORDER_THICKNESS);
-
-      board.setLayout(squareLayout);
+      add(boardScrollPane, BorderLayout.CENTER);
       
-      for (int row = 0; row < mySquares.length; row++) {
-         for (int col = 0; col < mySquares[0].length; col++) {
-            mySquares[row][col] = addSquare(row, col, board);
-         }
+      watchModel();
+      
+      MineField field = visibleField.getMineField();
+      if (Math.max(field.numRows(), field.numCols()) >= MINIMAP_MIN_SIDE) {
+         minimap = new MinimapView();
+         JPanel side = new JPanel(new BorderLayout());
+         side.setBorder(PADDING);
+         side.add(minimap, BorderLayout.NORTH);
+         add(side, BorderLayout.EAST);
+      }
+   }
+   
+   
+   /**
+      Have the View follow visibleField (a new one, when a pooled board is taken).
+    */
+   private void watchModel() {
+      summary = new BoardSummary(visibleField);    // all zero, right for a field with nothing uncovered or flagged
+      if (visibleField.numUncoveredSquares() > 0
+          || visibleField.numMinesLeft() != visibleField.getMineField().numMines()) {
+         summary.rebuild();
       }
+      visibleField.addVisibleFieldListener(new ModelListener());
       
-      add(board, BorderLayout.CENTER);
+      // a pooled board's openings are labeled already (see BoardPool), so the default OPENINGS mode is fastest there
+      MineField field = visibleField.getMineField();
+      if (pooledBoard == null && (long) field.numRows() * field.numCols() >= PARALLEL_REVEAL_SQUARES) {
+         visibleField.setRevealMode(VisibleField.RevealMode.PARALLEL);
+      }
+   }
+   
+   
+   /**
+      Start a new game on the next board from boardPool: now, if one is ready, or else once it has been made,
+      without waiting on the event dispatch thread.  Until then the board shows all covered and ignores clicks.
+    */
+   private void takePooledBoard() {
+      if (boardWaiter != null) {
+         return;                                // already waiting
+      }
+      BoardPool.Board ready = boardPool.poll();
+      if (ready != null) {
+         playOn(ready);
+         return;
+      }
+      pooledBoard = null;
+      visibleField.resetGameDisplay();
+      gameStatusLabel.setText(PREPARING_BOARD_TEXT);
+      boardWaiter = new SwingWorker<BoardPool.Board, Void>() {
+         protected BoardPool.Board doInBackground() throws InterruptedException {
+            return boardPool.waitForBoard();
+         }
+         protected void done() {
+            if (boardWaiter != this) {
+               return;                          // cancelled by removeNotify
+            }
+            boardWaiter = null;
+            try {
+               playOn(get());
+            }
+            catch (InterruptedException | ExecutionException e) {
+               throw new IllegalStateException(e);      // done: get doesn't wait, and waitForBoard doesn't fail
+            }
+         }
+      };
+      boardWaiter.execute();
+   }
+   
+   
+   /**
+      Start a new game on a board from boardPool, in place of visibleField.
+    */
+   private void playOn(BoardPool.Board board) {
+      pooledBoard = board;
+      visibleField = board.visibleField();
+      watchModel();
+      visibleField.resetGameDisplay();          // ModelListener updates the display
    }
    
    
@@ -186,14 +392,19 @@ class GameBoardPanel extends JPanel {
          public void actionPerformed(ActionEvent event) {
             // doesn't reset the MineField here, just the display, because populateMineField clears old mines
             // before populating it with new ones and for non-random MineField, we use the same minefield in
-            // subsequent games.
-            visibleField.resetGameDisplay();
+            // subsequent games.  With a board pool, the next board (mines already placed) replaces this one.
+            // The last game's recording takes its layout first, while visibleField is still the board it was on.
             userChoseFirstLocation = false;
-            updateAllSquaresViews();
-            mineGuessLabel.setText(Integer.toString(visibleField.getMineField().numMines()));
-            newGameButton.setIcon(happyIcon);
-            gameStatusLabel.setText("");
-            repaint();
+            if (recording != null && !recordingIsOver) {
+               recording.setLayout(visibleField.getMineField());
+               recordingIsOver = true;
+            }
+            if (boardPool != null) {
+               takePooledBoard();                // the next board replaces this one, now or once it's ready
+            }
+            else {
+               visibleField.resetGameDisplay();  // ModelListener updates the display
+            }
          }
       });
       
@@ -230,54 +441,95 @@ class GameBoardPanel extends JPanel {
 
 
    /**
-      Update all the squares in the GUI based on the current state of the VisibleField.
+      Update all the squares in the GUI after the VisibleField was reset (every square covered again): the block
+      counts are just cleared, and the whole board is repainted in the next frame.
     */
    private void updateAllSquaresViews() {
-      for (int row = 0; row < mySquares.length; row++) {
-         for (int col = 0; col < mySquares[0].length; col++) {
-            mySquares[row][col].updateDisplayProperties();
+      summary.clear();
+      repaints.allChanged();
+   }
+   
+   
+   // refresh rate of the screen, or DEFAULT_FRAMES_PER_SECOND if it isn't known
+   private static int framesPerSecond() {
+      if (!GraphicsEnvironment.isHeadless()) {
+         int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode()
+                                       .getRefreshRate();
+         if (rate > 0) {
+            return rate;
          }
-      }   
+      }
+      return DEFAULT_FRAMES_PER_SECOND;
    }
    
    
    /**
-      Add the and return the View object for the square at location (row, col), and add it to the board panel.
-    * @param row  row of the square to add
-    * @param col  column of the square to add
-    * @param board  the panel to add it to
-    * @return
+      Index in BLOCK_COLORS for a block, depending on how much of it is uncovered and whether it has mine guesses.
     */
-   private SquareView addSquare(int row, int col, JPanel board) {       
-      SquareView square = new SquareView(row, col);
-      board.add(square); 
-      return square; 
+   private static int blockColorIndex(BoardSummary summary, int level, int blockRow, int blockCol) {
+      int shade = summary.uncovered(level, blockRow, blockCol) * SHADES / summary.squaresIn(level, blockRow, blockCol);
+      return (summary.flagged(level, blockRow, blockCol) > 0) ? SHADES + 1 + shade : shade;
    }
    
    
-   //-------------------------------------------------------------------------------------
-   // INNER CLASS SquareListener
-   // the Controller (in MVC) class for a square
-   private class SquareListener extends MouseAdapter {
-      
-      private SquareView mySquare;
-      
-      public SquareListener(SquareView mySquare) {
-         this.mySquare = mySquare;
+   /**
+      Index in BLOCK_COLORS for a single square.
+    */
+   private static int squareColorIndex(int status) {
+      int shade = (status >= 0) ? SHADES : 0;
+      return (status == VisibleField.MINE_GUESS) ? SHADES + 1 + shade : shade;
+   }
+   
+   
+   private static Color[] blockColors() {
+      Color[] colors = new Color[2 * (SHADES + 1)];
+      for (int shade = 0; shade <= SHADES; shade++) {
+         colors[shade] = mix(COVERED_BLOCK_COLOR, UNCOVERED_BLOCK_COLOR, shade / (double) SHADES);
+         colors[SHADES + 1 + shade] = mix(colors[shade], FLAGGED_BLOCK_COLOR, 0.5);
       }
+      return colors;
+   }
+   
+   
+   private static Color mix(Color from, Color to, double fraction) {
+      return new Color((int) Math.round(from.getRed() + (to.getRed() - from.getRed()) * fraction),
+                       (int) Math.round(from.getGreen() + (to.getGreen() - from.getGreen()) * fraction),
+                       (int) Math.round(from.getBlue() + (to.getBlue() - from.getBlue()) * fraction));
+   }
+   
+   
+   // smallest level (see BoardSummary) whose blocks have at least the given number of squares on a side
+   private int levelFor(double squaresPerBlockSide) {
+      int level = BoardSummary.FIRST_LEVEL;
+      while ((1 << level) < squaresPerBlockSide && level < summary.topLevel()) {
+         level++;
+      }
+      return level;
+   }
+   
+   
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS BoardListener
+   // the Controller (in MVC) class for the squares
+   private class BoardListener extends MouseAdapter {
       
       /**
-         Invoked when a mouse button has been pressed in this component.
+         Invoked when a mouse button has been pressed in the board.
        */
       public void mousePressed(MouseEvent e) {
          
-         if (visibleField.isGameOver()) return;  // don't respond to clicks if the game is over
+         // don't respond to clicks if the game is over, in playback, or while waiting for a board from boardPool
+         if (gameIsOver || replay != null || boardWaiter != null) return;
+         
+         int row = board.rowAt(e.getY());
+         int col = board.colAt(e.getX());
+         if (!visibleField.getMineField().inRange(row, col)) return;  // click was in the gap around the squares
          
          if (e.getButton() == MouseEvent.BUTTON1) { // left click
-            openSquare();
+            openSquare(row, col);
          }
          else if (e.getButton() == MouseEvent.BUTTON3) {  // right click
-            changeGuessStatus();
+            changeGuessStatus(row, col);
          }
       }
       
@@ -287,179 +539,563 @@ class GameBoardPanel extends JPanel {
          or if the recursion results in opening all the non-mine squares, this action can end the game.  
          If this is the first square to be opened in a "random" game (ie., isRandomMineField is true), 
          this will trigger the initial placement of the mines before the recursion (and guarantee that
-         no mine is on this square so a user doesn't lose on the first click).
+         no mine is on this square so a user doesn't lose on the first click).  In relocate mode, a mine on it
+         moves to a free square instead.
+       * @param row  row of the square clicked
+       * @param col  column of the square clicked
        */
-      private void openSquare() {
+      private void openSquare(int row, int col) {
                               // can't open it when it's a mine guess (user has to right click to "?" state first)
-         if ((visibleField.getStatus(mySquare.getRow(), mySquare.getCol()) == VisibleField.MINE_GUESS) ||
-               (visibleField.isUncovered(mySquare.getRow(), mySquare.getCol())))  {   // already has been uncovered
+         if ((visibleField.getStatus(row, col) == VisibleField.MINE_GUESS) ||
+               (visibleField.isUncovered(row, col)))  {   // already has been uncovered
             return;         
          }
          // only choose mine locations once user has opened one square   
          // but only if we're using random minefield, o.w., we use the same mine locs for every game
          //                                              (they were set in the constructor)
-         if (!userChoseFirstLocation && isRandomMineField) {  // first time uncovering a square
+         if (!userChoseFirstLocation && (isRandomMineField || relocatesFirstMine)) {  // first time uncovering a square
             userChoseFirstLocation = true;
             // doesn't put a mine in the location they chose
-            visibleField.getMineField().populateMineField(
-                                          mySquare.getRow(), mySquare.getCol());
-         }
-         
-         // recursively opens up empty areas
-         boolean isNotAMine = visibleField.uncover(mySquare.getRow(), mySquare.getCol());
-
-         if (visibleField.isGameOver()) {
-            if (isNotAMine) {
-               // win condition
-               // update statusLabel
-               gameStatusLabel.setText("You won!");
+            if (pooledBoard != null) {
+               pooledBoard.firstClick(row, col);   // the mines are placed already: at most one moves
+            }
+            else if (relocatesFirstMine) {
+               MineField mineField = visibleField.getMineField();
+               mineField.restoreLayout();          // undoes the last game's move (kept until now for its recording)
+               mineField.relocateMineFrom(row, col);
             }
-            else {  // loss condition
-               newGameButton.setIcon(sadIcon);
-               gameStatusLabel.setText("You lost!");
+            else {
+               visibleField.getMineField().populateMineField(row, col);
             }
-            
          }
-          
-         updateAllSquaresViews();     // don't know which squares changed, so update view for all squares to match 
-                                      // changes in the model
-         repaint();
+         recordMove(GameRecording.UNCOVER, row, col);
+         
+         // recursively opens up empty areas; ModelListener repaints the squares that changed, and shows
+         // the end of the game if this move ended it
+         visibleField.uncover(row, col);
            
       }
       
       /**
          Change the status of a covered (i.e, non-opened) square and the display of the number of mines guessed, if
          appropriate.  See documentation of VisibleField cycleGuess() for details of the states it can go through.
+       * @param row  row of the square clicked
+       * @param col  column of the square clicked
        */
-      private void changeGuessStatus() {
+      private void changeGuessStatus(int row, int col) {
          // if the square is uncovered, can't do this operation
-         if (visibleField.isUncovered(mySquare.getRow(), mySquare.getCol())) { return; }
-         // update model
-         visibleField.cycleGuess(mySquare.getRow(), mySquare.getCol());
+         if (visibleField.isUncovered(row, col)) { return; }
+         // update model (ModelListener repaints the square)
+         recordMove(GameRecording.CYCLE_GUESS, row, col);
+         visibleField.cycleGuess(row, col);
          // if went to MINE_GUESS or QUESTION, the number of mine guesses changes (either up or down)
-         if (visibleField.getStatus(mySquare.getRow(), mySquare.getCol()) != VisibleField.COVERED) {          
+         if (visibleField.getStatus(row, col) != VisibleField.COVERED) {          
             int minesLeft = visibleField.numMinesLeft();
             int displayNum = (minesLeft >= 0) ? minesLeft : 0; // non-neg
             mineGuessLabel.setText(Integer.toString(displayNum));
          }
-         // get changed state of square from model, and update the View accordingly
-         // (for such an action, only the one square gets changed)
-         mySquare.updateDisplayProperties();
+      }
+      
+      
+      /**
+         Add a move to the recording of the current game, starting a new recording on the first move.
+       */
+      private void recordMove(int kind, int row, int col) {
+         if (recording == null || recordingIsOver) {
+            recordingIsOver = false;
+            recording = new GameRecording(visibleField.getMineField().numRows(), visibleField.getMineField().numCols());
+            gameStartMillis = System.currentTimeMillis();
+         }
+         recording.addMove(kind, row, col, System.currentTimeMillis() - gameStartMillis);
       }
       
    }
-   //------ END OF INNER CLASS SquareListener---------------------------------------------
+   //------ END OF INNER CLASS BoardListener----------------------------------------------
 
    
    //-------------------------------------------------------------------------------------
-   // INNER CLASS SquareView
-   // the View (in MVC) class for a square
-   private class SquareView extends JLabel {
-      
-      // uses a label instead of a button because it makes it easier to process left and right mouse clicks.
-      // (see SquareListener class)
-      // we change the border of the label so it looks like a button that's is or is not pushed in depending
-      // on whether the square has been uncovered 
-      
-      public static final int PREF_SQUARE_WIDTH = 25;
-      public static final int PREF_SQUARE_HEIGHT = 25;
-            
-      private int myRow;
-      private int myCol;
+   // INNER CLASS ModelListener
+   // keeps the View up to date with the changes visibleField reports after each move
+   private class ModelListener implements VisibleFieldListener {
+      
+      /**
+         Update the block counts of the squares a move changed, and have them repainted in the next frame.
+       */
+      public void squaresChanged(VisibleField field, int[] squares, int[] oldStates, int[] newStates, 
+                                 int numChanged) {
+         int numCols = field.getMineField().numCols();
+         for (int i = 0; i < numChanged; i++) {
+            summary.update(squares[i] / numCols, squares[i] % numCols, oldStates[i], newStates[i]);
+         }
+         repaints.squaresChanged(squares, numChanged);
+      }
+      
+      
+      /**
+         Show whether the game was won or lost.
+       */
+      public void gameOver(VisibleField field, boolean won) {
+         gameIsOver = true;
+         if (won) {
+            gameStatusLabel.setText("You won!");
+         }
+         else {
+            newGameButton.setIcon(sadIcon);
+            gameStatusLabel.setText("You lost!");
+         }
+      }
+      
+      
+      /**
+         Show a new game.
+       */
+      public void boardReset(VisibleField field) {
+         gameIsOver = false;
+         recordingIsOver = true;
+         updateAllSquaresViews();
+         mineGuessLabel.setText(Integer.toString(field.getMineField().numMines()));
+         newGameButton.setIcon(happyIcon);
+         gameStatusLabel.setText("");
+      }
+      
+   }
+   //------ END OF INNER CLASS ModelListener----------------------------------------------
 
+   
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS BoardRepaints
+   // what a frame of the RepaintScheduler repaints: the squares that changed (or the whole board), and the minimap
+   private class BoardRepaints implements RepaintScheduler.Target {
+      
+      public void repaintAll() {
+         board.repaint();
+         if (minimap != null) {
+            minimap.repaint();
+         }
+      }
+      
+      
+      public void repaintSquares(int[] squares, int numSquares) {
+         int numCols = visibleField.getMineField().numCols();
+         for (int i = 0; i < numSquares; i++) {
+            board.repaintSquare(squares[i] / numCols, squares[i] % numCols);
+         }
+         if (minimap != null) {
+            minimap.repaint();
+         }
+      }
+      
+   }
+   //------ END OF INNER CLASS BoardRepaints----------------------------------------------
+
+   
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS ReplayControls
+   // play / pause, seek and speed controls for playback mode.  A timer tick advances a clock for the game by the 
+   // time since the last tick times the speed, and seeks to the last move made by then; all the moves in between
+   // are played at once, and the RepaintScheduler draws only the result, so high speeds skip frames instead of 
+   // falling behind.
+   private class ReplayControls extends JPanel implements ActionListener {
+      
+      private final JButton playButton = new JButton("Play");
+      private final JSlider slider = new JSlider(0, replay.getRecording().numMoves(), 0);
+      private final JComboBox<Integer> speedChoice = new JComboBox<Integer>(REPLAY_SPEEDS);
+      private final JLabel moveLabel = new JLabel();
+      private final Timer timer = new Timer(1000 / DEFAULT_FRAMES_PER_SECOND, this);
+      
+      private double clockMillis = 0;         // time in the game, since the first move
+      private long lastTickNanos;
+      private boolean settingSlider = false;  // so moving the slider from code isn't taken as a seek
+      
+      
+      public ReplayControls() {
+         super(new BorderLayout());
+         setBorder(PADDING);
+         timer.setCoalesce(true);
+         speedChoice.setToolTipText("playback speed (times real time)");
+         
+         playButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+               if (timer.isRunning()) {
+                  pause();
+               }
+               else {
+                  if (replay.position() == replay.getRecording().numMoves()) {   // at the end: play it again
+                     seek(0);
+                  }
+                  lastTickNanos = System.nanoTime();
+                  timer.start();
+                  playButton.setText("Pause");
+               }
+            }
+         });
+         
+         slider.addChangeListener(new ChangeListener() {
+            public void stateChanged(ChangeEvent e) {
+               if (!settingSlider) {
+                  seek(slider.getValue());
+               }
+            }
+         });
+         
+         JPanel buttons = new JPanel();
+         buttons.add(playButton);
+         buttons.add(speedChoice);
+         buttons.add(moveLabel);
+         add(slider, BorderLayout.CENTER);
+         add(buttons, BorderLayout.EAST);
+         showPosition();
+      }
+      
       
       /**
-         Create the View class for a square at the given location.  
-       * @param row the row this square is in
-       * @param col the column this square is in
+         A frame of playback: play the moves made up to the new clock time.
        */
-      public SquareView(int row, int col) {
-         myRow = row;
-         myCol = col;
-         setBorder(COVERED_BORDER);
-         setPreferredSize(new Dimension(PREF_SQUARE_WIDTH, PREF_SQUARE_HEIGHT));
-         setHorizontalAlignment(SwingConstants.CENTER);
-         setFont(DEFAULT_FONT);
-         updateDisplayProperties();
-         addMouseListener(new SquareListener(this));
+      public void actionPerformed(ActionEvent e) {
+         long now = System.nanoTime();
+         clockMillis += (now - lastTickNanos) / 1e6 * (Integer) speedChoice.getSelectedItem();
+         lastTickNanos = now;
+         replay.seek(replay.movesBy((long) clockMillis));
+         if (replay.position() == replay.getRecording().numMoves()) {
+            pause();
+         }
+         showPosition();
+      }
+      
+      
+      // go to a move, and carry on playing from the time it was made
+      private void seek(int move) {
+         replay.seek(move);
+         clockMillis = (move == 0) ? 0 : replay.getRecording().time(move - 1);
+         showPosition();
+      }
+      
+      
+      private void pause() {
+         timer.stop();
+         playButton.setText("Play");
+      }
+      
+      
+      // update the slider and the labels to the replay's position
+      private void showPosition() {
+         settingSlider = true;
+         slider.setValue(replay.position());
+         settingSlider = false;
+         moveLabel.setText("move " + replay.position() + " / " + replay.getRecording().numMoves());
+         mineGuessLabel.setText(Integer.toString(Math.max(0, visibleField.numMinesLeft())));
+         MineField mineField = visibleField.getMineField();
+         boolean lost = replay.isLost();
+         boolean won = !lost && visibleField.numUncoveredSquares() == mineField.numRows() * mineField.numCols() 
+                                                                    - mineField.numMines();
+         newGameButton.setIcon(lost ? sadIcon : happyIcon);
+         gameStatusLabel.setText(lost ? "You lost!" : won ? "You won!" : "");
+      }
+      
+   }
+   //------ END OF INNER CLASS ReplayControls---------------------------------------------
+
+   
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS BoardView
+   // the View (in MVC) class for the squares
+   private class BoardView extends JComponent {
+      
+      // The squares are laid out like the old grid of labels: squares of equal size, BORDER_THICKNESS apart
+      // (no gap when zoomed out too far for that).  Each one is drawn as a copy of the image for its status, or, 
+      // below MIN_TILE_SQUARE_SIZE, blocks of squares are drawn as one shaded rectangle.
+      
+      public static final int PREF_SQUARE_SIZE = 25;
+      
+      private final TileImageCache tiles = new TileImageCache(this);
+      private byte[] rowStatus = new byte[0];      // statuses of one row of the clip area, reused by paintSquares
+      
+      private int squareSize = PREF_SQUARE_SIZE;
+      private boolean zoomWasChosen = false;   // until then, we pick the zoom that fits the window
+      
+      
+      /**
+         Create the View for the squares of the board.
+       */
+      public BoardView() {
+         setOpaque(true);
+         addMouseListener(new BoardListener());
+         addMouseWheelListener(new MouseAdapter() {
+            public void mouseWheelMoved(MouseWheelEvent e) {
+               if (e.isControlDown()) {
+                  zoom(e.getWheelRotation() < 0 ? 1 : -1, e.getPoint());
+               }
+               else {  // normal scrolling, done by the scroll pane
+                  boardScrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(BoardView.this, e, boardScrollPane));
+               }
+            }
+         });
       }
       
       
       /**
-         Get the row this square is in
+         The first time the scroll pane is laid out, use the largest zoom level that shows the whole board, but not
+         one smaller than the preferred square size.
+       */
+      public void zoomToFitWhenFirstShown() {
+         final JViewport viewport = boardScrollPane.getViewport();
+         viewport.addComponentListener(new ComponentAdapter() {
+            public void componentResized(ComponentEvent e) {
+               if (!zoomWasChosen && viewport.getWidth() > 0 && viewport.getHeight() > 0) {
+                  zoomWasChosen = true;
+                  MineField field = visibleField.getMineField();
+                  int fits = Math.min(viewport.getWidth() / field.numCols(), viewport.getHeight() / field.numRows());
+                  int size = PREF_SQUARE_SIZE;
+                  for (int level : ZOOM_LEVELS) {
+                     if (level + BORDER_THICKNESS <= fits) {
+                        size = Math.max(size, level);
+                     }
+                  }
+                  setSquareSize(size, new Point(0, 0));
+               }
+            }
+         });
+      }
+      
+      
+      /**
+         Size of the whole board at the current zoom (limited to what a component can be).
+       */
+      public Dimension getPreferredSize() {
+         MineField field = visibleField.getMineField();
+         return new Dimension((int) Math.min(Integer.MAX_VALUE, (long) field.numCols() * pitch()),
+                              (int) Math.min(Integer.MAX_VALUE, (long) field.numRows() * pitch()));
+      }
+      
+      
+      // distance from the start of one square to the start of the next one
+      private int pitch() {
+         return (squareSize >= MIN_TILE_SQUARE_SIZE) ? squareSize + BORDER_THICKNESS : squareSize;
+      }
+      
+      
+      /**
+         Get the row at a y coordinate in this component (may be out of range)
          @return the row
        */
-      public int getRow() { return myRow; }
+      public int rowAt(int y) { return Math.floorDiv(y, pitch()); }
       
       
       /**
-         Get the column this square is in
+         Get the column at an x coordinate in this component (may be out of range)
          @return the column
-      */
-      public int getCol() { return myCol; }
+       */
+      public int colAt(int x) { return Math.floorDiv(x, pitch()); }
       
       
       /**
-        Update square view based on status of corresponding square in model
+         Repaint just the area of one square.
        */
-      public void updateDisplayProperties() {
-         int status = visibleField.getStatus(myRow, myCol);
+      public void repaintSquare(int row, int col) {
+         int pitch = pitch();
+         repaint(col * pitch, row * pitch, pitch, pitch);
+      }
+      
+      
+      /**
+         Go to the next larger or smaller zoom level, keeping the square under the given point where it is.
+         @param direction  1 to zoom in, -1 to zoom out
+         @param anchor  point in this component
+       */
+      public void zoom(int direction, Point anchor) {
+         int level = 0;
+         while (level < ZOOM_LEVELS.length - 1 && ZOOM_LEVELS[level] < squareSize) {
+            level++;
+         }
+         level = Math.max(0, Math.min(ZOOM_LEVELS.length - 1, level + direction));
+         setSquareSize(ZOOM_LEVELS[level], anchor);
+      }
+      
+      
+      /**
+         Change the zoom, and scroll so the board location at anchor stays at the same place in the viewport.
+       */
+      private void setSquareSize(int size, Point anchor) {
+         JViewport viewport = boardScrollPane.getViewport();
+         Point viewPosition = viewport.getViewPosition();
+         double boardX = anchor.x / (double) pitch();
+         double boardY = anchor.y / (double) pitch();
          
-         setSquareBorder();  // REFACTORED 10/10
+         squareSize = size;
+         setSize(getPreferredSize());
+         revalidate();
          
-         if (status == VisibleField.COVERED) {
-            setBackground(null);
-            setFont(DEFAULT_FONT);
-            setText("");
-         }
-         else if (status == 0) {    // no neighboring mines (empty square)
-            setText("");
+         int x = (int) (boardX * pitch()) - (anchor.x - viewPosition.x);
+         int y = (int) (boardY * pitch()) - (anchor.y - viewPosition.y);
+         scrollTo(x, y);
+         repaint();
+      }
+      
+      
+      /**
+         Scroll so that the given board location is in the center of the viewport.
+       */
+      public void centerOn(double row, double col) {
+         JViewport viewport = boardScrollPane.getViewport();
+         scrollTo((int) (col * pitch()) - viewport.getWidth() / 2, (int) (row * pitch()) - viewport.getHeight() / 2);
+      }
+      
+      
+      private void scrollTo(int x, int y) {
+         JViewport viewport = boardScrollPane.getViewport();
+         x = Math.max(0, Math.min(x, getWidth() - viewport.getWidth()));
+         y = Math.max(0, Math.min(y, getHeight() - viewport.getHeight()));
+         viewport.setViewPosition(new Point(x, y));
+      }
+      
+      
+      /**
+        Paint the squares in the clip area based on the status of the corresponding squares in the model.
+       */
+      protected void paintComponent(Graphics g) {
+         GameEvents.BoardRefreshEvent event = new GameEvents.BoardRefreshEvent();
+         event.begin();
+         
+         g.setColor(getBackground());
+         Rectangle clip = g.getClipBounds();
+         g.fillRect(clip.x, clip.y, clip.width, clip.height);
+         
+         long squaresPainted = (squareSize >= MIN_TILE_SQUARE_SIZE) ? paintSquares(g, clip) : paintBlocks(g, clip);
+         
+         event.end();
+         if (event.shouldCommit()) {
+            event.rows = visibleField.getMineField().numRows();
+            event.cols = visibleField.getMineField().numCols();
+            event.squaresPainted = squaresPainted;
+            event.commit();
          }
-         else if (status == VisibleField.MINE_GUESS) {
-            setOpaque(true);
-            setBackground(MINE_GUESS_COLOR);
-            setText("");  // FIXED BUG 10/10
+      }
+      
+      
+      // one tile image per square in the clip area; returns the number of squares painted
+      private long paintSquares(Graphics g, Rectangle clip) {
+         int pitch = pitch();
+         tiles.validate(squareSize, ((Graphics2D) g).getTransform().getScaleX());
+         
+         MineField field = visibleField.getMineField();
+         int firstRow = Math.max(0, clip.y / pitch);
+         int lastRow = Math.min(field.numRows() - 1, (clip.y + clip.height) / pitch);
+         int firstCol = Math.max(0, clip.x / pitch);
+         int lastCol = Math.min(field.numCols() - 1, (clip.x + clip.width) / pitch);
+         
+         // read the statuses of the clip area in one go, a row at a time
+         int width = lastCol - firstCol + 1;
+         if (width > 0 && rowStatus.length < width) {
+            rowStatus = new byte[width];
          }
-         else if (status == VisibleField.QUESTION) {
-            setBackground(null);
-            setText("?");
+         for (int row = firstRow; row <= lastRow && width > 0; row++) {
+            visibleField.copyStatus(row, firstCol, 1, width, rowStatus, 0);
+            for (int col = firstCol; col <= lastCol; col++) {
+               g.drawImage(tiles.getTile(rowStatus[col - firstCol]), col * pitch, row * pitch, 
+                           squareSize, squareSize, null);
+            }
          }
-         else if (status == VisibleField.MINE) {
-            setOpaque(true);
-            setBackground(MINE_COLOR);
-            setText("");  // FIXED BUG 10/10
+         return (long) Math.max(0, lastRow - firstRow + 1) * Math.max(0, lastCol - firstCol + 1);
+      }
+      
+      
+      // one rectangle per block of squares in the clip area; returns the number of squares painted
+      private long paintBlocks(Graphics g, Rectangle clip) {
+         BoardSummary blocks = summary;
+         int level = levelFor(MIN_BLOCK_PIXELS / (double) squareSize);
+         int blockPixels = squareSize << level;
+         
+         MineField field = visibleField.getMineField();
+         int boardWidth = field.numCols() * squareSize;
+         int boardHeight = field.numRows() * squareSize;
+         int firstRow = clip.y / blockPixels;
+         int lastRow = Math.min((field.numRows() - 1) >> level, (clip.y + clip.height) / blockPixels);
+         int firstCol = clip.x / blockPixels;
+         int lastCol = Math.min((field.numCols() - 1) >> level, (clip.x + clip.width) / blockPixels);
+         
+         long squaresPainted = 0;
+         for (int blockRow = firstRow; blockRow <= lastRow; blockRow++) {
+            for (int blockCol = firstCol; blockCol <= lastCol; blockCol++) {
+               int x = blockCol * blockPixels;
+               int y = blockRow * blockPixels;
+               g.setColor(BLOCK_COLORS[blockColorIndex(blocks, level, blockRow, blockCol)]);
+               g.fillRect(x, y, Math.min(blockPixels, boardWidth - x), Math.min(blockPixels, boardHeight - y));
+               squaresPainted += blocks.squaresIn(level, blockRow, blockCol);
+            }
          }
-         else if (status == VisibleField.INCORRECT_GUESS) {            
-            setFont(INCORRECT_GUESS_FONT);
-            setText("X");
+         return squaresPainted;
+      }
+   }
+   //-----------------------------END OF INNER CLASS BoardView ---------------------------
 
-         }
-         else if (status == VisibleField.EXPLODED_MINE) {
-            setOpaque(true);
-            setBackground(EXPLODED_MINE_COLOR);
-            setText("");  // FIXED BUG 10/10
-         }
-         else if (status > 0) {  // status is the number of neighboring mines
-            setText(Integer.toString(status));
-         }
-         else {
-            throw new AssertionError(status);
-         }
+   
+   //-------------------------------------------------------------------------------------
+   // INNER CLASS MinimapView
+   // overview of the whole board, with the visible part outlined; clicking or dragging in it scrolls the board
+   private class MinimapView extends JComponent {
+      
+      private final double pixelsPerSquare;
+      private final BufferedImage image;
+      private final int[] pixels;        // the image's pixels, so we can fill them directly
+      
+      
+      /**
+         Create the minimap, with the longer side of the board MINIMAP_SIZE pixels long.
+       */
+      public MinimapView() {
+         MineField field = visibleField.getMineField();
+         pixelsPerSquare = MINIMAP_SIZE / (double) Math.max(field.numRows(), field.numCols());
+         int width = Math.max(1, (int) Math.round(field.numCols() * pixelsPerSquare));
+         int height = Math.max(1, (int) Math.round(field.numRows() * pixelsPerSquare));
+         image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+         pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+         setPreferredSize(new Dimension(width, height));
+         
+         MouseAdapter scroller = new MouseAdapter() {
+            public void mousePressed(MouseEvent e) { board.centerOn(e.getY() / pixelsPerSquare, e.getX() / pixelsPerSquare); }
+            public void mouseDragged(MouseEvent e) { mousePressed(e); }
+         };
+         addMouseListener(scroller);
+         addMouseMotionListener(scroller);
+         
+         boardScrollPane.getViewport().addChangeListener(new ChangeListener() {
+            public void stateChanged(ChangeEvent e) {
+               repaint();
+            }
+         });
       }
       
       
       /**
-         Set the border to show whether it was already clicked.
+         Draw the minimap: each pixel is the color of the one block (or square, if there are fewer squares than 
+         pixels) under it, so this takes time proportional to the size of the minimap, not of the board.
        */
-      private void setSquareBorder() {
-         if (visibleField.isUncovered(myRow, myCol)) {  
-            setBorder(UNCOVERED_BORDER);  
-         }
-         else {
-            setBorder(COVERED_BORDER);   
+      protected void paintComponent(Graphics g) {
+         MineField field = visibleField.getMineField();
+         int width = image.getWidth();
+         int height = image.getHeight();
+         double squaresPerPixel = 1 / pixelsPerSquare;
+         BoardSummary blocks = summary;
+         int level = levelFor(squaresPerPixel);
+         
+         for (int y = 0; y < height; y++) {
+            int row = Math.min(field.numRows() - 1, (int) (y * squaresPerPixel));
+            for (int x = 0; x < width; x++) {
+               int col = Math.min(field.numCols() - 1, (int) (x * squaresPerPixel));
+               int colorIndex = (squaresPerPixel <= 1) ? squareColorIndex(visibleField.getStatus(row, col))
+                                                       : blockColorIndex(blocks, level, row >> level, col >> level);
+               pixels[y * width + x] = BLOCK_COLORS[colorIndex].getRGB();
+            }
          }
+         g.drawImage(image, 0, 0, null);
+         
+         Rectangle view = boardScrollPane.getViewport().getViewRect();
+         double scale = pixelsPerSquare / board.pitch();
+         g.setColor(VIEWPORT_OUTLINE_COLOR);
+         g.drawRect((int) (view.x * scale), (int) (view.y * scale), 
+                    Math.max(1, (int) (view.width * scale) - 1), Math.max(1, (int) (view.height * scale) - 1));
       }
    }
-   //-----------------------------END OF INNER CLASS SquareView --------------------------
+   //-----------------------------END OF INNER CLASS MinimapView -------------------------
 
 }
\ No newline at end of file
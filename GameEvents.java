@@ -0,0 +1,89 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+   GameEvents
+   Java Flight Recorder events emitted by the Model (VisibleField, MineField) and the View (GameBoardPanel).
+   Each event records the size of the board, how many squares the operation changed (or, for a board refresh, how
+   many it painted), and (as for every JFR event) how long it took, so a standard recording shows which clicks
+   caused long pauses on the event dispatch thread.
+
+   To record a game from the command line:
+      java -XX:StartFlightRecording=filename=game.jfr MineSweeper
+      jfr print --categories Minesweeper game.jfr
+
+   When no recording is running the events are disabled, and the cost is one allocation that the JIT removes.
+ */
+
+final class GameEvents {
+
+   private GameEvents() { }
+
+
+   /**
+      Fields shared by all the game events.
+    */
+   @Category("Minesweeper")
+   abstract static class BoardEvent extends Event {
+
+      @Label("Rows")
+      int rows;
+
+      @Label("Columns")
+      int cols;
+   }
+
+
+   /**
+      Fields shared by the events of operations that change the Model.
+    */
+   abstract static class ModelEvent extends BoardEvent {
+
+      @Label("Squares Changed")
+      @Description("Number of squares whose state was changed by the operation")
+      long squaresChanged;
+   }
+
+
+   @Name("minesweeper.Uncover")
+   @Label("Uncover")
+   @Description("VisibleField.uncover: a left click on one square, including any flood fill and end of game display")
+   static final class UncoverEvent extends ModelEvent {
+
+      @Label("Row")
+      int row;
+
+      @Label("Column")
+      int col;
+   }
+
+
+   @Name("minesweeper.FloodFill")
+   @Label("Flood Fill")
+   @Description("Opening of an empty region of the board, started from a square with no adjacent mines")
+   static final class FloodFillEvent extends ModelEvent {
+   }
+
+
+   @Name("minesweeper.PopulateMineField")
+   @Label("Populate Mine Field")
+   @Description("MineField.populateMineField: clearing the field and placing the mines for a new game")
+   static final class PopulateMineFieldEvent extends ModelEvent {
+   }
+
+
+   @Name("minesweeper.BoardRefresh")
+   @Label("Board Refresh")
+   @Description("GameBoardPanel: repaint of the squares in the damaged area of the board to match the Model")
+   static final class BoardRefreshEvent extends BoardEvent {
+
+      @Label("Squares Painted")
+      @Description("Number of squares (or squares covered by the zoomed-out blocks) painted in the damaged area, "
+                   + "whether or not they changed")
+      long squaresPainted;
+   }
+
+}
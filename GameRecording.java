@@ -0,0 +1,224 @@
+/**
+   GameRecording
+      the layout of one game and the moves played in it (uncover and cycleGuess, with when each was made), so the
+      game can be played back with GameReplay.  GameBoardPanel records every game; see MineSweeperCustom for saving
+      one, and MineSweeperReplay for watching it.
+
+      File format (text): a header line "rows cols numMoves", the layout as in the MineFieldIO text format (one line
+      per row, '*' for a mine and '.' for no mine), then one line per move: the kind ('u' for uncover, 'g' for
+      cycleGuess), row, column and time in milliseconds since the first move, separated by spaces.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public final class GameRecording {
+
+   /** Kinds of moves */
+   public static final int UNCOVER = 0;
+   public static final int CYCLE_GUESS = 1;
+
+   private static final char[] KIND_CHARS = {'u', 'g'};
+
+   private final int numRows;
+   private final int numCols;
+   private boolean[][] layout;             // null until setLayout
+
+   private int numMoves = 0;
+   private int[] kinds = new int[64];
+   private int[] rows = new int[64];
+   private int[] cols = new int[64];
+   private long[] times = new long[64];
+
+
+   /**
+      Create a recording with no moves and no layout yet (for a random mine field, the layout is only known after
+      the first uncover).
+      @param numRows  number of rows of the field
+      @param numCols  number of columns of the field
+    */
+   public GameRecording(int numRows, int numCols) {
+      this.numRows = numRows;
+      this.numCols = numCols;
+   }
+
+
+   /**
+      Record the layout of the game (a copy of where the mines are now).
+      @param mineField  the field the game is played on; PRE: same size as the recording
+    */
+   public void setLayout(MineField mineField) {
+      assert mineField.numRows() == numRows && mineField.numCols() == numCols;
+      layout = new boolean[numRows][numCols];
+      for (int row = 0; row < numRows; row++) {
+         for (int col = 0; col < numCols; col++) {
+            layout[row][col] = mineField.hasMine(row, col);
+         }
+      }
+   }
+
+
+   /**
+      Record a move.
+      @param kind  UNCOVER or CYCLE_GUESS
+      @param row  row of the square
+      @param col  column of the square
+      @param timeMillis  when it was made, in milliseconds since the first move; not before the previous move
+    */
+   public void addMove(int kind, int row, int col, long timeMillis) {
+      assert (kind == UNCOVER || kind == CYCLE_GUESS) && (numMoves == 0 || timeMillis >= times[numMoves - 1]);
+      if (numMoves == kinds.length) {
+         kinds = Arrays.copyOf(kinds, numMoves * 2);
+         rows = Arrays.copyOf(rows, numMoves * 2);
+         cols = Arrays.copyOf(cols, numMoves * 2);
+         times = Arrays.copyOf(times, numMoves * 2);
+      }
+      kinds[numMoves] = kind;
+      rows[numMoves] = row;
+      cols[numMoves] = col;
+      times[numMoves] = timeMillis;
+      numMoves++;
+   }
+
+
+   /**
+      Create a new MineField with the recorded layout, to play the moves back on.
+      @return the field
+      PRE: hasLayout()
+    */
+   public MineField newMineField() {
+      assert hasLayout();
+      boolean[][] copy = new boolean[numRows][];
+      for (int row = 0; row < numRows; row++) {
+         copy[row] = layout[row].clone();
+      }
+      return new MineField(copy);
+   }
+
+
+   /** @return whether setLayout has been called */
+   public boolean hasLayout() { return layout != null; }
+
+   /** @return number of rows of the field */
+   public int numRows() { return numRows; }
+
+   /** @return number of columns of the field */
+   public int numCols() { return numCols; }
+
+   /** @return number of moves recorded */
+   public int numMoves() { return numMoves; }
+
+   /** @return the kind of move i, UNCOVER or CYCLE_GUESS */
+   public int kind(int i) { return kinds[i]; }
+
+   /** @return the row of move i */
+   public int row(int i) { return rows[i]; }
+
+   /** @return the column of move i */
+   public int col(int i) { return cols[i]; }
+
+   /** @return the time of move i, in milliseconds since the first move */
+   public long time(int i) { return times[i]; }
+
+   /** @return the time of the last move (0 if there are none) */
+   public long duration() { return (numMoves == 0) ? 0 : times[numMoves - 1]; }
+
+
+   /**
+      Write the recording to a file (see class comment for the format).
+      @param path  the file; replaced if it exists
+      @throws IOException  if it can't be written
+      PRE: hasLayout()
+    */
+   public void write(Path path) throws IOException {
+      assert hasLayout();
+      try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+         out.write(numRows + " " + numCols + " " + numMoves + "\n");
+         char[] line = new char[numCols];
+         for (int row = 0; row < numRows; row++) {
+            for (int col = 0; col < numCols; col++) {
+               line[col] = layout[row][col] ? '*' : '.';
+            }
+            out.write(line);
+            out.write('\n');
+         }
+         for (int i = 0; i < numMoves; i++) {
+            out.write(KIND_CHARS[kinds[i]] + " " + rows[i] + " " + cols[i] + " " + times[i] + "\n");
+         }
+      }
+   }
+
+
+   /**
+      Read a recording written by write.
+      @param path  the file
+      @return the recording
+      @throws IOException  if the file can't be read or is not a valid recording
+    */
+   public static GameRecording read(Path path) throws IOException {
+      try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.US_ASCII)) {
+         String[] header = fields(in, 3, 1);
+         GameRecording recording = new GameRecording(number(header[0], 1), number(header[1], 1));
+         int numMoves = number(header[2], 1);
+         if (recording.numRows == 0 || recording.numCols == 0) {
+            throw new IOException("line 1: empty field");
+         }
+
+         recording.layout = new boolean[recording.numRows][recording.numCols];
+         for (int row = 0; row < recording.numRows; row++) {
+            String line = in.readLine();
+            if (line == null || line.length() != recording.numCols) {
+               throw new IOException("line " + (row + 2) + ": expected a row of " + recording.numCols + " squares");
+            }
+            for (int col = 0; col < recording.numCols; col++) {
+               recording.layout[row][col] = line.charAt(col) == '*';
+            }
+         }
+
+         for (int i = 0; i < numMoves; i++) {
+            int lineNumber = recording.numRows + i + 2;
+            String[] move = fields(in, 4, lineNumber);
+            int kind = new String(KIND_CHARS).indexOf(move[0]);
+            int row = number(move[1], lineNumber);
+            int col = number(move[2], lineNumber);
+            long time = Long.parseLong(move[3]);
+            if (kind < 0 || move[0].length() != 1 || row >= recording.numRows || col >= recording.numCols
+                || (i > 0 && time < recording.time(i - 1))) {
+               throw new IOException("line " + lineNumber + ": invalid move");
+            }
+            recording.addMove(kind, row, col, time);
+         }
+         return recording;
+      }
+      catch (NumberFormatException e) {
+         throw new IOException("invalid number: " + e.getMessage());
+      }
+   }
+
+
+   // the next line, split at spaces into the given number of fields
+   private static String[] fields(BufferedReader in, int numFields, int lineNumber) throws IOException {
+      String line = in.readLine();
+      String[] fields = (line == null) ? new String[0] : line.trim().split(" +");
+      if (fields.length != numFields) {
+         throw new IOException("line " + lineNumber + ": expected " + numFields + " fields");
+      }
+      return fields;
+   }
+
+
+   // a non-negative int
+   private static int number(String field, int lineNumber) throws IOException {
+      int number = Integer.parseInt(field);
+      if (number < 0) {
+         throw new IOException("line " + lineNumber + ": negative number");
+      }
+      return number;
+   }
+
+}
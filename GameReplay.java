@@ -0,0 +1,137 @@
+/**
+   GameReplay
+      plays the moves of a GameRecording on a VisibleField, forwards or backwards, to any point in the game.
+
+      Going to a move doesn't replay the game from the start: every checkpointInterval moves the whole visible state
+      is saved (with VisibleField.copyStatus) the first time playback passes that point, and seek restores the latest
+      checkpoint at or before the target and plays the few moves after it.  So seeking anywhere in a game costs at
+      most checkpointInterval moves plus one copy of the board.
+
+      The VisibleField reports every change to its listeners as usual, so a View showing it stays up to date.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class GameReplay {
+
+   /** A reasonable checkpointInterval */
+   public static final int DEFAULT_CHECKPOINT_INTERVAL = 64;
+
+   private final GameRecording recording;
+   private final VisibleField field;
+   private final int checkpointInterval;
+
+   // checkpoints.get(k) is the state after k * checkpointInterval moves
+   private final List<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+
+   private int position = 0;            // number of moves played
+   private int losingMove = -1;         // the move that uncovered a mine, once it has been played
+
+
+   /**
+      Create a replay, at the start of the game.
+      @param recording  the game to play back
+      @param field  the field to play it on: a new VisibleField on recording.newMineField(), not used for anything else
+      @param checkpointInterval  number of moves between saved states (more means less memory but slower seeks)
+    */
+   public GameReplay(GameRecording recording, VisibleField field, int checkpointInterval) {
+      assert checkpointInterval > 0;
+      this.recording = recording;
+      this.field = field;
+      this.checkpointInterval = checkpointInterval;
+      checkpoints.add(saveState());
+   }
+
+
+   /** @return the VisibleField the moves are played on */
+   public VisibleField getVisibleField() { return field; }
+
+   /** @return the recording being played back */
+   public GameRecording getRecording() { return recording; }
+
+   /** @return the number of moves played so far, in [0, recording.numMoves()] */
+   public int position() { return position; }
+
+   /** @return whether the moves played so far lost the game */
+   public boolean isLost() { return losingMove >= 0 && position > losingMove; }
+
+
+   /**
+      Go to the state after the first move moves of the game.
+      @param move  in [0, recording.numMoves()]
+    */
+   public void seek(int move) {
+      assert move >= 0 && move <= recording.numMoves();
+      if (move < position || move - position > checkpointInterval) {
+         int checkpoint = Math.min(move / checkpointInterval, checkpoints.size() - 1);
+         if (checkpoint * checkpointInterval > position || move < position) {
+            Checkpoint saved = checkpoints.get(checkpoint);
+            field.restoreStatus(saved.statuses, saved.minesLeft);
+            position = checkpoint * checkpointInterval;
+         }
+      }
+      while (position < move) {
+         playMove(position);
+         position++;
+         if (position % checkpointInterval == 0 && position / checkpointInterval == checkpoints.size()) {
+            checkpoints.add(saveState());
+         }
+      }
+   }
+
+
+   /**
+      Find how many moves were made by a time in the game.
+      @param timeMillis  milliseconds since the first move
+      @return the number of moves made at or before that time
+    */
+   public int movesBy(long timeMillis) {
+      int low = 0;                          // binary search for the first move after timeMillis
+      int high = recording.numMoves();
+      while (low < high) {
+         int middle = (low + high) >>> 1;
+         if (recording.time(middle) <= timeMillis) {
+            low = middle + 1;
+         }
+         else {
+            high = middle;
+         }
+      }
+      return low;
+   }
+
+
+   private void playMove(int i) {
+      int row = recording.row(i);
+      int col = recording.col(i);
+      if (recording.kind(i) == GameRecording.CYCLE_GUESS) {
+         field.cycleGuess(row, col);
+      }
+      else if (!field.uncover(row, col)) {
+         losingMove = i;
+      }
+   }
+
+
+   private Checkpoint saveState() {
+      MineField mineField = field.getMineField();
+      byte[] state = new byte[mineField.numRows() * mineField.numCols()];
+      field.copyStatus(0, 0, mineField.numRows(), mineField.numCols(), state, 0);
+      return new Checkpoint(state, field.numMinesLeft());
+   }
+
+
+   // The statuses of a whole field, and its number of mines left, which the statuses alone don't give: a won
+   // field shows every mine as a guess.
+   private static final class Checkpoint {
+      final byte[] statuses;
+      final int minesLeft;
+
+      Checkpoint(byte[] statuses, int minesLeft) {
+         this.statuses = statuses;
+         this.minesLeft = minesLeft;
+      }
+   }
+
+}
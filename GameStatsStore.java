@@ -0,0 +1,542 @@
+/**
+   GameStatsStore
+      a local store of the results of many games (simulated or played), for questions like "what's the win rate
+      by mine density" over hundreds of millions of games, without a database.
+
+      The games are in an append-only log file of fixed-width binary records (RECORD_SIZE bytes, big-endian):
+         seed (long), rows, cols, mines, moves, 3BV (ints), duration in ms (long), won (byte), 3 bytes padding
+      after a HEADER_SIZE byte header ("MSGS", version, record size, zero).
+
+      The log is divided into segments of SEGMENT_RECORDS records.  When a segment is full, a summary of it -- the
+      totals for each board configuration (rows, cols, mines) in it -- is appended to a second file next to the log
+      ("<log>.summary").  All the GroupBy aggregates can be worked out from those totals, so a query reads the
+      summaries of the full segments, and only scans the records of the segment still being filled (or any segment
+      whose summary is missing, e.g., after a crash) -- memory-mapped, in parallel chunks.
+
+      One process appends at a time; queries can run at any time.
+      To print a summary of a log from the command line:
+         java GameStatsStore logFile [all | density | size | mines]
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public final class GameStatsStore implements Closeable {
+
+   public static final int RECORD_SIZE = 40;
+   public static final int HEADER_SIZE = 16;
+   public static final int SEGMENT_RECORDS = 1 << 20;
+
+   private static final byte[] MAGIC = {'M', 'S', 'G', 'S'};
+   private static final int VERSION = 1;
+   private static final int WRITE_BUFFER_SIZE = RECORD_SIZE * 4096;
+   private static final int SCAN_CHUNK_RECORDS = 1 << 18;        // records per parallel scan task
+
+
+   /**
+      How to group the games in aggregate.
+    */
+   public enum GroupBy {
+      /** one group, key 0 */
+      ALL,
+      /** by mines as a whole percentage of the squares (key = 100 * mines / (rows * cols), rounded down) */
+      DENSITY_PERCENT,
+      /** by board size (key = rows * 2^32 + cols) */
+      SIZE,
+      /** by number of mines (key = mines) */
+      MINES;
+
+      long keyOf(Config config) {
+         switch (this) {
+            case DENSITY_PERCENT: return 100L * config.mines / ((long) config.rows * config.cols);
+            case SIZE:            return ((long) config.rows << 32) | config.cols;
+            case MINES:           return config.mines;
+            default:              return 0;
+         }
+      }
+   }
+
+
+   /**
+      The result of one game.
+    */
+   public static final class Game {
+      final long seed;
+      final int rows;
+      final int cols;
+      final int mines;
+      final int moves;
+      final int threeBV;
+      final long durationMillis;
+      final boolean won;
+
+      /**
+         @param seed  the seed the board was made from (or any id of the layout)
+         @param rows  number of rows of the board
+         @param cols  number of columns of the board
+         @param mines  number of mines on the board
+         @param won  whether the game was won
+         @param moves  number of moves (clicks) made
+         @param durationMillis  how long the game took
+         @param threeBV  the board's 3BV (see BoardAnalyzer)
+       */
+      public Game(long seed, int rows, int cols, int mines, boolean won, int moves, long durationMillis, int threeBV) {
+         this.seed = seed;
+         this.rows = rows;
+         this.cols = cols;
+         this.mines = mines;
+         this.won = won;
+         this.moves = moves;
+         this.durationMillis = durationMillis;
+         this.threeBV = threeBV;
+      }
+   }
+
+
+   /**
+      Totals over a group of games.
+    */
+   public static final class Summary {
+      private long games;
+      private long wins;
+      private long moves;
+      private long durationMillis;
+      private long threeBV;
+
+      /** @return number of games */
+      public long games() { return games; }
+
+      /** @return number of games won */
+      public long wins() { return wins; }
+
+      /** @return fraction of the games won */
+      public double winRate() { return (games == 0) ? 0 : (double) wins / games; }
+
+      /** @return mean number of moves per game */
+      public double meanMoves() { return (games == 0) ? 0 : (double) moves / games; }
+
+      /** @return mean duration of a game, in ms */
+      public double meanDurationMillis() { return (games == 0) ? 0 : (double) durationMillis / games; }
+
+      /** @return mean 3BV of the boards */
+      public double meanThreeBV() { return (games == 0) ? 0 : (double) threeBV / games; }
+
+      public String toString() {
+         return String.format("%d games, win rate %.4f, mean moves %.1f, mean duration %.0f ms, mean 3BV %.1f",
+                              games, winRate(), meanMoves(), meanDurationMillis(), meanThreeBV());
+      }
+
+      void add(Summary other) {
+         games += other.games;
+         wins += other.wins;
+         moves += other.moves;
+         durationMillis += other.durationMillis;
+         threeBV += other.threeBV;
+      }
+
+      void add(boolean won, int gameMoves, long gameDurationMillis, int gameThreeBV) {
+         games++;
+         wins += won ? 1 : 0;
+         moves += gameMoves;
+         durationMillis += gameDurationMillis;
+         threeBV += gameThreeBV;
+      }
+   }
+
+
+   // a board configuration; the unit the segment summaries are kept in
+   private static final class Config {
+      final int rows;
+      final int cols;
+      final int mines;
+
+      Config(int rows, int cols, int mines) {
+         this.rows = rows;
+         this.cols = cols;
+         this.mines = mines;
+      }
+
+      public boolean equals(Object other) {
+         if (!(other instanceof Config)) {
+            return false;
+         }
+         Config config = (Config) other;
+         return rows == config.rows && cols == config.cols && mines == config.mines;
+      }
+
+      public int hashCode() {
+         return (rows * 31 + cols) * 31 + mines;
+      }
+   }
+
+
+   private final Path logPath;
+   private final Path summaryPath;
+   private final FileChannel log;
+   private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+   private long numRecords;                                    // including the ones still in writeBuffer
+   private final Map<Config, Summary> currentSegment;          // totals of the records of the last, unfinished segment
+
+
+   /**
+      Open a log to append to, creating it if it doesn't exist.
+      @param logPath  the log file; its summaries go in logPath + ".summary"
+      @throws IOException  if the file can't be opened or isn't a game log
+    */
+   public GameStatsStore(Path logPath) throws IOException {
+      this.logPath = logPath;
+      this.summaryPath = summaryPathOf(logPath);
+      log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      if (log.size() == 0) {
+         ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+         header.put(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).rewind();       // the rest is zero
+         while (header.hasRemaining()) {
+            log.write(header, log.size());
+         }
+      }
+      checkHeader(log);
+      numRecords = (log.size() - HEADER_SIZE) / RECORD_SIZE;          // a partly written last record is dropped
+      log.position(HEADER_SIZE + numRecords * RECORD_SIZE);
+      long segmentStart = numRecords - numRecords % SEGMENT_RECORDS;
+      currentSegment = scan(log, segmentStart, numRecords);
+      if (readSummaries(summaryPath).size() < segmentStart / SEGMENT_RECORDS) {
+         rebuildSummaries(segmentStart / SEGMENT_RECORDS);
+      }
+   }
+
+
+   /**
+      Append a game to the log (buffered; see flush).
+      @param game  the game
+      @throws IOException  if the log can't be written
+      @throws IllegalArgumentException  if the game's board has no squares
+    */
+   public void append(Game game) throws IOException {
+      if (game.rows <= 0 || game.cols <= 0) {                   // GroupBy.DENSITY_PERCENT divides by the size
+         throw new IllegalArgumentException("no squares on a " + game.rows + " x " + game.cols + " board");
+      }
+      if (!writeBuffer.hasRemaining()) {
+         flushBuffer();
+      }
+      writeBuffer.putLong(game.seed).putInt(game.rows).putInt(game.cols).putInt(game.mines).putInt(game.moves)
+                 .putInt(game.threeBV).putLong(game.durationMillis).put((byte) (game.won ? 1 : 0))
+                 .put((byte) 0).put((byte) 0).put((byte) 0);
+      addTo(currentSegment, game.rows, game.cols, game.mines, game.won, game.moves, game.durationMillis, game.threeBV);
+      numRecords++;
+      if (numRecords % SEGMENT_RECORDS == 0) {                // segment full: its records, then its summary
+         flushBuffer();
+         appendSummary(currentSegment);
+         currentSegment.clear();
+      }
+   }
+
+
+   /**
+      Write the buffered games to the log, so queries see them.
+      @throws IOException  if the log can't be written
+    */
+   public void flush() throws IOException {
+      flushBuffer();
+   }
+
+
+   /**
+      Flush and close the log.
+      @throws IOException  if the log can't be written
+    */
+   public void close() throws IOException {
+      try {
+         flushBuffer();
+      }
+      finally {
+         log.close();
+      }
+   }
+
+
+   /** @return the number of games appended to the log, including buffered ones */
+   public long numGames() { return numRecords; }
+
+
+   /**
+      Aggregate all the games written to a log so far.
+      @param logPath  the log
+      @param groupBy  how to group the games
+      @return the totals of each group, by group key (see GroupBy)
+      @throws IOException  if the log can't be read
+      @throws InterruptedException  if interrupted while the log is scanned
+    */
+   public static SortedMap<Long, Summary> aggregate(Path logPath, GroupBy groupBy)
+                                          throws IOException, InterruptedException {
+      Map<Config, Summary> totals = new HashMap<Config, Summary>();
+      try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ)) {
+         checkHeader(log);
+         long numRecords = (log.size() - HEADER_SIZE) / RECORD_SIZE;
+         List<Map<Config, Summary>> summaries = readSummaries(summaryPathOf(logPath));
+         int summarizedSegments = (int) Math.min(summaries.size(), numRecords / SEGMENT_RECORDS);
+         for (int segment = 0; segment < summarizedSegments; segment++) {
+            addAll(totals, summaries.get(segment));
+         }
+         addAll(totals, parallelScan(log, (long) summarizedSegments * SEGMENT_RECORDS, numRecords));
+      }
+
+      SortedMap<Long, Summary> groups = new TreeMap<Long, Summary>();
+      for (Map.Entry<Config, Summary> entry : totals.entrySet()) {
+         long key = groupBy.keyOf(entry.getKey());
+         Summary group = groups.get(key);
+         if (group == null) {
+            group = new Summary();
+            groups.put(key, group);
+         }
+         group.add(entry.getValue());
+      }
+      return groups;
+   }
+
+
+   /**
+      Print the aggregates of a log (see class comment).
+    */
+   public static void main(String[] args) throws IOException, InterruptedException {
+      if (args.length < 1 || args.length > 2) {
+         System.err.println("usage: java GameStatsStore logFile [all | density | size | mines]");
+         System.exit(1);
+      }
+      String grouping = (args.length > 1) ? args[1] : "density";
+      GroupBy groupBy = grouping.equals("all") ? GroupBy.ALL : grouping.equals("size") ? GroupBy.SIZE
+                        : grouping.equals("mines") ? GroupBy.MINES : GroupBy.DENSITY_PERCENT;
+      long start = System.nanoTime();
+      SortedMap<Long, Summary> groups = aggregate(Paths.get(args[0]), groupBy);
+      for (Map.Entry<Long, Summary> group : groups.entrySet()) {
+         long key = group.getKey();
+         String label = (groupBy == GroupBy.SIZE) ? (key >>> 32) + " x " + (key & 0xFFFFFFFFL)
+                        : (groupBy == GroupBy.DENSITY_PERCENT) ? key + "%" : Long.toString(key);
+         System.out.println(label + ": " + group.getValue());
+      }
+      System.err.printf("(%.1f ms)%n", (System.nanoTime() - start) / 1e6);
+   }
+
+
+   //------------------------------------------------------------------------------------- log
+
+   private void flushBuffer() throws IOException {
+      writeBuffer.flip();
+      while (writeBuffer.hasRemaining()) {
+         log.write(writeBuffer);
+      }
+      writeBuffer.clear();
+   }
+
+
+   private static void checkHeader(FileChannel log) throws IOException {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      while (header.hasRemaining() && log.read(header, header.position()) > 0) {
+      }
+      header.flip();
+      byte[] magic = new byte[MAGIC.length];
+      if (header.remaining() < HEADER_SIZE) {
+         throw new IOException("not a game statistics log (too short)");
+      }
+      header.get(magic);
+      if (!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION || header.getInt() != RECORD_SIZE) {
+         throw new IOException("not a game statistics log, or an unsupported version");
+      }
+   }
+
+
+   // scans records [start, end) in parallel chunks
+   private static Map<Config, Summary> parallelScan(final FileChannel log, long start, long end)
+                                                    throws IOException, InterruptedException {
+      Map<Config, Summary> totals = new HashMap<Config, Summary>();
+      if (start >= end) {
+         return totals;
+      }
+      ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+      try {
+         List<Future<Map<Config, Summary>>> chunks = new ArrayList<Future<Map<Config, Summary>>>();
+         for (long chunkStart = start; chunkStart < end; chunkStart += SCAN_CHUNK_RECORDS) {
+            final long from = chunkStart;
+            final long to = Math.min(chunkStart + SCAN_CHUNK_RECORDS, end);
+            chunks.add(pool.submit(new Callable<Map<Config, Summary>>() {
+               public Map<Config, Summary> call() throws IOException {
+                  return scan(log, from, to);
+               }
+            }));
+         }
+         for (Future<Map<Config, Summary>> chunk : chunks) {
+            addAll(totals, chunk.get());
+         }
+      }
+      catch (ExecutionException e) {
+         throw (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e.getCause());
+      }
+      finally {
+         pool.shutdownNow();
+      }
+      return totals;
+   }
+
+
+   // the totals of records [start, end), read from a memory mapping; records of boards with no squares (which
+   // append doesn't write) are skipped
+   private static Map<Config, Summary> scan(FileChannel log, long start, long end) throws IOException {
+      Map<Config, Summary> totals = new HashMap<Config, Summary>();
+      if (start >= end) {
+         return totals;
+      }
+      MappedByteBuffer records = log.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + start * RECORD_SIZE,
+                                         (end - start) * RECORD_SIZE);
+      Config last = null;                  // most games in a run have the same configuration: skip the lookup
+      Summary lastSummary = null;
+      for (int position = 0; position < records.capacity(); position += RECORD_SIZE) {
+         int rows = records.getInt(position + 8);
+         int cols = records.getInt(position + 12);
+         int mines = records.getInt(position + 16);
+         if (rows <= 0 || cols <= 0) {
+            continue;
+         }
+         if (last == null || last.rows != rows || last.cols != cols || last.mines != mines) {
+            last = new Config(rows, cols, mines);
+            lastSummary = totals.get(last);
+            if (lastSummary == null) {
+               lastSummary = new Summary();
+               totals.put(last, lastSummary);
+            }
+         }
+         lastSummary.add(records.get(position + 36) != 0, records.getInt(position + 20),
+                         records.getLong(position + 28), records.getInt(position + 24));
+      }
+      return totals;
+   }
+
+
+   private static void addTo(Map<Config, Summary> totals, int rows, int cols, int mines, boolean won, int moves,
+                             long durationMillis, int threeBV) {
+      Config config = new Config(rows, cols, mines);
+      Summary summary = totals.get(config);
+      if (summary == null) {
+         summary = new Summary();
+         totals.put(config, summary);
+      }
+      summary.add(won, moves, durationMillis, threeBV);
+   }
+
+
+   private static void addAll(Map<Config, Summary> totals, Map<Config, Summary> more) {
+      for (Map.Entry<Config, Summary> entry : more.entrySet()) {
+         Summary summary = totals.get(entry.getKey());
+         if (summary == null) {
+            summary = new Summary();
+            totals.put(entry.getKey(), summary);
+         }
+         summary.add(entry.getValue());
+      }
+   }
+
+
+   //------------------------------------------------------------------------------------- summaries
+   // The summary file is a sequence of segment summaries: segment number (int), number of configurations (int),
+   // then for each: rows, cols, mines (ints), games, wins, moves, duration, 3BV (longs).
+
+   private static Path summaryPathOf(Path logPath) {
+      return logPath.resolveSibling(logPath.getFileName() + ".summary");
+   }
+
+
+   private void appendSummary(Map<Config, Summary> segment) throws IOException {
+      try (OutputStream file = Files.newOutputStream(summaryPath, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+           DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+         writeSummary(out, (int) (numRecords / SEGMENT_RECORDS - 1), segment);
+      }
+   }
+
+
+   // rewrites the summary file from the log, for the first numSegments (full) segments
+   private void rebuildSummaries(long numSegments) throws IOException {
+      try (OutputStream file = Files.newOutputStream(summaryPath);
+           DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+         for (long segment = 0; segment < numSegments; segment++) {
+            writeSummary(out, (int) segment, scan(log, segment * SEGMENT_RECORDS, (segment + 1) * SEGMENT_RECORDS));
+         }
+      }
+   }
+
+
+   private static void writeSummary(DataOutputStream out, int segment, Map<Config, Summary> totals) throws IOException {
+      out.writeInt(segment);
+      out.writeInt(totals.size());
+      for (Map.Entry<Config, Summary> entry : totals.entrySet()) {
+         Config config = entry.getKey();
+         Summary summary = entry.getValue();
+         out.writeInt(config.rows);
+         out.writeInt(config.cols);
+         out.writeInt(config.mines);
+         out.writeLong(summary.games);
+         out.writeLong(summary.wins);
+         out.writeLong(summary.moves);
+         out.writeLong(summary.durationMillis);
+         out.writeLong(summary.threeBV);
+      }
+   }
+
+
+   // the summaries of segments 0, 1, ... as far as they are complete and in order
+   private static List<Map<Config, Summary>> readSummaries(Path summaryPath) throws IOException {
+      List<Map<Config, Summary>> summaries = new ArrayList<Map<Config, Summary>>();
+      if (!Files.exists(summaryPath)) {
+         return summaries;
+      }
+      try (InputStream file = Files.newInputStream(summaryPath);
+           DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+         while (true) {
+            Map<Config, Summary> totals = new HashMap<Config, Summary>();
+            if (in.readInt() != summaries.size()) {
+               break;
+            }
+            int numConfigs = in.readInt();
+            for (int i = 0; i < numConfigs; i++) {
+               Config config = new Config(in.readInt(), in.readInt(), in.readInt());
+               Summary summary = new Summary();
+               summary.games = in.readLong();
+               summary.wins = in.readLong();
+               summary.moves = in.readLong();
+               summary.durationMillis = in.readLong();
+               summary.threeBV = in.readLong();
+               totals.put(config, summary);
+            }
+            summaries.add(totals);
+         }
+      }
+      catch (EOFException e) {
+         // the end of the file, or a summary cut short: use the ones read so far
+      }
+      return summaries;
+   }
+
+}
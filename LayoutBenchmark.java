@@ -0,0 +1,65 @@
+/**
+   LayoutBenchmark
+      times a flood fill and a 3 x 3 neighbourhood scan of a wide board in each CellLayout, to see which layout
+      suits a board size on this machine.  The boards have the same mines in every layout (same seed).
+
+      Usage: java LayoutBenchmark [rows cols mines repeats]      (default 1000 x 10000, 50000 mines, 5 repeats)
+      Run with enough heap for a few boards at once, e.g., -Xmx2g.
+ */
+
+public class LayoutBenchmark {
+
+   public static void main(String[] args) {
+      int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+      int cols = (args.length > 1) ? Integer.parseInt(args[1]) : 10000;
+      int mines = (args.length > 2) ? Integer.parseInt(args[2]) : 50000;
+      int repeats = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+
+      System.out.printf("%d x %d, %d mines; best of %d runs%n", rows, cols, mines, repeats);
+      System.out.printf("%-10s %14s %14s %14s%n", "layout", "fill (ms)", "scan (ms)", "uncovered");
+      for (int run = 0; run < 2; run++) {                      // the first round warms up the JIT
+         for (CellLayout layout : CellLayout.values()) {
+            long bestFill = Long.MAX_VALUE;
+            long bestScan = Long.MAX_VALUE;
+            int uncovered = 0;
+            for (int i = 0; i < repeats; i++) {
+               MineField mineField = new MineField(rows, cols, mines, 1, layout);
+               mineField.populateMineField(rows / 2, cols / 2);
+               VisibleField field = new VisibleField(mineField);
+
+               long start = System.nanoTime();
+               field.uncover(rows / 2, cols / 2);
+               bestFill = Math.min(bestFill, System.nanoTime() - start);
+
+               start = System.nanoTime();
+               uncovered = scan(field);
+               bestScan = Math.min(bestScan, System.nanoTime() - start);
+            }
+            if (run == 1) {
+               System.out.printf("%-10s %14.1f %14.1f %14d%n", layout, bestFill / 1e6, bestScan / 1e6, uncovered);
+            }
+         }
+      }
+   }
+
+
+   // reads the 3 x 3 neighbourhood of every square: counts the uncovered squares with an uncovered neighbour above
+   // or below (the reads that are a whole row apart in ROW_MAJOR)
+   private static int scan(VisibleField field) {
+      MineField mineField = field.getMineField();
+      int count = 0;
+      for (int row = 1; row < mineField.numRows() - 1; row++) {
+         for (int col = 1; col < mineField.numCols() - 1; col++) {
+            int neighbours = 0;
+            for (int i = row - 1; i <= row + 1; i++) {
+               for (int j = col - 1; j <= col + 1; j++) {
+                  neighbours += field.isUncovered(i, j) ? 1 : 0;
+               }
+            }
+            count += (field.isUncovered(row, col) && neighbours > 1) ? 1 : 0;
+         }
+      }
+      return count;
+   }
+
+}
@@ -4,18 +4,75 @@
       This class is mutable, because we sometimes need to change it once it's created.
       mutators: populateMineField, resetEmpty
       includes convenience method to tell the number of mines adjacent to a location.
+      
+      The field is one byte per square (see cells), holding whether the square has a mine, its number of adjacent
+      mines (kept up to date as mines are placed, so numAdjacentMines is a lookup), and 3 bits of visible state
+      that the first VisibleField covering this field uses instead of an array of its own.  So a game's whole board
+      is one byte per square, and everything uncover needs about a square is in the same byte.
+      
+      Removing all the mines (resetEmpty, and populateMineField before it places new ones) is O(1): it starts a new
+      epoch of mineEpochs (see TileEpochs), and the mine bits and counts of a tile not written since then read as 0.
+      
+      The squares are stored in the order of a CellLayout chosen when the field is created (row-major by default);
+      cellOf gives the index of a square in cells.  For boards bigger than memory, the cells can instead be paged
+      to disk (see PagedCells); every access to them goes through cellAt and setCellAt.
  */
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Random;
    
 public class MineField {
    
-   private boolean [][] underlyingMineField;                          // Represents the actual minefield
+   /** Bit layout of a square in cells */
+   static final int MINE_BIT = 0x80;                                  // Square has a mine
+   static final int STATE_SHIFT = 4;                                  // Bits 4..6: visible state (see VisibleField)
+   static final int STATE_MASK = 0x07 << STATE_SHIFT;
+   static final int COUNT_MASK = 0x0F;                                // Bits 0..3: number of adjacent mines
+   
+   /** Represents the actual minefield: the square (row, col) is cells [cellOf(row, col)] */
+   private byte [] cells;
+   private PagedCells pagedCells;                                     // Instead of cells, for a paged field
+   private CellLayout layout = CellLayout.ROW_MAJOR;
+   private boolean stateBitsAdopted = false;                         // Whether a VisibleField uses the state bits
+   private boolean frozen = false;                                    // Made by frozenCopy: never changes
+   
+   /** The mine bits and counts of a square are only valid if its tile is current (see TileEpochs); they are 0 if not */
+   private TileEpochs mineEpochs;
+   private int numMinesPlaced = 0;                                    // No. of mines on the field now
    private int numOfRows;
    private int numOfCols;
    private int numOfMines;
    private Random generator = new Random();                           //Single Random object used to populate till an object is in scope (like PA1)
    
+   /** Mines moved by relocateMine since the mines were last placed, to undo them (see restoreLayout):
+       relocations [2 * k] is the square (row * numOfCols + col) the k-th one moved from, relocations [2 * k + 1] to */
+   
+   private int [] relocations = new int [0];
+   private int numRelocations = 0;
+   
+   /** Openings of the current layout (see labelOpenings), computed the first time they're needed after the mines change.
+       openingOfSquare [row * numOfCols + col] is the opening an empty square belongs to, or -1 for other squares.
+       The squares of opening r are openingSquares [openingStart [r] .. openingStart [r + 1]): first its empty squares,
+       then, from openingBorderStart [r], the numbered squares around it.  relocateMine relabels only the openings
+       near the mine, as new openings at the end; the squares listed for the ones it replaced are counted in
+       openingSquaresDropped, until there are enough of them to label all the openings again */
+   
+   private int [] openingOfSquare;
+   private int [] openingStart;
+   private int [] openingBorderStart;
+   private int [] openingSquares;
+   private int numOpenings;
+   private int numOpeningSquaresListed;
+   private int openingSquaresDropped;
+   private int [] lastOpeningListedIn;                                  // So a border square is listed once per opening
+   private boolean openingsAreCurrent = false;
+   
+   /** Bitboard of the squares with no mine and no adjacent mines (see zeroCountBits), computed when first needed */
+   private long [] zeroCountBits;
+   private boolean zeroCountBitsAreCurrent = false;
+   
    
    /**
       Create a minefield with same dimensions as the given array, and populate it with the mines in the array
@@ -24,7 +81,21 @@ public class MineField {
       @param mineData  the data for the mines; must have at least one row and one col.
     */
    
-   public MineField(boolean[][] mineData) {                              // Total no. of lines : 12
+   public MineField(boolean[][] mineData) {                              // Total no. of lines : 1
+      
+      this(mineData, CellLayout.ROW_MAJOR);
+      
+   }
+   
+   
+   
+   /**
+      Same as the 1-arg constructor, but storing the squares in the given layout.
+      @param mineData  the data for the mines; must have at least one row and one col.
+      @param layout  the order to store the squares in
+    */
+   
+   public MineField(boolean[][] mineData, CellLayout layout) {           // Total no. of lines : 19
       
       /* For array declared as : private static boolean[][] empty = {{}}, running program with -ea flag disabled 
          creates a gameboard with no sqaures on it - UNDEFINED STATE. For enabled -ea flag, we get assertion error in this case 
@@ -34,21 +105,44 @@ public class MineField {
       
       numOfRows = mineData.length;
       numOfCols = mineData[0].length;
+      this.layout = layout;
       int mineTotal = 0;
       
-      // Instance var points to mineData to enable data passing to other methods of class, eg , hasMine(row,col) method
-      underlyingMineField = mineData;              
+      // Copying the mines from mineData (defensive copying), with all the adjacent mine counts worked out at once 
+      byte [] counts = new byte [numOfRows * numOfCols];
+      AdjacencyCounter.BEST.count(mineData, counts);
+      
+      if (layout == CellLayout.ROW_MAJOR) {
+         
+         cells = counts;
+         
+      }
+      
+      else {
+         
+         cells = new byte [layout.size(numOfRows, numOfCols)];
+         
+         for (int i = 0; i < numOfRows; i++) {
+            
+            for (int j = 0; j < numOfCols; j++) {
+               
+               cells [cellOf(i,j)] = counts [i * numOfCols + j];
+               
+            }
+            
+         }
+         
+      }
       
-      // Creating a new local array and populating it with mines from mineData to enable defensive copying
-      boolean [][] newMineField = new boolean [numOfRows][numOfCols];  
+      mineEpochs = new TileEpochs(cells.length);
          
       for (int i = 0; i < numOfRows; i++) { 
             
          for (int j = 0; j < numOfCols; j++) {
             
-            if (hasMine(i,j)) {
+            if (mineData [i][j]) {
                
-               newMineField [i][j] = true ;
+               cells [cellOf(i,j)] |= MINE_BIT;
                mineTotal ++;
                
             }
@@ -57,11 +151,9 @@ public class MineField {
          
       }
       
-      // Instance var now points to the newly created array
-      underlyingMineField = newMineField;
-      
       // Keeping track of value to be passed to numMines()
       numOfMines = mineTotal;
+      numMinesPlaced = mineTotal;
       
    }
                                                                                   
@@ -77,7 +169,16 @@ public class MineField {
       PRE: numRows > 0 and numCols > 0 and 0 <= numMines < (1/3 of total number of field locations). 
     */
    
-   public MineField(int numRows, int numCols, int numMines) {            // Total no. of lines : 8
+   public MineField(int numRows, int numCols, int numMines) {            // Total no. of lines : 1
+      
+      this(numRows, numCols, numMines, CellLayout.ROW_MAJOR, null);
+      
+   }
+   
+   
+   
+   // The 3-arg constructor, storing the squares in the given layout, in pagedCells if it's not null
+   private MineField(int numRows, int numCols, int numMines, CellLayout layout, PagedCells pagedCells) { // Total no. of lines : 11
       
       numOfRows = numRows;
       numOfCols = numCols;
@@ -93,21 +194,158 @@ public class MineField {
       
       assert numOfMines >= 0 && numOfMines < limit / 3.0;
      
-      // Creating an empty minefield with no mines ( i.e, all squares have 'false' value)
-      underlyingMineField = new boolean [numOfRows][numOfCols];
+      // Creating an empty minefield with no mines ( i.e, all squares are 0: no mine, no adjacent mines)
+      this.layout = layout;
+      this.pagedCells = pagedCells;
+      cells = (pagedCells == null) ? new byte [layout.size(numOfRows, numOfCols)] : null;
+      mineEpochs = new TileEpochs(layout.size(numOfRows, numOfCols));
       
-      for (int i = 0; i < numOfRows; i++) {
+   }
+   
+   
+   
+   /**
+      Same as the 3-arg constructor, but the random placements of the mines made by populateMineField come from a
+      generator with the given seed, so the same seed and first square always give the same layout (used to
+      reproduce boards, e.g., by BoardAnalyzer).
+      @param numRows  number of rows this minefield will have, must be positive
+      @param numCols  number of columns this minefield will have, must be positive
+      @param numMines   number of mines this minefield will have,  once we populate it.
+      @param seed   seed for the random placement of the mines
+      PRE: numRows > 0 and numCols > 0 and 0 <= numMines < (1/3 of total number of field locations). 
+    */
+   
+   public MineField(int numRows, int numCols, int numMines, long seed) { // Total no. of lines : 2
+      
+      this(numRows, numCols, numMines);
+      
+      generator = new Random(seed);
+      
+   }
+   
+   
+   
+   /**
+      Same as the 4-arg constructor, but storing the squares in the given layout (e.g., CellLayout.MORTON for fewer
+      cache misses on a very wide board).
+      @param numRows  number of rows this minefield will have, must be positive
+      @param numCols  number of columns this minefield will have, must be positive
+      @param numMines   number of mines this minefield will have,  once we populate it.
+      @param seed   seed for the random placement of the mines
+      @param layout  the order to store the squares in
+      PRE: numRows > 0 and numCols > 0 and 0 <= numMines < (1/3 of total number of field locations). 
+    */
+   
+   public MineField(int numRows, int numCols, int numMines, long seed, CellLayout layout) { // Total no. of lines : 2
+      
+      this(numRows, numCols, numMines, layout, null);
+      
+      generator = new Random(seed);
+      
+   }
+   
+   
+   
+   /**
+      Same as the 5-arg constructor, but only keeping about memoryBudget bytes of the board in memory, and the rest
+      in a page file (see PagedCells), for boards bigger than memory.  Use CellLayout.TILED or MORTON so a 3 x 3
+      neighbourhood is on as few pages as possible.  The first VisibleField on the field keeps its state in the
+      paged cells too; uncovering on it doesn't use the openings, which need memory for the whole board.
+      @param numRows  number of rows this minefield will have, must be positive
+      @param numCols  number of columns this minefield will have, must be positive
+      @param numMines   number of mines this minefield will have,  once we populate it.
+      @param seed   seed for the random placement of the mines
+      @param layout  the order to store the squares in
+      @param pageFile  the scratch file for the pages; replaced if it exists, and deleted by close
+      @param memoryBudget  about how many bytes of the board to keep in memory (at least 1 MB)
+      @throws IOException  if the page file can't be created
+      PRE: numRows > 0 and numCols > 0 and 0 <= numMines < (1/3 of total number of field locations). 
+    */
+   
+   public MineField(int numRows, int numCols, int numMines, long seed, CellLayout layout, Path pageFile, 
+                    long memoryBudget) throws IOException {              // Total no. of lines : 2
+      
+      this(numRows, numCols, numMines, layout, new PagedCells(layout.size(numRows, numCols), pageFile, memoryBudget));
+      
+      generator = new Random(seed);
+      
+   }
+      
+   
+   
+   /**
+      Create a minefield with no mines, and numMines() == 0, for code in this package that then adds the mines one
+      at a time with placeMine (e.g., MineFieldIO builds a MineField this way straight from a file, without the
+      intermediate boolean[][] that the other constructor needs).
+      @param numRows  number of rows this minefield will have, must be positive
+      @param numCols  number of columns this minefield will have, must be positive
+    */
+   
+   MineField(int numRows, int numCols) {                                 // Total no. of lines : 5
+      
+      assert numRows > 0 && numCols > 0;
+      
+      numOfRows = numRows;
+      numOfCols = numCols;
+      
+      cells = new byte [numOfRows * numOfCols];                          // New array is all 0, i.e., no mines
+      mineEpochs = new TileEpochs(cells.length);
+      
+   }
+   
+   
+   
+   // The copy made by frozenCopy: the mines and counts of original, in memory, with the openings and the zero count
+   // bitboard worked out now, since a frozen field must not change (not even lazily) once it's shared
+   private MineField(MineField original) {                               // Total no. of lines : 12
       
+      numOfRows = original.numOfRows;
+      numOfCols = original.numOfCols;
+      numOfMines = original.numMinesPlaced;
+      numMinesPlaced = original.numMinesPlaced;
+      layout = original.layout;
+      cells = new byte [layout.size(numOfRows, numOfCols)];
+      mineEpochs = new TileEpochs(cells.length);                         // Every tile current, for good
+      
+      for (int i = 0; i < numOfRows; i++) {
+         
          for (int j = 0; j < numOfCols; j++) {
-          
-            underlyingMineField [i][j] = false;
+            
+            int cell = cellOf(i,j);                                      // Same layout, so same cell in both
+            cells [cell] = (byte) ((original.hasMine(i,j) ? MINE_BIT : 0) | original.adjacentMinesAt(cell));
             
          }
          
       }
       
+      openingOf(0,0);
+      zeroCountBits();
+      frozen = true;
+      
    }
+   
+   
+   
+   /**
+      Puts a mine at (row, col) and counts it in numMines().  Used with the 2-arg constructor.
+      @param row  row of the mine
+      @param col  column of the mine
+      PRE: inRange(row, col) and !hasMine(row, col)
+    */
+   
+   void placeMine(int row, int col) {                                    // Total no. of lines : 4
+      
+      checkNotFrozen();
       
+      assert inRange(row,col) && !hasMine(row,col);
+      
+      addMine(row,col);
+      numOfMines ++;
+      openingsAreCurrent = false;
+      zeroCountBitsAreCurrent = false;
+      
+   }
+   
    
    
    /**
@@ -118,23 +356,17 @@ public class MineField {
       PRE: inRange(row, col)
     */
    
-   public void populateMineField(int row, int col) {                     // Total no. of lines : 11
+   public void populateMineField(int row, int col) {                     // Total no. of lines : 16
     
-      assert inRange(row,col);                                           // Checks row and col are in range as per inRange(row,col) method
+      checkNotFrozen();
       
-      for (int i = 0; i < numOfRows; i++) {                              // Removes any current mines on the minefield
-         
-         for (int j = 0; j < numOfCols; j++) {
+      assert inRange(row,col);                                           // Checks row and col are in range as per inRange(row,col) method
       
-            if (hasMine(i,j)) {
-         
-               underlyingMineField [i][j] = false;
-               
-            }
-            
-         }
-         
-      }
+      // JFR event covering the clearing and the placement of the mines
+      GameEvents.PopulateMineFieldEvent event = new GameEvents.PopulateMineFieldEvent();
+      event.begin();
+      int squaresChanged = numMinesPlaced;
+      removeAllMines();                                                  // Removes any current mines on the minefield
       
       /** Generates numMines() mines randomly to populate minefield.
           Range of nos. is 0 (inclusive) and numOfRows or numOfCols (exclusive). So , nos. are generated within array range.*/
@@ -145,204 +377,302 @@ public class MineField {
          int randomCol = generator.nextInt(numOfCols);
       
          // Keeps regenerating new mine location if location is (row,col) or already has a mine 
-         while(randomRow == row && randomCol == col || underlyingMineField [randomRow][randomCol]) {
+         while(randomRow == row && randomCol == col || hasMine(randomRow,randomCol)) {
          
             randomRow = generator.nextInt(numOfRows);
             randomCol = generator.nextInt(numOfCols);
             
          }
        
-         underlyingMineField [randomRow][randomCol] = true;              // Assigns 'true' value or mine at the generated location
+         addMine(randomRow,randomCol);                                   // Puts a mine at the generated location
+         squaresChanged ++;
          
       }
       
+      event.end();
+      if (event.shouldCommit()) {
+         event.rows = numOfRows;
+         event.cols = numOfCols;
+         event.squaresChanged = squaresChanged;
+         event.commit();
+      }
+      
    }
       
       
   
    /**
-      Reset the minefield to all empty squares.  This does not affect numMines(), numRows() or numCols()
-      Thus, after this call, the actual number of mines in the minefield does not match numMines().  
-      Note: This is the state the minefield is in at the beginning of a game.
+      Moves the mine at (fromRow, fromCol) to (toRow, toCol), updating only the counts of the squares around the two
+      (e.g., BoardPool moves a mine off the first square clicked on a board it populated before the click).  If the
+      openings or the zero count bits have been worked out, they're kept up to date too, again only around the two
+      squares (see relabelOpeningsNear).  This does not affect numMines().  restoreLayout moves it back.
+      @param fromRow  row of the mine
+      @param fromCol  column of the mine
+      @param toRow  row to move it to
+      @param toCol  column to move it to
+      PRE: hasMine(fromRow, fromCol) and inRange(toRow, toCol) and !hasMine(toRow, toCol)
     */
    
-   public void resetEmpty() {                                            // Total no. of lines : 3
+   public void relocateMine(int fromRow, int fromCol, int toRow, int toCol) { // Total no. of lines : 7
       
-      /** Resets all squares to empty state, i.e, removes all mines from minefield
-          numMines(), numRows() or numCols() are not affected */
+      checkNotFrozen();
       
-      for (int i = 0; i < numOfRows; i++) {                     
-         
-         for (int j = 0; j < numOfCols; j++) {
+      assert hasMine(fromRow,fromCol) && inRange(toRow,toCol) && !hasMine(toRow,toCol);
       
-            underlyingMineField [i][j] = false;
-            
-         }
+      removeMine(fromRow,fromCol);
+      addMine(toRow,toCol);
+      relabelOpeningsNear(fromRow,fromCol,toRow,toCol);
+      
+      if (2 * numRelocations == relocations.length) {
+         
+         relocations = Arrays.copyOf(relocations, Math.max(2, 2 * relocations.length));
          
       }
       
-   }
-            
-        
+      relocations [2 * numRelocations] = fromRow * numOfCols + fromCol;
+      relocations [2 * numRelocations + 1] = toRow * numOfCols + toCol;
+      numRelocations ++;
       
+   }
+   
+   
+   
    /**
-     Returns the number of mines adjacent to the specified mine location (not counting a possible 
-     mine at (row, col) itself).
-     Diagonals are also considered adjacent, so the return value will be in the range [0,8]
-     @param row  row of the location to check
-     @param col  column of the location to check
-     @return  the number of mines adjacent to the square at (row, col)
-     PRE: inRange(row, col)
-   */
+      The "relocate" alternative to populateMineField for a first click on a layout that must be kept (a seeded,
+      pregenerated or imported one): if there's a mine at (row, col), moves just that mine to a free square, chosen
+      with the same random generator as populateMineField (so a seeded field always moves it to the same square).
+      Costs O(1) instead of rebuilding the field, plus the size of the openings next to the two squares if they have
+      been worked out (see relocateMine), except on a field with hardly any free squares.
+      @param row  row of the square to clear
+      @param col  column of the square to clear
+      @return whether a mine was moved (false if there was none, or if there are no other free squares)
+      PRE: inRange(row, col)
+    */
    
-   public int numAdjacentMines(int row, int col) {                       // Total no. of lines : 26
-      
-      assert inRange(row,col);
+   public boolean relocateMineFrom(int row, int col) {                 // Total no. of lines : 14
       
-      int adjacentMines = 0;                                             // Holds number of adjacent mines for a square
+      checkNotFrozen();
       
-      /** All the below 'if' blocks have following structure:
-          Outer 'if' : Checks if the location of the specified neighbour is within range 
-          Inner 'if' : Checks if there is a mine at the neighbour's location. If so, increments adjacentMines 
-          Hence, checks all the 8 neighbours surrounding a square. Does not count possible mine at (row,col) itself */
+      assert inRange(row,col);
       
-      if (inRange(row-1, col-1)) {                                       // Checks neighbour to 'North - West'
-         
-         if (hasMine(row-1, col-1)) {
-            adjacentMines ++;
-         }
-         
-      }
-             
-       if (inRange(row-1, col)) {                                        // Checks neighbour to 'North' 
-          
-          if (hasMine(row-1, col)) {
-             adjacentMines ++;
-         }
-          
-      }
-             
-      if (inRange(row-1, col+1)) {                                       // Checks neighbour to 'North - East' 
-         
-         if (hasMine(row-1, col+1)) {
-            adjacentMines ++;
-         }
-         
-      }
-             
-      if (inRange(row, col-1)) {                                         // Checks neighbour to 'West' 
+      if (!hasMine(row,col)) {
          
-         if (hasMine(row, col-1)) {
-            adjacentMines ++;
-         }
+         return false;
          
       }
-             
-      if (inRange(row, col+1)) {                                         // Checks neighbour to 'East' 
-         
-         if (hasMine(row, col+1)) {
-            adjacentMines ++;
-         }
+      
+      // A few random tries find a free square unless nearly all are mines; then scan from a random square
+      
+      for (int tries = 0; tries < 64; tries++) {
          
-      }
-             
-      if (inRange(row+1, col-1)) {                                       // Checks neighbour to 'South - West' 
+         int toRow = generator.nextInt(numOfRows);
+         int toCol = generator.nextInt(numOfCols);
          
-         if (hasMine(row+1, col-1)) {
-            adjacentMines ++;
+         if (!hasMine(toRow,toCol)) {
+            
+            relocateMine(row,col,toRow,toCol);
+            return true;
+            
          }
          
       }
-             
-             
-      if (inRange(row+1, col)) {                                         // Checks neighbour to 'South' 
-         
-         if (hasMine(row+1, col)) {
-            adjacentMines ++;
-         }
+      
+      int start = generator.nextInt(numOfRows * numOfCols);
+      
+      for (int k = 0; k < numOfRows * numOfCols; k++) {
          
-      }
-             
-      if (inRange(row+1, col+1)) {                                       // Checks neighbour to 'South - East' 
+         int square = (start + k) % (numOfRows * numOfCols);
          
-         if (hasMine(row+1, col+1)) {
-            adjacentMines ++;
+         if (!hasMine(square / numOfCols, square % numOfCols)) {
+            
+            relocateMine(row,col,square / numOfCols,square % numOfCols);
+            return true;
+            
          }
          
       }
-             
-      return adjacentMines;
+      
+      return false;
       
    }
    
    
    
    /**
-      Returns true iff (row,col) is a valid field location.  Row numbers and column numbers
-      start from 0.
-      @param row  row of the location to consider
-      @param col  column of the location to consider
-      @return whether (row, col) is a valid field location
-   */
+      Moves back every mine moved by relocateMine (or relocateMineFrom) since the mines were last placed, so the
+      field has its original layout again (e.g., for the next game on a fixed layout).  Like relocateMine, keeps the
+      openings and the zero count bits up to date around the squares.  Does nothing if no mine was moved.
+    */
    
-   public boolean inRange(int row, int col) {                            // Total no. of lines : 4
+   public void restoreLayout() {                                         // Total no. of lines : 8
       
-      boolean isInRange = false;
+      checkNotFrozen();
       
-      //Row and col indices start at 0 and must be less than value of numOfRows or numOfCols
-      if (row >= 0 && row < numOfRows && col >= 0 && col < numOfCols) {
+      while (numRelocations > 0) {
          
-         isInRange = true;
+         numRelocations --;
+         int from = relocations [2 * numRelocations];
+         int to = relocations [2 * numRelocations + 1];
+         removeMine(to / numOfCols, to % numOfCols);
+         addMine(from / numOfCols, from % numOfCols);
+         relabelOpeningsNear(to / numOfCols, to % numOfCols, from / numOfCols, from % numOfCols);
          
       }
       
-      return isInRange;       
-      
    }
+      
+      
+  
+   /**
+      Reset the minefield to all empty squares.  This does not affect numMines(), numRows() or numCols()
+      Thus, after this call, the actual number of mines in the minefield does not match numMines().  
+      Note: This is the state the minefield is in at the beginning of a game.
+    */
    
-   
-   
+   public void resetEmpty() {                                            // Total no. of lines : 1
+      
+      checkNotFrozen();
+      
+      /** Resets all squares to empty state, i.e, removes all mines from minefield
+          numMines(), numRows() or numCols() are not affected */
+      
+      removeAllMines();
+      
+   }
+            
+        
+      
    /**
-      Returns the number of rows in the field.
-      @return number of rows in the field
+     Returns the number of mines adjacent to the specified mine location (not counting a possible 
+     mine at (row, col) itself).
+     Diagonals are also considered adjacent, so the return value will be in the range [0,8]
+     @param row  row of the location to check
+     @param col  column of the location to check
+     @return  the number of mines adjacent to the square at (row, col)
+     PRE: inRange(row, col)
    */
    
-   public int numRows() {                                                // Total no. of lines : 1
+   public int numAdjacentMines(int row, int col) {                       // Total no. of lines : 2
       
-      return numOfRows; 
+      assert inRange(row,col);
+      
+      return adjacentMinesAt(cellOf(row,col));
       
    }
    
    
    
    /**
-      Returns the number of columns in the field.
-      @return number of columns in the field
-   */
+      Same as numAdjacentMines, for a square given by its index in the cells (for VisibleField).
+      @param cell  cellOf(row, col) of the square
+      @return  the number of mines adjacent to it
+    */
    
-   public int numCols() {                                                // Total no. of lines : 1
+   int adjacentMinesAt(int cell) {                                       // Total no. of lines : 1
       
-      return numOfCols;    
+      return mineEpochs.isCurrent(cell) ? cellAt(cell) & COUNT_MASK : 0; // Kept up to date by addMine
       
    }
    
    
    
    /**
-      Returns whether there is a mine in this square
-      @param row  row of the location to check
-      @param col  column of the location to check
-      @return whether there is a mine in this square
+      Returns where the square (row, col) is stored in cells(), which depends on the layout.
+      @param row  row of the square
+      @param col  column of the square
+      @return the index of the square's cell
+      PRE: inRange(row, col)
+    */
+   
+   int cellOf(int row, int col) {                                        // Total no. of lines : 1
+      
+      return (layout == CellLayout.ROW_MAJOR) ? row * numOfCols + col : layout.index(row, col, numOfCols);
+      
+   }
+   
+   
+   
+   /**
+      Returns the layout the squares are stored in.
+      @return the layout
+    */
+   
+   public CellLayout cellLayout() {                                      // Total no. of lines : 1
+      
+      return layout;
+      
+   }
+   
+   
+   
+   /**
+      Returns true iff (row,col) is a valid field location.  Row numbers and column numbers
+      start from 0.
+      @param row  row of the location to consider
+      @param col  column of the location to consider
+      @return whether (row, col) is a valid field location
+   */
+   
+   public boolean inRange(int row, int col) {                            // Total no. of lines : 4
+      
+      boolean isInRange = false;
+      
+      //Row and col indices start at 0 and must be less than value of numOfRows or numOfCols
+      if (row >= 0 && row < numOfRows && col >= 0 && col < numOfCols) {
+         
+         isInRange = true;
+         
+      }
+      
+      return isInRange;       
+      
+   }
+   
+   
+   
+   /**
+      Returns the number of rows in the field.
+      @return number of rows in the field
+   */
+   
+   public int numRows() {                                                // Total no. of lines : 1
+      
+      return numOfRows; 
+      
+   }
+   
+   
+   
+   /**
+      Returns the number of columns in the field.
+      @return number of columns in the field
+   */
+   
+   public int numCols() {                                                // Total no. of lines : 1
+      
+      return numOfCols;    
+      
+   }
+   
+   
+   
+   /**
+      Returns whether there is a mine in this square
+      @param row  row of the location to check
+      @param col  column of the location to check
+      @return whether there is a mine in this square
       PRE: inRange(row, col)   
    */ 
    
-   public boolean hasMine(int row, int col) {                            // Total no. of lines : 4
+   public boolean hasMine(int row, int col) {                            // Total no. of lines : 5
        
       assert inRange(row,col);
       
       boolean hasMine = false;
          
-      if (underlyingMineField [row][col]) {                              // Checks if location (row,col) has a 'true' value ,i.e, a mine 
+      int cell = cellOf(row,col);
+      
+      if (mineEpochs.isCurrent(cell) && (cellAt(cell) & MINE_BIT) != 0) {   // Checks if location (row,col) has the mine bit set
                
          hasMine = true;
          
@@ -354,6 +684,200 @@ public class MineField {
    
    
    
+   /**
+      Returns the number of adjacent mines of every square at once, much faster than calling numAdjacentMines
+      for each one (the counts are stored with the mines, so this is one pass over the field).
+      @return a new array with numAdjacentMines(row, col) at index row * numCols() + col
+    */
+   
+   public byte [] adjacentMineCounts() {                                 // Total no. of lines : 13
+      
+      byte [] counts = new byte [numOfRows * numOfCols];
+      
+      // Row-major cells are in the same order as the counts, so each run of current tiles is masked out in bulk
+      // by AdjacencyCounter.BEST (with the Vector API if it's there); stale tiles have no mines, so stay 0
+      if (cells != null && layout == CellLayout.ROW_MAJOR) {
+         
+         int runStart = 0;
+         
+         for (int tile = 0; tile < counts.length; tile += TileEpochs.TILE_SIZE) {
+            
+            if (!mineEpochs.isCurrent(tile)) {                           // Ends the run before it
+               
+               AdjacencyCounter.BEST.unpackCounts(cells, counts, runStart, tile - runStart);
+               runStart = tile + TileEpochs.TILE_SIZE;
+               
+            }
+            
+         }
+         
+         if (runStart < counts.length) {                                 // The run up to the last square
+            
+            AdjacencyCounter.BEST.unpackCounts(cells, counts, runStart, counts.length - runStart);
+            
+         }
+         
+         return counts;
+         
+      }
+      
+      for (int i = 0; i < numOfRows; i++) {
+         
+         for (int j = 0; j < numOfCols; j++) {
+            
+            counts [i * numOfCols + j] = (byte) adjacentMinesAt(cellOf(i,j));
+            
+         }
+         
+      }
+      
+      return counts;
+      
+   }
+   
+   
+   
+   /**
+      Returns the cells of this field (see the bit layout constants), for the VisibleField that adopted the state
+      bits to keep its state in.  The mine bits and counts in it are only valid for current tiles of mineEpochs, so
+      use hasMine and adjacentMinesAt for those.
+      @return the cells, indexed by cellOf(row, col); not a copy.  Null if isPaged()
+    */
+   
+   byte [] cells() {                                                     // Total no. of lines : 1
+      
+      return cells;
+      
+   }
+   
+   
+   
+   /**
+      Returns a frozen copy of this minefield, for many games on one layout (e.g., a daily challenge): the same mines
+      and counts, with nothing about it ever changing again.  Its mutators (populateMineField, resetEmpty,
+      relocateMine, relocateMineFrom, restoreLayout) throw UnsupportedOperationException, and everything other
+      methods would work out lazily is worked out up front, so any number of VisibleFields, on any threads, can share
+      it without locks or copies: each one keeps only its own visible state, since a frozen field never lends its
+      cells (see adoptStateBits).  Hand it to the other threads the usual way (e.g., through an executor or a
+      concurrent collection) so they see it complete.
+      numMines() of the copy is the number of mines on this field now.  A copy of a paged field is in memory.
+      @return the copy (this, if this field is frozen already)
+    */
+   
+   public MineField frozenCopy() {                                       // Total no. of lines : 1
+      
+      return frozen ? this : new MineField(this);
+      
+   }
+   
+   
+   
+   /**
+      Returns whether this is a frozen copy (see frozenCopy), so it never changes.
+      @return whether the field is frozen
+    */
+   
+   public boolean isFrozen() {                                           // Total no. of lines : 1
+      
+      return frozen;
+      
+   }
+   
+   
+   
+   /**
+      Deletes the page file of a paged field (see the 7-arg constructor) and stops its I/O thread; the field, and any
+      VisibleField on it, can't be used after this.  Does nothing for a field kept in memory.
+      @throws IOException  if the page file can't be closed
+    */
+   
+   public void close() throws IOException {                              // Total no. of lines : 3
+      
+      if (pagedCells != null) {
+         
+         pagedCells.close();
+         
+      }
+      
+   }
+   
+   
+   
+   /**
+      Returns whether the cells are paged to disk (see the 7-arg constructor); then cells() is null, and the cells
+      can only be read and written with cellAt and setCellAt.
+      @return whether the field is paged
+    */
+   
+   boolean isPaged() {                                                   // Total no. of lines : 1
+      
+      return pagedCells != null;
+      
+   }
+   
+   
+   
+   /**
+      Returns one cell (see the bit layout constants).  Its mine bit and count are only valid if its tile of
+      mineEpochs is current.
+      @param cell  cellOf(row, col) of the square
+      @return the cell
+    */
+   
+   int cellAt(int cell) {                                                // Total no. of lines : 1
+      
+      return (pagedCells == null) ? cells [cell] : pagedCells.get(cell);
+      
+   }
+   
+   
+   
+   /**
+      Changes one cell (see the bit layout constants).
+      @param cell  cellOf(row, col) of the square
+      @param value  its new value (only the low 8 bits are kept)
+    */
+   
+   void setCellAt(int cell, int value) {                                 // Total no. of lines : 5
+      
+      if (pagedCells == null) {
+         
+         cells [cell] = (byte) value;
+         
+      }
+      
+      else {
+         
+         pagedCells.set(cell, (byte) value);
+         
+      }
+      
+   }
+   
+   
+   
+   /**
+      Lets the first VisibleField that asks use the state bits of the cells for its visible state.  Only one can,
+      because there's room for one state per square; others keep their state in an array of their own.  A frozen
+      field (see frozenCopy) lends them to none, since it's shared.
+      @return true if the caller may now use the state bits, false if another VisibleField already does
+    */
+   
+   boolean adoptStateBits() {                                            // Total no. of lines : 5
+      
+      if (stateBitsAdopted || frozen) {
+         
+         return false;
+         
+      }
+      
+      stateBitsAdopted = true;
+      return true;
+      
+   }
+   
+   
+   
    /**
       Returns the number of mines you can have in this minefield.  For mines created with the 3-arg constructor,
       some of the time this value does not match the actual number of mines currently on the field.  See doc for that
@@ -366,6 +890,484 @@ public class MineField {
       return numOfMines;  
       
    }
+   
+   
+   
+   /**
+      Returns the opening that an empty square belongs to.  An opening is a connected region of squares with no mine
+      and no adjacent mines; uncovering any square of it uncovers all of it, plus the numbered squares around it.
+      The openings are labeled once per layout, the first time this is called after the mines change.
+      @param row  row of the square
+      @param col  column of the square
+      @return the opening's number, to use with openingSquares(), or -1 if the square has a mine or adjacent mines
+      PRE: inRange(row, col)
+    */
+   
+   int openingOf(int row, int col) {                                     // Total no. of lines : 5
+      
+      assert inRange(row,col);
+      
+      if (!openingsAreCurrent) {
+         
+         labelOpenings();
+         
+      }
+      
+      return openingOfSquare [row * numOfCols + col];
+      
+   }
+   
+   
+   
+   /**
+      Returns the squares of all the openings, as row * numCols() + col.  The squares of opening r are the entries
+      [openingStart(r), openingBorderStart(r)) -- its empty squares -- followed by [openingBorderStart(r), openingEnd(r))
+      -- the numbered squares around it.  The array belongs to this MineField and must not be changed.
+      Only valid until the mines change; call openingOf first.
+      @return the squares of the openings
+    */
+   
+   int [] openingSquares() {                                             // Total no. of lines : 1
+      
+      return openingSquares;
+      
+   }
+   
+   
+   
+   /**
+      Returns the squares with no mine and no adjacent mines as a bitboard (see BitboardFill for the bit order),
+      worked out once per layout, the first time this is called after the mines change.
+      @return the bitboard; it belongs to this MineField and must not be changed.  Only valid until the mines change
+    */
+   
+   long [] zeroCountBits() {                                             // Total no. of lines : 11
+      
+      if (!zeroCountBitsAreCurrent) {
          
+         int words = BitboardFill.wordsPerRow(numOfCols);
+         zeroCountBits = new long [numOfRows * words];
+         
+         for (int i = 0; i < numOfRows; i++) {
+            
+            for (int j = 0; j < numOfCols; j++) {
+               
+               if (isEmptySquare(i,j)) {
+                  
+                  zeroCountBits [i * words + (j >>> 6)] |= 1L << j;
+                  
+               }
+               
+            }
+            
+         }
+         
+         zeroCountBitsAreCurrent = true;
+         
+      }
+      
+      return zeroCountBits;
+      
+   }
+   
+   
+   
+   /** @return index in openingSquares() of the first square of opening r */
+   int openingStart(int r) { return openingStart [r]; }
+   
+   /** @return index in openingSquares() of the first numbered square around opening r */
+   int openingBorderStart(int r) { return openingBorderStart [r]; }
+   
+   /** @return index in openingSquares() just past the last square of opening r */
+   int openingEnd(int r) { return openingStart [r + 1]; }
+   
+   
+   
+   /**
+      Finds all the openings of the current layout, with a breadth first search from each empty square that isn't
+      labeled yet (see labelOpening).  O(numRows() * numCols()).
+    */
+   
+   private void labelOpenings() {                                        // Total no. of lines : 16
+      
+      int numSquares = numOfRows * numOfCols;
+      
+      openingOfSquare = new int [numSquares];
+      Arrays.fill(openingOfSquare, -1);
+      
+      lastOpeningListedIn = new int [numSquares];
+      Arrays.fill(lastOpeningListedIn, -1);
+      
+      openingStart = new int [16];
+      openingBorderStart = new int [16];
+      openingSquares = new int [Math.max(16, numSquares / 2)];
+      numOpenings = 0;
+      numOpeningSquaresListed = 0;
+      openingSquaresDropped = 0;
+      
+      for (int first = 0; first < numSquares; first++) {
+         
+         if (openingOfSquare [first] == -1 && isEmptySquare(first / numOfCols, first % numOfCols)) {
+            
+            labelOpening(first);
+            
+         }
+         
+      }
+      
+      openingsAreCurrent = true;
+      
+   }
+   
+   
+   
+   /**
+      Labels the opening of an empty square that isn't labeled yet as a new opening, numOpenings, with a breadth
+      first search, and lists its empty squares and then its numbered border squares at the end of openingSquares.
+      A numbered square next to several openings is listed in each of them.  O(size of the opening).
+    */
+   
+   private void labelOpening(int first) {                               // Total no. of lines : 26
+      
+      if (numOpenings + 1 >= openingStart.length) {
+         
+         openingStart = Arrays.copyOf(openingStart, openingStart.length * 2);
+         openingBorderStart = Arrays.copyOf(openingBorderStart, openingBorderStart.length * 2);
+         
+      }
+      
+      int [] squares = openingSquares;
+      int numListed = numOpeningSquaresListed;
+      openingStart [numOpenings] = numListed;
+      
+      // The empty squares are found in the order they're listed, so squares [head .. numListed) is the queue
+      openingOfSquare [first] = numOpenings;
+      squares = listSquare(squares, numListed++, first);
+      
+      for (int head = openingStart [numOpenings]; head < numListed; head++) {
+         
+         int row = squares [head] / numOfCols;
+         int col = squares [head] % numOfCols;
+         
+         for (int i = Math.max(0, row - 1); i <= Math.min(numOfRows - 1, row + 1); i++) {
+            
+            for (int j = Math.max(0, col - 1); j <= Math.min(numOfCols - 1, col + 1); j++) {
+               
+               int neighbour = i * numOfCols + j;
+               
+               if (openingOfSquare [neighbour] == -1 && isEmptySquare(i,j)) {
+                  
+                  openingOfSquare [neighbour] = numOpenings;
+                  squares = listSquare(squares, numListed++, neighbour);
+                  
+               }
+               
+            }
+            
+         }
+         
+      }
+      
+      // Second pass over the empty squares of this opening lists the numbered squares around it
+      openingBorderStart [numOpenings] = numListed;
+      
+      for (int k = openingStart [numOpenings]; k < openingBorderStart [numOpenings]; k++) {
+         
+         int row = squares [k] / numOfCols;
+         int col = squares [k] % numOfCols;
+         
+         for (int i = Math.max(0, row - 1); i <= Math.min(numOfRows - 1, row + 1); i++) {
+            
+            for (int j = Math.max(0, col - 1); j <= Math.min(numOfCols - 1, col + 1); j++) {
+               
+               int neighbour = i * numOfCols + j;
+               
+               if (openingOfSquare [neighbour] == -1 && lastOpeningListedIn [neighbour] != numOpenings) {
+                  
+                  lastOpeningListedIn [neighbour] = numOpenings;
+                  squares = listSquare(squares, numListed++, neighbour);
+                  
+               }
+               
+            }
+            
+         }
+         
+      }
+      
+      numOpenings ++;
+      openingStart [numOpenings] = numListed;
+      openingSquares = squares;
+      numOpeningSquaresListed = numListed;
+      
+   }
+   
+   
+   
+   /**
+      Brings the openings and the zero count bits, if they have been worked out, up to date after a mine moved from
+      (fromRow, fromCol) to (toRow, toCol).  Only squares within one of the two squares can have become empty or
+      stopped being empty, so only the openings with a square within two of them can have grown, merged, shrunk or
+      split: those are relabeled, from their old squares and the squares around the two, as new openings.
+      O(size of those openings).  Once the squares listed for replaced openings add up to more than the board, the
+      openings are left to be labeled again from scratch when next needed, so the arrays don't keep growing.
+    */
+   
+   private void relabelOpeningsNear(int fromRow, int fromCol, int toRow, int toCol) { // Total no. of lines : 27
+      
+      int [] centers = {fromRow, fromCol, toRow, toCol};
+      
+      if (zeroCountBitsAreCurrent) {
+         
+         int words = BitboardFill.wordsPerRow(numOfCols);
+         
+         for (int c = 0; c < centers.length; c += 2) {
+            
+            for (int i = Math.max(0, centers [c] - 1); i <= Math.min(numOfRows - 1, centers [c] + 1); i++) {
+               
+               for (int j = Math.max(0, centers [c + 1] - 1); j <= Math.min(numOfCols - 1, centers [c + 1] + 1); j++) {
+                  
+                  if (isEmptySquare(i,j)) {
+                     
+                     zeroCountBits [i * words + (j >>> 6)] |= 1L << j;
+                     
+                  }
+                  
+                  else {
+                     
+                     zeroCountBits [i * words + (j >>> 6)] &= ~(1L << j);
+                     
+                  }
+                  
+               }
+               
+            }
+            
+         }
+         
+      }
+      
+      if (!openingsAreCurrent) {
+         
+         return;
+         
+      }
+      
+      // The openings that may have changed, each once
+      int [] affected = new int [50];
+      int numAffected = 0;
+      
+      for (int c = 0; c < centers.length; c += 2) {
+         
+         for (int i = Math.max(0, centers [c] - 2); i <= Math.min(numOfRows - 1, centers [c] + 2); i++) {
+            
+            for (int j = Math.max(0, centers [c + 1] - 2); j <= Math.min(numOfCols - 1, centers [c + 1] + 2); j++) {
+               
+               int opening = openingOfSquare [i * numOfCols + j];
+               int k = 0;
+               
+               while (k < numAffected && affected [k] != opening) {
+                  
+                  k++;
+                  
+               }
+               
+               if (opening != -1 && k == numAffected) {
+                  
+                  affected [numAffected++] = opening;
+                  
+               }
+               
+            }
+            
+         }
+         
+      }
+      
+      // Unlabel their squares, then label again from every one that is still empty, and from the squares around the two
+      for (int a = 0; a < numAffected; a++) {
+         
+         for (int k = openingStart [affected [a]]; k < openingBorderStart [affected [a]]; k++) {
+            
+            openingOfSquare [openingSquares [k]] = -1;
+            
+         }
+         
+         openingSquaresDropped += openingStart [affected [a] + 1] - openingStart [affected [a]];
+         
+      }
+      
+      for (int a = 0; a < numAffected; a++) {
+         
+         for (int k = openingStart [affected [a]]; k < openingBorderStart [affected [a]]; k++) {
+            
+            int square = openingSquares [k];                             // openingSquares may grow in labelOpening
+            
+            if (openingOfSquare [square] == -1 && isEmptySquare(square / numOfCols, square % numOfCols)) {
+               
+               labelOpening(square);
+               
+            }
+            
+         }
+         
+      }
+      
+      for (int c = 0; c < centers.length; c += 2) {
+         
+         for (int i = Math.max(0, centers [c] - 1); i <= Math.min(numOfRows - 1, centers [c] + 1); i++) {
+            
+            for (int j = Math.max(0, centers [c + 1] - 1); j <= Math.min(numOfCols - 1, centers [c + 1] + 1); j++) {
+               
+               if (openingOfSquare [i * numOfCols + j] == -1 && isEmptySquare(i,j)) {
+                  
+                  labelOpening(i * numOfCols + j);
+                  
+               }
+               
+            }
+            
+         }
+         
+      }
+      
+      if (openingSquaresDropped > numOfRows * numOfCols) {
+         
+         openingsAreCurrent = false;
+         
+      }
+      
+   }
+   
+   
+   
+   // Whether (row, col) has no mine and no adjacent mines
+   private boolean isEmptySquare(int row, int col) {
+      
+      return !hasMine(row,col) && numAdjacentMines(row,col) == 0;
+      
+   }
+   
+   
+   
+   // Stores square at squares [index], growing the array if needed; returns the (possibly new) array
+   private static int [] listSquare(int [] squares, int index, int square) {
+      
+      if (index == squares.length) {
+         
+         squares = Arrays.copyOf(squares, squares.length * 2);
+         
+      }
+      
+      squares [index] = square;
+      return squares;
+      
+   }
+   
+   
+   
+   // Puts a mine at (row, col), which has none, and adds it to the counts of the squares around it
+   private void addMine(int row, int col) {
+      
+      refreshTile(cellOf(row,col));
+      setCellAt(cellOf(row,col), cellAt(cellOf(row,col)) | MINE_BIT);
+      numMinesPlaced ++;
+      
+      for (int i = Math.max(0, row - 1); i <= Math.min(numOfRows - 1, row + 1); i++) {
+         
+         for (int j = Math.max(0, col - 1); j <= Math.min(numOfCols - 1, col + 1); j++) {
+            
+            if (i != row || j != col) {
+               
+               int cell = cellOf(i,j);
+               refreshTile(cell);
+               setCellAt(cell, cellAt(cell) + 1);                        // The count is in the low bits
+               
+            }
+            
+         }
+         
+      }
+      
+   }
+   
+   
+   
+   // Takes the mine off (row, col), and out of the counts of the squares around it (their tiles are current: the
+   // mine's addMine refreshed them)
+   private void removeMine(int row, int col) {
+      
+      setCellAt(cellOf(row,col), cellAt(cellOf(row,col)) & ~MINE_BIT);
+      numMinesPlaced --;
+      
+      for (int i = Math.max(0, row - 1); i <= Math.min(numOfRows - 1, row + 1); i++) {
+         
+         for (int j = Math.max(0, col - 1); j <= Math.min(numOfCols - 1, col + 1); j++) {
+            
+            if (i != row || j != col) {
+               
+               setCellAt(cellOf(i,j), cellAt(cellOf(i,j)) - 1);
+               
+            }
+            
+         }
+         
+      }
+      
+   }
+   
+   
+   
+   // Removes all the mines in O(1), by making every tile stale (clearing the whole field only when the epochs wrap)
+   private void removeAllMines() {
+      
+      openingsAreCurrent = false;
+      zeroCountBitsAreCurrent = false;
+      numMinesPlaced = 0;
+      numRelocations = 0;
+      
+      if (mineEpochs.advance()) {
+         
+         for (int i = 0; i < layout.size(numOfRows, numOfCols); i++) {
+            
+            setCellAt(i, cellAt(i) & STATE_MASK);                        // Keeps only the visible state
+            
+         }
+         
+      }
+      
+   }
+   
+   
+   
+   // Throws UnsupportedOperationException if the field is frozen (see frozenCopy)
+   private void checkNotFrozen() {
+      
+      if (frozen) {
+         
+         throw new UnsupportedOperationException("frozen MineField can't change");
+         
+      }
+      
+   }
+   
+   
+   
+   // Before a write to a cell: if its tile is stale, clears the mines and counts of the tile (keeping the visible state)
+   private void refreshTile(int cell) {
+      
+      if (mineEpochs.refresh(cell)) {
+         
+         int end = Math.min(layout.size(numOfRows, numOfCols), TileEpochs.tileStart(cell) + TileEpochs.TILE_SIZE);
+         
+         for (int i = TileEpochs.tileStart(cell); i < end; i++) {
+            
+            setCellAt(i, cellAt(i) & STATE_MASK);
+            
+         }
+         
+      }
+      
+   }
+   
 }
-
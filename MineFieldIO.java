@@ -0,0 +1,300 @@
+/**
+   MineFieldIO
+      reads and writes mine field layouts, in a text format or a more compact binary format.
+
+      Text format: a header line with the number of rows and columns, then one line per row with one character per
+      square, '*' for a mine and '.' for no mine.  E.g., the 4 x 4 field in MineSweeperFixed is:
+         4 4
+         ....
+         *...
+         .**.
+         .*.*
+      Lines may end with "\n" or "\r\n".
+
+      Binary format: the 4 bytes "MSWF", the number of rows and of columns (big-endian ints), then each row as
+      (numCols + 7) / 8 bytes, one bit per square (bit 0 of the first byte is column 0), 1 for a mine.
+
+      read memory-maps the file (a window at a time, so files bigger than 2 GB work) and places the mines directly
+      into a new MineField as it goes, so no boolean[][] copy of the layout is ever made.  write streams the layout
+      out through one buffer.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public final class MineFieldIO {
+
+   /** The two file formats for layouts (see class comment) */
+   public enum Format { TEXT, BINARY }
+
+   private static final byte[] MAGIC = {'M', 'S', 'W', 'F'};
+   private static final int BINARY_HEADER_SIZE = MAGIC.length + 2 * Integer.BYTES;
+
+   private static final byte MINE_CHAR = '*';
+   private static final byte EMPTY_CHAR = '.';
+
+   private static final long MAX_WINDOW_SIZE = 1L << 30;         // largest part of the file mapped at once
+   private static final int CHUNK_SIZE = 1 << 16;                // bytes copied out of the mapping per bulk get
+   private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+
+   private MineFieldIO() { }
+
+
+   /**
+      Reads a layout in either format (told apart by the first bytes of the file).
+      @param path  the file to read
+      @return a new MineField with the mines in the file; numMines() is the number of mines in the file
+      @throws IOException  if the file can't be read or is not a valid layout
+    */
+   public static MineField read(Path path) throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+         MappedByteBuffer window = map(channel, 0);
+         if (startsWithMagic(window)) {
+            return readBinary(channel, window);
+         }
+         else {
+            return readText(channel, window);
+         }
+      }
+   }
+
+
+   /**
+      Writes a layout.
+      @param field  the layout to write
+      @param path  the file to write; replaced if it exists
+      @param format  which of the two formats to use
+      @throws IOException  if the file can't be written
+    */
+   public static void write(MineField field, Path path, Format format) throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                  StandardOpenOption.TRUNCATE_EXISTING)) {
+         ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+         if (format == Format.TEXT) {
+            writeText(field, channel, buffer);
+         }
+         else {
+            writeBinary(field, channel, buffer);
+         }
+         flush(channel, buffer);
+      }
+   }
+
+
+   //------------------------------------------------------------------------------------- reading
+
+   private static MineField readText(FileChannel channel, MappedByteBuffer window) throws IOException {
+      int numRows = readNumber(window, ' ');
+      int numCols = readNumber(window, '\n');
+      checkSize(numRows, numCols);
+
+      MineField field = new MineField(numRows, numCols);
+      byte[] chunk = new byte[CHUNK_SIZE];
+      long windowStart = 0;
+      int row = 0;
+      int col = 0;
+
+      while (true) {
+         while (window.hasRemaining()) {
+            int length = Math.min(chunk.length, window.remaining());
+            window.get(chunk, 0, length);
+            for (int i = 0; i < length; i++) {
+               byte c = chunk[i];
+               if (c == MINE_CHAR || c == EMPTY_CHAR) {
+                  if (row >= numRows || col >= numCols) {
+                     throw formatError(row, "more than " + numCols + " squares in a row or more than " + numRows + " rows");
+                  }
+                  if (c == MINE_CHAR) {
+                     field.placeMine(row, col);
+                  }
+                  col++;
+               }
+               else if (c == '\n') {
+                  if (col != numCols) {
+                     throw formatError(row, "expected " + numCols + " squares but found " + col);
+                  }
+                  row++;
+                  col = 0;
+               }
+               else if (c != '\r') {
+                  throw formatError(row, "unexpected character '" + (char) c + "'");
+               }
+            }
+         }
+         windowStart += window.capacity();
+         if (windowStart >= channel.size()) {
+            break;
+         }
+         window = map(channel, windowStart);
+      }
+
+      if (col == numCols) {      // last line had no line end
+         row++;
+         col = 0;
+      }
+      if (row != numRows || col != 0) {
+         throw formatError(row, "expected " + numRows + " rows");
+      }
+      return field;
+   }
+
+
+   private static MineField readBinary(FileChannel channel, MappedByteBuffer window) throws IOException {
+      window.position(MAGIC.length);
+      int numRows = window.getInt();
+      int numCols = window.getInt();
+      checkSize(numRows, numCols);
+      long bytesPerRow = (numCols + 7L) / 8;
+      if (channel.size() != BINARY_HEADER_SIZE + bytesPerRow * numRows) {
+         throw new IOException("file size doesn't match a " + numRows + " x " + numCols + " field");
+      }
+
+      MineField field = new MineField(numRows, numCols);
+      byte[] chunk = new byte[CHUNK_SIZE];
+      long windowStart = 0;
+      long byteIndex = 0;                    // index of the next layout byte, counting from the end of the header
+
+      while (true) {
+         while (window.hasRemaining()) {
+            int length = Math.min(chunk.length, window.remaining());
+            window.get(chunk, 0, length);
+            for (int i = 0; i < length; i++, byteIndex++) {
+               int bits = chunk[i] & 0xFF;
+               if (bits != 0) {
+                  int row = (int) (byteIndex / bytesPerRow);
+                  int firstCol = (int) (byteIndex % bytesPerRow) * 8;
+                  while (bits != 0) {
+                     int col = firstCol + Integer.numberOfTrailingZeros(bits);
+                     if (col >= numCols) {
+                        throw formatError(row, "mine past the last column");
+                     }
+                     field.placeMine(row, col);
+                     bits &= bits - 1;
+                  }
+               }
+            }
+         }
+         windowStart += window.capacity();
+         if (windowStart >= channel.size()) {
+            break;
+         }
+         window = map(channel, windowStart);
+      }
+      return field;
+   }
+
+
+   // maps the part of the file starting at start, at most MAX_WINDOW_SIZE bytes
+   private static MappedByteBuffer map(FileChannel channel, long start) throws IOException {
+      long size = Math.min(MAX_WINDOW_SIZE, channel.size() - start);
+      return channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+   }
+
+
+   private static boolean startsWithMagic(MappedByteBuffer window) {
+      if (window.remaining() < BINARY_HEADER_SIZE) {
+         return false;
+      }
+      for (int i = 0; i < MAGIC.length; i++) {
+         if (window.get(i) != MAGIC[i]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+
+   // a MineField holds at most Integer.MAX_VALUE squares, in one array
+   private static void checkSize(int numRows, int numCols) throws IOException {
+      if (numRows <= 0 || numCols <= 0 || (long) numRows * numCols > Integer.MAX_VALUE) {
+         throw new IOException("invalid size " + numRows + " x " + numCols);
+      }
+   }
+
+
+   // reads a positive decimal number, at most Integer.MAX_VALUE, from the text header, followed by the given
+   // separator (and maybe a '\r')
+   private static int readNumber(ByteBuffer window, char separator) throws IOException {
+      long number = 0;
+      int digits = 0;
+      while (window.hasRemaining()) {
+         byte c = window.get();
+         if (c >= '0' && c <= '9' && digits < 10) {
+            number = number * 10 + (c - '0');
+            digits++;
+         }
+         else if (c == '\r' && separator == '\n') {
+            continue;
+         }
+         else if (c == separator && digits > 0 && number > 0 && number <= Integer.MAX_VALUE) {
+            return (int) number;
+         }
+         else {
+            break;
+         }
+      }
+      throw new IOException("expected a header line with the number of rows and columns");
+   }
+
+
+   private static IOException formatError(int row, String message) {
+      return new IOException("row " + row + ": " + message);
+   }
+
+
+   //------------------------------------------------------------------------------------- writing
+
+   private static void writeText(MineField field, FileChannel channel, ByteBuffer buffer) throws IOException {
+      buffer.put((field.numRows() + " " + field.numCols() + "\n").getBytes(StandardCharsets.US_ASCII));
+      for (int row = 0; row < field.numRows(); row++) {
+         for (int col = 0; col < field.numCols(); col++) {
+            if (!buffer.hasRemaining()) {
+               flush(channel, buffer);
+            }
+            buffer.put(field.hasMine(row, col) ? MINE_CHAR : EMPTY_CHAR);
+         }
+         if (!buffer.hasRemaining()) {
+            flush(channel, buffer);
+         }
+         buffer.put((byte) '\n');
+      }
+   }
+
+
+   private static void writeBinary(MineField field, FileChannel channel, ByteBuffer buffer) throws IOException {
+      buffer.put(MAGIC);
+      buffer.putInt(field.numRows());
+      buffer.putInt(field.numCols());
+      for (int row = 0; row < field.numRows(); row++) {
+         for (int firstCol = 0; firstCol < field.numCols(); firstCol += 8) {
+            int bits = 0;
+            int lastCol = Math.min(firstCol + 8, field.numCols());
+            for (int col = firstCol; col < lastCol; col++) {
+               if (field.hasMine(row, col)) {
+                  bits |= 1 << (col - firstCol);
+               }
+            }
+            if (!buffer.hasRemaining()) {
+               flush(channel, buffer);
+            }
+            buffer.put((byte) bits);
+         }
+      }
+   }
+
+
+   private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+         channel.write(buffer);
+      }
+      buffer.clear();
+   }
+
+}
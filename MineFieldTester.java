@@ -9,6 +9,21 @@
    To run it from the command line: java MineFieldTester
  */
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+
 public class MineFieldTester {
    
    public static boolean[][] smallMineField = 
@@ -24,7 +39,7 @@ public class MineFieldTester {
        {true, true, true, true,true}};
    
    
-   public static void main(String[] args) {
+   public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
 
       System.out.println("Fixed array testing");
 
@@ -94,8 +109,380 @@ public class MineFieldTester {
       mine2.numAdjacentMines(2,3);
       
       System.out.println("mine2.numAdjacentMines(2,3) is :"+ mine2.numAdjacentMines(2,3)) ;
+      
+      System.out.println(" Testing export and import -- MineFieldIO, both formats");
+      
+      for (MineFieldIO.Format format : MineFieldIO.Format.values()) {
+         Path file = Files.createTempFile("layout", ".mines");
+         MineFieldIO.write(mine2, file, format);
+         MineField copy = MineFieldIO.read(file);
+         Files.delete(file);
+         
+         boolean same = copy.numRows() == mine2.numRows() && copy.numCols() == mine2.numCols() 
+                        && copy.numMines() == mine2.numMines();
+         for (int i = 0; i < mine2.numRows(); i++) {
+            for (int j = 0; j < mine2.numCols(); j++) {
+               same = same && copy.hasMine(i,j) == mine2.hasMine(i,j);
+            }
+         }
+         System.out.println(format + " copy same as original -- should be true :" + same);
+      }
+      
+      System.out.println(" Testing import of a text header too big for one MineField (50000 x 50000) -- IOException");
+      
+      Path tooBig = Files.createTempFile("layout", ".mines");
+      Files.write(tooBig, "50000 50000\n".getBytes(StandardCharsets.US_ASCII));
+      try {
+         MineFieldIO.read(tooBig);
+         System.out.println("read it -- should not be printed");
+      }
+      catch (IOException e) {
+         System.out.println("threw: " + e.getMessage());
+      }
+      Files.delete(tooBig);
+      
+      System.out.println(" Testing adjacent mine counts -- kept up to date by populateMineField, and from a boolean[][] with "
+                         + AdjacencyCounter.BEST.getClass().getName());
+      
+      MineField mine3 = new MineField(37, 70, 600);
+      mine3.populateMineField(18, 35);
+      boolean[][] layout3 = new boolean[37][70];
+      for (int i = 0; i < 37; i++) {
+         for (int j = 0; j < 70; j++) {
+            layout3[i][j] = mine3.hasMine(i,j);
+         }
+      }
+      MineField copy3 = new MineField(layout3);
+      byte[] counts = mine3.adjacentMineCounts();
+      boolean sameCounts = true;
+      for (int i = 0; i < mine3.numRows(); i++) {
+         for (int j = 0; j < mine3.numCols(); j++) {
+            int count = 0;
+            for (int r = Math.max(0, i - 1); r <= Math.min(36, i + 1); r++) {
+               for (int c = Math.max(0, j - 1); c <= Math.min(69, j + 1); c++) {
+                  count += ((r != i || c != j) && layout3[r][c]) ? 1 : 0;
+               }
+            }
+            sameCounts = sameCounts && counts[i * mine3.numCols() + j] == count && mine3.numAdjacentMines(i,j) == count
+                         && copy3.numAdjacentMines(i,j) == count;
+         }
+      }
+      System.out.println("counts same as counted from hasMine -- should be true :" + sameCounts);
+      
+      // most tiles of a sparse field are never written after populateMineField starts a new epoch
+      MineField sparse = new MineField(40, 100, 3, 7);
+      sparse.populateMineField(20, 50);
+      byte[] sparseCounts = sparse.adjacentMineCounts();
+      boolean sameSparse = true;
+      for (int i = 0; i < 40; i++) {
+         for (int j = 0; j < 100; j++) {
+            sameSparse = sameSparse && sparseCounts[i * 100 + j] == sparse.numAdjacentMines(i,j);
+         }
+      }
+      System.out.println("sparse field counts same as numAdjacentMines -- should be true :" + sameSparse);
+      
+      System.out.println(" Testing the TILED and MORTON layouts -- same mines and counts as row-major");
+      
+      boolean sameLayouts = true;
+      for (CellLayout cellLayout : new CellLayout[] {CellLayout.TILED, CellLayout.MORTON}) {
+         MineField seeded = new MineField(37, 70, 600, 5, cellLayout);
+         MineField rowMajor = new MineField(37, 70, 600, 5);
+         seeded.populateMineField(3, 4);
+         rowMajor.populateMineField(3, 4);
+         MineField copied = new MineField(layout3, cellLayout);
+         for (int i = 0; i < 37; i++) {
+            for (int j = 0; j < 70; j++) {
+               sameLayouts = sameLayouts && seeded.hasMine(i,j) == rowMajor.hasMine(i,j)
+                             && seeded.numAdjacentMines(i,j) == rowMajor.numAdjacentMines(i,j)
+                             && copied.hasMine(i,j) == layout3[i][j] && copied.numAdjacentMines(i,j) == copy3.numAdjacentMines(i,j);
+            }
+         }
+      }
+      System.out.println("same as row-major -- should be true :" + sameLayouts);
+      
+      System.out.println(" Testing relocateMine -- same counts as a field made with the mine where it was moved to");
+      
+      MineField moved = new MineField(layout3);
+      int fromRow = 0;
+      int fromCol = 0;
+      while (!layout3[fromRow][fromCol]) {
+         fromCol = (fromCol + 1) % 70;
+         fromRow += (fromCol == 0) ? 1 : 0;
+      }
+      int toRow = 36;
+      int toCol = 69;
+      while (layout3[toRow][toCol]) {
+         toCol--;
+      }
+      moved.relocateMine(fromRow, fromCol, toRow, toCol);
+      boolean[][] layoutMoved = new boolean[37][];
+      for (int i = 0; i < 37; i++) {
+         layoutMoved[i] = layout3[i].clone();
+      }
+      layoutMoved[fromRow][fromCol] = false;
+      layoutMoved[toRow][toCol] = true;
+      MineField expected = new MineField(layoutMoved);
+      boolean sameMoved = true;
+      for (int i = 0; i < 37; i++) {
+         for (int j = 0; j < 70; j++) {
+            sameMoved = sameMoved && moved.hasMine(i,j) == expected.hasMine(i,j)
+                        && moved.numAdjacentMines(i,j) == expected.numAdjacentMines(i,j);
+         }
+      }
+      System.out.println("same mines and counts -- should be true :" + sameMoved);
+      
+      System.out.println(" Testing relocateMineFrom and restoreLayout -- mine moved off the square, then back");
+      
+      boolean moveOk = moved.relocateMineFrom(toRow, toCol) && !moved.hasMine(toRow, toCol)
+                       && !moved.relocateMineFrom(toRow, toCol);
+      moved.restoreLayout();
+      boolean restored = true;
+      for (int i = 0; i < 37; i++) {
+         for (int j = 0; j < 70; j++) {
+            restored = restored && moved.hasMine(i,j) == layout3[i][j]
+                       && moved.numAdjacentMines(i,j) == copy3.numAdjacentMines(i,j);
+         }
+      }
+      System.out.println("moved, then original layout -- should be true :" + (moveOk && restored));
+      
+      System.out.println(" Testing relocateMine and restoreLayout -- openings and zero count bits kept up to date");
+      
+      MineField relabeled = new MineField(40, 50, 300, 21);
+      relabeled.populateMineField(20, 25);
+      relabeled.openingOf(0, 0);
+      relabeled.zeroCountBits();
+      Random moves = new Random(22);
+      boolean sameOpenings = true;
+      for (int move = 0; move < 300; move++) {
+         if (move % 50 == 49) {
+            relabeled.restoreLayout();
+         }
+         else {
+            relabeled.relocateMineFrom(moves.nextInt(40), moves.nextInt(50));
+         }
+         sameOpenings = sameOpenings && sameOpenings(relabeled);
+      }
+      System.out.println("same as labeled from scratch after each move -- should be true :" + sameOpenings);
+      
+      System.out.println(" Testing frozenCopy -- same mines and counts, and it can't be changed");
+      
+      MineField frozen = mine3.frozenCopy();
+      boolean sameFrozen = frozen.isFrozen() && frozen.frozenCopy() == frozen && frozen.numMines() == mine3.numMines();
+      for (int i = 0; i < 37; i++) {
+         for (int j = 0; j < 70; j++) {
+            sameFrozen = sameFrozen && frozen.hasMine(i,j) == mine3.hasMine(i,j)
+                         && frozen.numAdjacentMines(i,j) == mine3.numAdjacentMines(i,j);
+         }
+      }
+      System.out.println("same as the original -- should be true :" + sameFrozen);
+      try {
+         frozen.populateMineField(0, 0);
+         System.out.println("populateMineField changed a frozen field -- should not be printed");
+      }
+      catch (UnsupportedOperationException e) {
+         System.out.println("populateMineField threw -- should be true :true");
+      }
+      
+      System.out.println(" Testing BoardAnalyzer.analyze -- 3BV of small layouts counted by hand");
+      
+      // one mine in the middle: 8 isolated numbers
+      boolean[][] ring = {{false, false, false}, {false, true, false}, {false, false, false}};
+      System.out.println("3 x 3, middle mine -- should be 8 :" + BoardAnalyzer.analyze(new MineField(ring)).threeBV());
+      
+      // one opening along the top and left edges; (2,3) and (3,2) touch no empty square
+      boolean[][] corner = {{false, false, false, false}, 
+                            {false, false, false, false}, 
+                            {false, false, true, false}, 
+                            {false, false, false, true}};
+      BoardAnalyzer.Result cornerResult = BoardAnalyzer.analyze(new MineField(corner));
+      System.out.println("4 x 4, two mines -- should be 3 (1 opening, 2 isolated numbers) :" + cornerResult.threeBV() 
+                         + " (" + cornerResult.openings() + " openings, " + cornerResult.isolatedNumbers() + " isolated numbers)");
+      
+      System.out.println(" Testing BoardAnalyzer.analyze -- 3BV same as the clicks a VisibleField needs to clear seeded boards");
+      
+      boolean sameClicks = true;
+      for (long seed = 1; seed <= 20; seed++) {
+         MineField seeded = new MineField(16, 30, 99, seed);
+         seeded.populateMineField(8, 15);
+         int clicks = clearWithFewestClicks(new VisibleField(seeded));
+         sameClicks = sameClicks && clicks == BoardAnalyzer.analyze(seeded).threeBV();
+      }
+      System.out.println("same -- should be true :" + sameClicks);
+      
+      System.out.println(" Testing BoardAnalyzer.analyzeSeeds -- same lines, in seed order, as analyze on each board");
+      
+      StringWriter csv = new StringWriter();
+      BoardAnalyzer.analyzeSeeds(9, 9, 10, 100, 600, csv);
+      String[] lines = csv.toString().split("\n");
+      boolean sameSeeds = lines.length == 601;
+      for (int i = 1; i < lines.length && sameSeeds; i++) {
+         long seed = 99 + i;
+         MineField seeded = new MineField(9, 9, 10, seed);
+         seeded.populateMineField(4, 4);
+         BoardAnalyzer.Result result = BoardAnalyzer.analyze(seeded);
+         sameSeeds = lines[i].equals(seed + ",9,9,10," + result.threeBV() + "," + result.openings() + "," 
+                                     + result.isolatedNumbers());
+      }
+      System.out.println("same -- should be true :" + sameSeeds);
+      
+      testGameStatsStore();
      
 
    }
+   
+   
+   // Appends a little more than a segment of games to a GameStatsStore, and checks its aggregates against sums
+   // worked out here, before and after the segment summary is written, and with the summary lost or cut short.
+   private static void testGameStatsStore() throws IOException, InterruptedException {
+      System.out.println(" Testing GameStatsStore -- append, segment summaries, and aggregate against a plain sum");
+      
+      Path dir = Files.createTempDirectory("stats");
+      Path log = dir.resolve("games.log");
+      Path summary = dir.resolve("games.log.summary");
+      int[][] configs = {{9, 9, 10}, {16, 16, 40}, {16, 30, 99}, {10, 10, 40}};
+      Map<Long, long[]> expected = new TreeMap<Long, long[]>();    // games, wins, moves, duration, 3BV by density
+      Random random = new Random(11);
+      
+      GameStatsStore store = new GameStatsStore(log);
+      boolean summaryOk = true;
+      for (int i = 0; i < GameStatsStore.SEGMENT_RECORDS + 5000; i++) {
+         int[] config = configs[random.nextInt(configs.length)];
+         boolean won = random.nextBoolean();
+         int moves = random.nextInt(200);
+         long duration = random.nextInt(100000);
+         int threeBV = random.nextInt(150);
+         store.append(new GameStatsStore.Game(i, config[0], config[1], config[2], won, moves, duration, threeBV));
+         
+         long key = 100L * config[2] / (config[0] * config[1]);
+         long[] sums = expected.get(key);
+         if (sums == null) {
+            sums = new long[5];
+            expected.put(key, sums);
+         }
+         sums[0]++;
+         sums[1] += won ? 1 : 0;
+         sums[2] += moves;
+         sums[3] += duration;
+         sums[4] += threeBV;
+         
+         // the summary of segment 0 is written by the append that fills it, not before
+         if (i == GameStatsStore.SEGMENT_RECORDS - 2 || i == GameStatsStore.SEGMENT_RECORDS - 1) {
+            summaryOk = summaryOk && Files.exists(summary) == (i == GameStatsStore.SEGMENT_RECORDS - 1);
+         }
+      }
+      try {
+         store.append(new GameStatsStore.Game(0, 0, 30, 0, true, 1, 1, 1));
+         System.out.println("appended a 0 x 30 game -- should not be printed");
+      }
+      catch (IllegalArgumentException e) {
+         System.out.println("0 x 30 game rejected -- should be true :true");
+      }
+      boolean countOk = store.numGames() == GameStatsStore.SEGMENT_RECORDS + 5000;
+      store.close();
+      System.out.println("summary written when the first segment filled -- should be true :" + (summaryOk && countOk));
+      System.out.println("aggregate same as plain sums -- should be true :" + sameAggregate(log, expected));
+      
+      long summarySize = Files.size(summary);
+      Files.delete(summary);
+      boolean scannedOk = sameAggregate(log, expected);              // no summary: the whole log is scanned
+      new GameStatsStore(log).close();                               // rebuilds the summary
+      System.out.println("summary missing, then rebuilt -- should be true :" 
+                         + (scannedOk && Files.size(summary) == summarySize && sameAggregate(log, expected)));
+      
+      try (FileChannel file = FileChannel.open(summary, StandardOpenOption.WRITE)) {
+         file.truncate(summarySize / 2);
+      }
+      scannedOk = sameAggregate(log, expected);
+      new GameStatsStore(log).close();
+      System.out.println("summary cut short, then rebuilt -- should be true :" 
+                         + (scannedOk && Files.size(summary) == summarySize && sameAggregate(log, expected)));
+      
+      // a 0 x 30 record, e.g. from an older version that didn't check, is left out of the aggregate
+      try (FileChannel file = FileChannel.open(log, StandardOpenOption.APPEND)) {
+         ByteBuffer record = ByteBuffer.allocate(GameStatsStore.RECORD_SIZE);
+         record.putLong(0).putInt(0).putInt(30).putInt(0).rewind();
+         file.write(record);
+      }
+      System.out.println("0 x 30 record skipped -- should be true :" + sameAggregate(log, expected));
+      
+      Files.delete(log);
+      Files.delete(summary);
+      Files.delete(dir);
+   }
+   
+   
+   // whether the log's aggregate by density has the totals in expected (games, wins, moves, duration, 3BV by key)
+   private static boolean sameAggregate(Path log, Map<Long, long[]> expected) throws IOException, InterruptedException {
+      SortedMap<Long, GameStatsStore.Summary> groups = GameStatsStore.aggregate(log, GameStatsStore.GroupBy.DENSITY_PERCENT);
+      boolean same = groups.keySet().equals(expected.keySet());
+      for (Map.Entry<Long, long[]> entry : expected.entrySet()) {
+         GameStatsStore.Summary group = groups.get(entry.getKey());
+         long[] sums = entry.getValue();
+         same = same && group != null && group.games() == sums[0] && group.wins() == sums[1]
+                && group.meanMoves() == (double) sums[2] / sums[0] && group.meanDurationMillis() == (double) sums[3] / sums[0]
+                && group.meanThreeBV() == (double) sums[4] / sums[0];
+      }
+      return same;
+   }
+   
+   
+   // Whether the openings and zero count bits of field, kept up to date by relocateMine and restoreLayout, are the same
+   // as those of a new field with the same mines: the same squares, empty and numbered, in each opening.
+   private static boolean sameOpenings(MineField field) {
+      boolean[][] layout = new boolean[field.numRows()][field.numCols()];
+      for (int i = 0; i < field.numRows(); i++) {
+         for (int j = 0; j < field.numCols(); j++) {
+            layout[i][j] = field.hasMine(i,j);
+         }
+      }
+      MineField fresh = new MineField(layout);
+      boolean same = Arrays.equals(field.zeroCountBits(), fresh.zeroCountBits());
+      field.openingOf(0, 0);                                          // labels the openings if they aren't current
+      fresh.openingOf(0, 0);
+      int[] squares = field.openingSquares();
+      int[] freshSquares = fresh.openingSquares();
+      for (int square = 0; square < field.numRows() * field.numCols(); square++) {
+         int row = square / field.numCols();
+         int col = square % field.numCols();
+         int opening = field.openingOf(row, col);
+         int freshOpening = fresh.openingOf(row, col);
+         if (opening == -1 || freshOpening == -1) {
+            same = same && opening == freshOpening;
+         }
+         else if (squares[field.openingStart(opening)] == square) {   // each opening once, from its first square
+            same = same && Arrays.equals(sorted(squares, field.openingStart(opening), field.openingBorderStart(opening)),
+                                         sorted(freshSquares, fresh.openingStart(freshOpening), fresh.openingBorderStart(freshOpening)))
+                   && Arrays.equals(sorted(squares, field.openingBorderStart(opening), field.openingEnd(opening)),
+                                    sorted(freshSquares, fresh.openingBorderStart(freshOpening), fresh.openingEnd(freshOpening)));
+         }
+      }
+      return same;
+   }
+   
+   
+   private static int[] sorted(int[] array, int from, int to) {
+      int[] part = Arrays.copyOfRange(array, from, to);
+      Arrays.sort(part);
+      return part;
+   }
+   
+   
+   // Clears the board the way 3BV counts clicks: one click in each opening, then one on each number still covered.
+   // Returns the number of clicks, or -1 if the board wasn't cleared.
+   private static int clearWithFewestClicks(VisibleField visible) {
+      MineField field = visible.getMineField();
+      int clicks = 0;
+      for (int pass = 0; pass < 2; pass++) {
+         for (int i = 0; i < field.numRows(); i++) {
+            for (int j = 0; j < field.numCols(); j++) {
+               if (!field.hasMine(i,j) && !visible.isUncovered(i,j) && (pass == 1 || field.numAdjacentMines(i,j) == 0)) {
+                  visible.uncover(i,j);
+                  clicks++;
+               }
+            }
+         }
+      }
+      return visible.isGameOver() ? clicks : -1;
+   }
 
 }
@@ -0,0 +1,429 @@
+/**
+   MineProbabilityEstimator
+      estimates, for each covered square of a game in progress, the probability that it has a mine, given everything
+      the player can see: the numbers uncovered so far and the number of mines left.
+
+      The estimate is the fraction of sampled layouts with a mine there, where the layouts are sampled (close to)
+      uniformly from all the layouts that agree with what's visible.  The sampler is a Markov chain over placements
+      of the remaining mines on the unknown squares: each step proposes moving one mine to an empty unknown square,
+      and accepts it with the Metropolis rule for the energy "total amount by which the numbers are off".  Only
+      the states with energy 0 -- layouts that agree with every number -- are counted, which makes the counted
+      states uniform over the consistent layouts.
+
+      Squares flagged MINE_GUESS are taken to be mines, and numMinesLeft() is the number of mines among the other
+      covered ("unknown") squares.  If the flags are wrong there may be no consistent layout; then no samples are
+      found and the estimate says so.
+
+      Several chains run at once on the common fork/join pool, each with its own SplittableRandom split from one
+      seed, in rounds.  After each round the counts are combined and the 95% confidence interval of every probability
+      is worked out; sampling stops when the widest is narrow enough or the time budget is used up.
+
+      Successive samples of a chain are correlated (a few steps move few mines), so the intervals are not worked out
+      as if the samples were independent.  Each chain also keeps its counts per batch of consecutive samples, and
+      the spread of the batch means gives the variance of its mean (batch means: the batches are long enough to be
+      close to independent of each other).  The batches start at one sample and double in length, by merging them
+      in pairs, whenever a chain has 2 * MIN_BATCHES of them, so there are always between MIN_BATCHES and twice
+      that and each is as long as possible.  This takes 2 * MIN_BATCHES ints per unknown square per chain.  The
+      independent-samples (Wilson score) interval is still the least half width reported, for squares whose batch
+      means happen to be all equal so far (e.g., never a mine).
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public final class MineProbabilityEstimator {
+
+   private static final double Z_95 = 1.96;          // normal quantile for 95% confidence intervals
+   private static final int MIN_BATCHES = 16;        // batches per chain for the batch means (see above)
+   private static final double BETA = 2.0;           // inverse temperature of the chains
+   private static final int MAX_SAMPLE_INTERVAL = 1024;
+   private static final long ROUND_NANOS = 20_000_000L;   // each chain runs this long per round (20 ms)
+
+   private final int numCols;
+   private final int numMines;                     // mines among the unknown squares
+
+   private final int[] unknownSquares;             // row * numCols + col of each unknown square
+   private final int[] need;                       // per constraint: mines still needed among its unknown squares
+   private final int[] constraintStart;            // constraints of unknown u: constraintOf[constraintStart[u] ..
+   private final int[] constraintOf;               //                                        constraintStart[u + 1])
+   private final int sampleInterval;               // chain steps between counted samples
+
+   private final Chain[] chains;
+
+
+   /**
+      Take a snapshot of what's visible in a game; later moves in it don't affect this estimator.
+      @param field  the game
+      @param seed  seed for the random numbers; the same seed and field give the same chains
+    */
+   public MineProbabilityEstimator(VisibleField field, long seed) {
+      MineField mineField = field.getMineField();
+      int numRows = mineField.numRows();
+      numCols = mineField.numCols();
+      numMines = field.numMinesLeft();
+
+      // unknown squares get indices 0, 1, ... in row order
+      int[] unknownIndex = new int[numRows * numCols];
+      int numUnknown = 0;
+      for (int square = 0; square < numRows * numCols; square++) {
+         int status = field.getStatus(square / numCols, square % numCols);
+         unknownIndex[square] = (status == VisibleField.COVERED || status == VisibleField.QUESTION) ? numUnknown++ : -1;
+      }
+      unknownSquares = new int[numUnknown];
+      for (int square = 0; square < numRows * numCols; square++) {
+         if (unknownIndex[square] >= 0) {
+            unknownSquares[unknownIndex[square]] = square;
+         }
+      }
+
+      // one constraint per uncovered number next to an unknown square
+      List<int[]> constraints = new ArrayList<int[]>();    // unknown neighbours of each
+      List<Integer> needs = new ArrayList<Integer>();
+      int[] numConstraintsOf = new int[numUnknown];
+      int[] neighbours = new int[8];
+      for (int row = 0; row < numRows; row++) {
+         for (int col = 0; col < numCols; col++) {
+            int status = field.getStatus(row, col);
+            if (status <= 0 || status > 8) {
+               continue;
+            }
+            int numNeighbours = 0;
+            int flags = 0;
+            for (int i = Math.max(0, row - 1); i <= Math.min(numRows - 1, row + 1); i++) {
+               for (int j = Math.max(0, col - 1); j <= Math.min(numCols - 1, col + 1); j++) {
+                  if (unknownIndex[i * numCols + j] >= 0) {
+                     neighbours[numNeighbours++] = unknownIndex[i * numCols + j];
+                  }
+                  else if (field.getStatus(i, j) == VisibleField.MINE_GUESS) {
+                     flags++;
+                  }
+               }
+            }
+            if (numNeighbours > 0) {
+               constraints.add(Arrays.copyOf(neighbours, numNeighbours));
+               needs.add(status - flags);
+               for (int k = 0; k < numNeighbours; k++) {
+                  numConstraintsOf[neighbours[k]]++;
+               }
+            }
+         }
+      }
+
+      need = new int[needs.size()];
+      constraintStart = new int[numUnknown + 1];
+      int numFrontier = 0;
+      for (int u = 0; u < numUnknown; u++) {
+         constraintStart[u + 1] = constraintStart[u] + numConstraintsOf[u];
+         numFrontier += (numConstraintsOf[u] > 0) ? 1 : 0;
+      }
+      constraintOf = new int[constraintStart[numUnknown]];
+      int[] filled = new int[numUnknown];
+      for (int c = 0; c < need.length; c++) {
+         need[c] = needs.get(c);
+         for (int u : constraints.get(c)) {
+            constraintOf[constraintStart[u] + filled[u]++] = c;
+         }
+      }
+      sampleInterval = Math.max(1, Math.min(MAX_SAMPLE_INTERVAL, numFrontier));
+
+      SplittableRandom random = new SplittableRandom(seed);
+      chains = new Chain[Runtime.getRuntime().availableProcessors()];
+      for (int i = 0; i < chains.length; i++) {
+         chains[i] = new Chain(random.split());
+      }
+   }
+
+
+   /**
+      Sample until every probability is known to within targetHalfWidth (95% confidence), or until the time budget
+      is used up.  Can be called again to carry on sampling from where the last call stopped.
+      @param targetHalfWidth  largest acceptable half width of the confidence intervals, e.g. 0.01
+      @param timeBudgetMillis  how long to sample for at most
+      @return the estimate, from all the samples taken so far (including by earlier calls)
+      @throws InterruptedException  if interrupted while waiting for the chains
+    */
+   public Estimate estimate(double targetHalfWidth, long timeBudgetMillis) throws InterruptedException {
+      long deadline = System.nanoTime() + timeBudgetMillis * 1_000_000L;
+      List<Callable<Void>> rounds = new ArrayList<Callable<Void>>();
+      for (final Chain chain : chains) {
+         rounds.add(new Callable<Void>() {
+            public Void call() {
+               chain.run(System.nanoTime() + ROUND_NANOS);
+               return null;
+            }
+         });
+      }
+
+      Estimate estimate = combine();
+      while (unknownSquares.length > 0 && estimate.maxHalfWidth() > targetHalfWidth && System.nanoTime() < deadline) {
+         for (Future<Void> round : ForkJoinPool.commonPool().invokeAll(rounds)) {
+            try {
+               round.get();
+            }
+            catch (ExecutionException e) {
+               throw new IllegalStateException(e.getCause());
+            }
+         }
+         estimate = combine();
+      }
+      return estimate;
+   }
+
+
+   // adds up the counts of all the chains, and the variances of their means from the batch means, weighted by the
+   // share of the samples each chain has; the variance is null until every chain with samples has two batches
+   private Estimate combine() {
+      long samples = 0;
+      long[] mineCounts = new long[unknownSquares.length];
+      for (Chain chain : chains) {
+         samples += chain.samples;
+         for (int u = 0; u < mineCounts.length; u++) {
+            mineCounts[u] += chain.mineCounts[u];
+         }
+      }
+
+      double[] variance = new double[unknownSquares.length];
+      for (Chain chain : chains) {
+         if (chain.samples == 0) {
+            continue;
+         }
+         int numBatches = chain.numBatches;
+         if (numBatches < 2) {
+            variance = null;
+            break;
+         }
+         double weight = (double) chain.samples / samples;
+         double scale = weight * weight / ((double) chain.batchSize * chain.batchSize * numBatches * (numBatches - 1));
+         for (int u = 0; u < variance.length; u++) {
+            double sum = 0;
+            double sumOfSquares = 0;
+            for (int b = 0; b < numBatches; b++) {
+               int count = chain.batchCounts[b][u];
+               sum += count;
+               sumOfSquares += (double) count * count;
+            }
+            variance[u] += scale * Math.max(0, sumOfSquares - sum * sum / numBatches);
+         }
+      }
+      return new Estimate(numCols, unknownSquares, mineCounts, samples, variance);
+   }
+
+
+   /**
+      The probabilities from the samples taken so far.
+    */
+   public static final class Estimate {
+
+      private final int numCols;
+      private final int[] unknownSquares;
+      private final double[] probability;
+      private final double[] halfWidth;
+      private final long samples;
+      private double maxHalfWidth;
+      private int safest = -1;
+
+      // variance: of each probability, from the batch means, or null if not known yet
+      private Estimate(int numCols, int[] unknownSquares, long[] mineCounts, long samples, double[] variance) {
+         this.numCols = numCols;
+         this.unknownSquares = unknownSquares;
+         this.samples = samples;
+         probability = new double[mineCounts.length];
+         halfWidth = new double[mineCounts.length];
+         maxHalfWidth = (mineCounts.length > 0) ? Double.POSITIVE_INFINITY : 0;
+         if (samples == 0) {
+            Arrays.fill(probability, Double.NaN);
+            Arrays.fill(halfWidth, Double.POSITIVE_INFINITY);
+            return;
+         }
+         maxHalfWidth = 0;
+         double z2 = Z_95 * Z_95;
+         for (int u = 0; u < mineCounts.length; u++) {
+            double p = (double) mineCounts[u] / samples;
+            probability[u] = p;
+            double wilson = Z_95 / (1 + z2 / samples) * Math.sqrt(p * (1 - p) / samples + z2 / (4.0 * samples * samples));
+            halfWidth[u] = (variance == null) ? Double.POSITIVE_INFINITY : Math.max(wilson, Z_95 * Math.sqrt(variance[u]));
+            maxHalfWidth = Math.max(maxHalfWidth, halfWidth[u]);
+            if (safest < 0 || p < probability[safest]) {
+               safest = u;
+            }
+         }
+      }
+
+      /** @return the number of consistent layouts counted (0 if none was found, e.g., because of a wrong flag) */
+      public long samples() { return samples; }
+
+      /** @return the number of unknown (COVERED or QUESTION) squares */
+      public int numUnknown() { return unknownSquares.length; }
+
+      /** @return the row of unknown square u, for u in [0, numUnknown()) */
+      public int row(int u) { return unknownSquares[u] / numCols; }
+
+      /** @return the column of unknown square u */
+      public int col(int u) { return unknownSquares[u] % numCols; }
+
+      /** @return the estimated probability that unknown square u has a mine (NaN if there are no samples) */
+      public double probability(int u) { return probability[u]; }
+
+      /**
+         @return half the width of the 95% confidence interval of probability(u), allowing for the correlation
+         between successive samples (infinite until each chain has two batches of samples)
+       */
+      public double halfWidth(int u) { return halfWidth[u]; }
+
+      /** @return the widest halfWidth of all the unknown squares */
+      public double maxHalfWidth() { return maxHalfWidth; }
+
+      /** @return the unknown square least likely to have a mine, or -1 if there are none or no samples */
+      public int safestSquare() { return safest; }
+
+      /**
+         The chance that the best next click doesn't hit a mine: 1 - probability(safestSquare()).  (This is the
+         chance of surviving one move, not of winning the game, which depends on all the moves still to come.)
+         @return the chance, or NaN if there are no samples or no unknown squares
+       */
+      public double safestMoveChance() { return (safest < 0) ? Double.NaN : 1 - probability[safest]; }
+   }
+
+
+   // One Markov chain: a placement of numMines mines on the unknown squares, and its counts.  Only used by one
+   // thread at a time.
+   private final class Chain {
+
+      private final SplittableRandom random;
+      private final boolean[] hasMine;
+      private final int[] mines;                  // unknown squares with a mine, then the ones without
+      private final int[] position;               // index of each unknown square in mines
+      private final int[] have;                   // per constraint: mines among its unknown squares
+      private int energy;                         // sum over the constraints of |have - need|
+
+      final long[] mineCounts;
+      long samples;
+
+      // batch means: batchCounts[b][u] is the number of samples of batch b with a mine on u, for the numBatches
+      // complete batches of batchSize samples, then the batch being filled (see above)
+      final int[][] batchCounts;
+      int numBatches;
+      int batchSize = 1;
+      private int inBatch;                        // samples in the batch being filled
+
+      Chain(SplittableRandom random) {
+         this.random = random;
+         int numUnknown = unknownSquares.length;
+         hasMine = new boolean[numUnknown];
+         mines = new int[numUnknown];
+         position = new int[numUnknown];
+         have = new int[need.length];
+         mineCounts = new long[numUnknown];
+         batchCounts = new int[2 * MIN_BATCHES][numUnknown];
+
+         for (int u = 0; u < numUnknown; u++) {
+            mines[u] = u;
+         }
+         for (int i = 0; i < Math.min(numMines, numUnknown); i++) {      // random start: shuffle the first numMines
+            int j = i + random.nextInt(numUnknown - i);
+            int swap = mines[i];
+            mines[i] = mines[j];
+            mines[j] = swap;
+            hasMine[mines[i]] = true;
+         }
+         for (int i = 0; i < numUnknown; i++) {
+            position[mines[i]] = i;
+            if (hasMine[i]) {
+               for (int k = constraintStart[i]; k < constraintStart[i + 1]; k++) {
+                  have[constraintOf[k]]++;
+               }
+            }
+         }
+         for (int c = 0; c < need.length; c++) {
+            energy += Math.abs(have[c] - need[c]);
+         }
+      }
+
+
+      // runs the chain until the given System.nanoTime()
+      void run(long until) {
+         int numUnknown = unknownSquares.length;
+         if (numMines < 0 || numMines > numUnknown) {          // no layout can be consistent
+            return;
+         }
+         while (System.nanoTime() < until) {
+            for (int n = 0; n < sampleInterval; n++) {
+               if (numMines > 0 && numMines < numUnknown) {
+                  step(mines[random.nextInt(numMines)], mines[numMines + random.nextInt(numUnknown - numMines)]);
+               }
+            }
+            if (energy == 0) {
+               samples++;
+               int[] batch = batchCounts[numBatches];
+               for (int i = 0; i < numMines; i++) {
+                  mineCounts[mines[i]]++;
+                  batch[mines[i]]++;
+               }
+               if (++inBatch == batchSize) {
+                  inBatch = 0;
+                  if (++numBatches == batchCounts.length) {
+                     mergeBatches();
+                  }
+               }
+            }
+         }
+      }
+
+
+      // halves the number of batches and doubles their length, adding them up in pairs
+      private void mergeBatches() {
+         for (int b = 0; b < MIN_BATCHES; b++) {
+            int[] merged = batchCounts[b];
+            int[] first = batchCounts[2 * b];
+            int[] second = batchCounts[2 * b + 1];
+            for (int u = 0; u < merged.length; u++) {
+               merged[u] = first[u] + second[u];
+            }
+         }
+         for (int b = MIN_BATCHES; b < batchCounts.length; b++) {
+            Arrays.fill(batchCounts[b], 0);
+         }
+         numBatches = MIN_BATCHES;
+         batchSize *= 2;
+      }
+
+
+      // proposes moving the mine on unknown square from to unknown square to
+      private void step(int from, int to) {
+         int change = move(from, -1) + move(to, 1);
+         if (change > 0 && random.nextDouble() >= Math.exp(-BETA * change)) {
+            move(to, -1);        // rejected: undo
+            move(from, 1);
+            return;
+         }
+         hasMine[from] = false;
+         hasMine[to] = true;
+         int fromPosition = position[from];
+         mines[fromPosition] = to;
+         mines[position[to]] = from;
+         position[from] = position[to];
+         position[to] = fromPosition;
+      }
+
+
+      // adds delta to the mine count of the constraints of unknown square u; returns the change in energy
+      private int move(int u, int delta) {
+         int change = 0;
+         for (int k = constraintStart[u]; k < constraintStart[u + 1]; k++) {
+            int c = constraintOf[k];
+            int before = Math.abs(have[c] - need[c]);
+            have[c] += delta;
+            change += Math.abs(have[c] - need[c]) - before;
+         }
+         energy += change;
+         return change;
+      }
+   }
+
+}
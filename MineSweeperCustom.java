@@ -0,0 +1,71 @@
+/**
+   MineSweeperCustom -- main class for a GUI minesweeper game on a board of any size.
+   Works like MineSweeper, but the board size and number of mines come from the command line.  Big boards
+   can be zoomed (ctrl + mouse wheel), scrolled, and navigated with the minimap.
+   
+   To run it from the command line: 
+      java MineSweeperCustom numRows numCols numMines [recordingFile]
+   With a recording file, the last game played is saved to it when the window is closed, to watch with 
+   MineSweeperReplay.
+      
+ */
+
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import javax.swing.JFrame;
+
+public class MineSweeperCustom {
+   
+   private static final int FRAME_WIDTH = 1000;
+   private static final int FRAME_HEIGHT = 800;
+   
+
+   public static void main(String[] args) {
+      
+      if (args.length != 3 && args.length != 4) {
+         System.err.println("usage: java MineSweeperCustom numRows numCols numMines [recordingFile]");
+         System.exit(1);
+      }
+      
+      int numRows = Integer.parseInt(args[0]);
+      int numCols = Integer.parseInt(args[1]);
+      int numMines = Integer.parseInt(args[2]);
+
+      JFrame frame = new JFrame();
+
+      frame.setTitle("Minesweeper");
+
+      frame.setSize(FRAME_WIDTH, FRAME_HEIGHT);
+
+      final GameBoardPanel gameBoard = new GameBoardPanel(numRows, numCols, numMines);
+
+      frame.add(gameBoard);
+      
+      if (args.length == 4) {
+         final String recordingFile = args[3];
+         frame.addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e) {
+               GameRecording recording = gameBoard.getRecording();
+               if (recording == null) {
+                  return;
+               }
+               try {
+                  recording.write(Paths.get(recordingFile));
+               }
+               catch (IOException ex) {
+                  System.err.println("Couldn't save the recording: " + ex.getMessage());
+               }
+            }
+         });
+      }
+
+      frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+      frame.setVisible(true);
+
+   }
+
+}
@@ -6,8 +6,14 @@
    
    To run it from the command line: 
       java MineSweeperFixed
+   or, to use a layout from a file (see MineFieldIO for the formats):
+      java MineSweeperFixed layoutFile
+   A layout from a file is played in relocate mode: a mine on the first square opened moves to a free square.
  */
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 import javax.swing.JFrame;
 
 public class MineSweeperFixed {
@@ -73,7 +79,7 @@ public class MineSweeperFixed {
    private static final int FRAME_HEIGHT = 425;
       
 
-   public static void main(String[] args) {
+   public static void main(String[] args) throws IOException {
 
       JFrame frame = new JFrame();
 
@@ -81,7 +87,9 @@ public class MineSweeperFixed {
 
       frame.setSize(FRAME_WIDTH, FRAME_HEIGHT);
 
-      GameBoardPanel gameBoard = new GameBoardPanel(new VisibleField(new MineField(test2)));
+      MineField mineField = (args.length > 0) ? MineFieldIO.read(Paths.get(args[0])) : new MineField(test2);
+
+      GameBoardPanel gameBoard = new GameBoardPanel(new VisibleField(mineField), args.length > 0);
 
       frame.add(gameBoard);
 
@@ -0,0 +1,46 @@
+/**
+   MineSweeperReplay -- main class for watching a recorded game (see GameRecording; MineSweeperCustom can record
+   one).  Play, pause, change speed (up to 1000x real time) and seek with the controls under the board.
+   
+   To run it from the command line: 
+      java MineSweeperReplay recordingFile
+      
+ */
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import javax.swing.JFrame;
+
+public class MineSweeperReplay {
+   
+   private static final int FRAME_WIDTH = 1000;
+   private static final int FRAME_HEIGHT = 800;
+   
+
+   public static void main(String[] args) throws IOException {
+      
+      if (args.length != 1) {
+         System.err.println("usage: java MineSweeperReplay recordingFile");
+         System.exit(1);
+      }
+      
+      GameRecording recording = GameRecording.read(Paths.get(args[0]));
+
+      JFrame frame = new JFrame();
+
+      frame.setTitle("Minesweeper replay");
+
+      frame.setSize(FRAME_WIDTH, FRAME_HEIGHT);
+
+      GameBoardPanel gameBoard = new GameBoardPanel(recording);
+
+      frame.add(gameBoard);
+
+      frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+
+      frame.setVisible(true);
+
+   }
+
+}
@@ -0,0 +1,291 @@
+/**
+   PagedCells
+      the cells of a MineField too big to keep in memory: a byte per square, in pages of PAGE_SIZE bytes, of which
+      only as many as fit in a memory budget are in memory at once.  The rest are in a scratch page file (deleted
+      by close), and are read back when they're next used.
+
+      Pages are replaced least recently used first, approximated with the clock algorithm (a page is marked used
+      when it's switched to, not on every access, so the common case -- the same page as last time -- is one
+      compare).  A page that was changed is written back to the file on a background thread, so the game doesn't
+      wait for the disk; until then, it can be taken back from the write queue.  Pages that were never written
+      read as 0.
+
+      When successive page faults are the same distance apart (a flood fill spreading steadily one way across the
+      board), the next page that way is read ahead on the background thread.
+
+      Not thread-safe: one thread at a time may use it (the background thread only touches pages handed to it).
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+final class PagedCells implements Closeable {
+
+   static final int PAGE_SHIFT = 16;
+   static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+   private static final int PAGE_MASK = PAGE_SIZE - 1;
+   private static final int MAX_PENDING_WRITES = 8;         // pages waiting to be written, beyond which we wait
+
+   private final FileChannel file;
+   private final int size;
+   private final byte[][] resident;                          // resident[p] is page p if it's in memory, else null
+   private final boolean[] referenced;                       // page used since the clock hand last passed it
+   private final boolean[] dirty;                            // page changed since it was last written
+   private final int[] slots;                                // the resident pages, in clock order (-1: free)
+   private int hand = 0;
+   private int numResident = 0;
+
+   private int lastPage = -1;                                // the page used last, and its data
+   private byte[] lastData;
+
+   private final ExecutorService io = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable task) {
+         Thread thread = new Thread(task, "PagedCells I/O");
+         thread.setDaemon(true);
+         return thread;
+      }
+   });
+   private final ConcurrentHashMap<Integer, PendingWrite> writing = new ConcurrentHashMap<Integer, PendingWrite>();
+   private final ArrayDeque<Future<?>> pendingWrites = new ArrayDeque<Future<?>>();
+
+   private int lastFault = -1;                               // the last two pages faulted in, for read-ahead
+   private int lastFaultStride = 0;
+   private int readAheadPage = -1;
+   private Future<byte[]> readAhead;
+
+
+   /**
+      Create cells that are all 0.
+      @param size  number of cells
+      @param pageFile  the scratch file for the pages that don't fit in memory; replaced if it exists
+      @param memoryBudget  about how many bytes of pages to keep in memory, at least
+                           (MAX_PENDING_WRITES + 3) * PAGE_SIZE
+      @throws IOException  if the page file can't be created
+    */
+   PagedCells(int size, Path pageFile, long memoryBudget) throws IOException {
+      long maxPages = memoryBudget / PAGE_SIZE - MAX_PENDING_WRITES - 1;       // minus writes and a read-ahead
+      if (maxPages < 2) {
+         throw new IllegalArgumentException("memory budget too small: " + memoryBudget);
+      }
+      this.size = size;
+      int numPages = (int) (((long) size + PAGE_SIZE - 1) >>> PAGE_SHIFT);
+      file = FileChannel.open(pageFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                              StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+      resident = new byte[numPages][];
+      referenced = new boolean[numPages];
+      dirty = new boolean[numPages];
+      slots = new int[(int) Math.min(numPages, maxPages)];
+      Arrays.fill(slots, -1);
+   }
+
+
+   /** @return number of cells */
+   int size() { return size; }
+
+
+   /**
+      @param cell  index of a cell, in [0, size())
+      @return its value
+      @throws UncheckedIOException  if its page can't be read
+    */
+   byte get(int cell) {
+      int page = cell >>> PAGE_SHIFT;
+      byte[] data = (page == lastPage) ? lastData : pageIn(page);
+      return data[cell & PAGE_MASK];
+   }
+
+
+   /**
+      @param cell  index of a cell, in [0, size())
+      @param value  its new value
+      @throws UncheckedIOException  if its page can't be read, or a page written back before couldn't be written
+    */
+   void set(int cell, byte value) {
+      int page = cell >>> PAGE_SHIFT;
+      byte[] data = (page == lastPage) ? lastData : pageIn(page);
+      data[cell & PAGE_MASK] = value;
+      dirty[page] = true;
+   }
+
+
+   /**
+      Stop the background thread, dropping any writes and read-ahead not done yet, and close and delete the page
+      file.  The cells can't be used after this; closing again does nothing.
+      @throws IOException  if the page file can't be closed
+    */
+   public void close() throws IOException {
+      io.shutdownNow();
+      pendingWrites.clear();
+      writing.clear();
+      readAheadPage = -1;
+      readAhead = null;
+      Arrays.fill(resident, null);
+      lastPage = -1;
+      lastData = null;
+      file.close();
+   }
+
+
+   // switches to page, reading it in if it's not in memory
+   private byte[] pageIn(int page) {
+      byte[] data = resident[page];
+      if (data == null) {
+         data = fault(page);
+      }
+      referenced[page] = true;
+      lastPage = page;
+      lastData = data;
+      return data;
+   }
+
+
+   private byte[] fault(int page) {
+      if (numResident == slots.length) {
+         evict();
+      }
+      PendingWrite pending = writing.remove(page);          // taken back before it was written (or while): write again
+      byte[] data = (pending == null) ? null : pending.data;
+      dirty[page] = data != null;
+      if (data == null && page == readAheadPage) {
+         data = await(readAhead);
+      }
+      if (data == null) {
+         data = read(page);
+      }
+      if (page == readAheadPage) {
+         readAheadPage = -1;
+         readAhead = null;
+      }
+
+      resident[page] = data;
+      slots[hand] = page;
+      hand = (hand + 1) % slots.length;
+      numResident++;
+
+      int stride = page - lastFault;
+      if (stride != 0 && stride == lastFaultStride) {
+         startReadAhead(page + stride);
+      }
+      lastFaultStride = stride;
+      lastFault = page;
+      return data;
+   }
+
+
+   // frees the slot at the hand (moving the hand to the first page not used since it last passed)
+   private void evict() {
+      while (referenced[slots[hand]]) {
+         referenced[slots[hand]] = false;
+         hand = (hand + 1) % slots.length;
+      }
+      final int page = slots[hand];
+      final byte[] data = resident[page];
+      resident[page] = null;
+      slots[hand] = -1;
+      numResident--;
+      if (page == lastPage) {
+         lastPage = -1;
+      }
+      if (!dirty[page]) {
+         return;
+      }
+
+      final PendingWrite pending = new PendingWrite(data);
+      writing.put(page, pending);
+      pendingWrites.add(io.submit(new Callable<Void>() {
+         public Void call() throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            long position = (long) page << PAGE_SHIFT;
+            while (buffer.hasRemaining()) {
+               file.write(buffer, position + buffer.position());
+            }
+            writing.remove(page, pending);           // unless it was taken back (and maybe evicted again since)
+            return null;
+         }
+      }));
+      while (!pendingWrites.isEmpty() && (pendingWrites.size() > MAX_PENDING_WRITES || pendingWrites.peek().isDone())) {
+         await(pendingWrites.poll());
+      }
+   }
+
+
+   private void startReadAhead(final int page) {
+      if (page < 0 || page >= resident.length || resident[page] != null || writing.containsKey(page)
+          || page == readAheadPage) {
+         return;
+      }
+      readAheadPage = page;
+      readAhead = io.submit(new Callable<byte[]>() {
+         public byte[] call() {
+            return read(page);
+         }
+      });
+   }
+
+
+   // the page as it is in the file (0s past the end)
+   private byte[] read(int page) {
+      byte[] data = new byte[PAGE_SIZE];
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+      long position = (long) page << PAGE_SHIFT;
+      try {
+         while (buffer.hasRemaining() && file.read(buffer, position + buffer.position()) > 0) {
+         }
+      }
+      catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+      return data;
+   }
+
+
+   // a page waiting to be written; one per eviction, so an earlier write of the same page (the same data, taken back
+   // and evicted again) doesn't remove the later one from writing
+   private static final class PendingWrite {
+      final byte[] data;
+
+      PendingWrite(byte[] data) {
+         this.data = data;
+      }
+   }
+
+
+   private static <T> T await(Future<T> future) {
+      boolean interrupted = false;
+      try {
+         while (true) {
+            try {
+               return future.get();
+            }
+            catch (InterruptedException e) {
+               interrupted = true;                           // the page is needed: wait anyway, then re-interrupt
+            }
+         }
+      }
+      catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         throw (cause instanceof UncheckedIOException) ? (UncheckedIOException) cause
+               : new UncheckedIOException((cause instanceof IOException) ? (IOException) cause : new IOException(cause));
+      }
+      finally {
+         if (interrupted) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+}
@@ -0,0 +1,208 @@
+/**
+   ParallelFill
+      finds the squares a click on an empty square uncovers, for VisibleField's parallel reveal mode, with a
+      level-synchronous breadth first search spread over the common fork/join pool.
+
+      Each level's frontier (the empty squares found by the last level) is split into chunks, and the chunks are
+      expanded at the same time: a neighbour that is COVERED or QUESTION is claimed by setting its bit in a shared
+      visited bitset with compare-and-set, so it's claimed by exactly one chunk whichever gets there first.  Claimed
+      empty squares make up the next frontier; claimed numbered squares are the edge of the region.  A MINE_GUESS is
+      never claimed, so it blocks the fill, and so does an uncovered square, exactly as in squaresRecursiveFill: the
+      squares found are the same, only their order differs.
+
+      Nothing is changed while searching; VisibleField then uncovers the squares found (on the calling thread, so
+      its listeners and hash are updated as usual).
+
+      A VisibleField keeps one ParallelFill, so the visited bitset is allocated once per board, not once per click.
+      After each reveal only the words of the squares found are cleared, so a small region costs no more than its
+      size, however big the board.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+final class ParallelFill {
+
+   // frontiers up to this size are expanded on the calling thread; bigger ones in chunks of this size
+   private static final int CHUNK_SIZE = 4096;
+
+   private final VisibleField field;
+   private final MineField mineField;
+   private final int numRows;
+   private final int numCols;
+   private final AtomicLongArray visited;        // bit row * numCols + col set once the square is claimed
+
+
+   /**
+      Create the search for a field's reveals.
+      @param field  the field; it must keep its MineField
+    */
+   ParallelFill(VisibleField field) {
+      this.field = field;
+      this.mineField = field.getMineField();
+      this.numRows = mineField.numRows();
+      this.numCols = mineField.numCols();
+      this.visited = new AtomicLongArray((numRows * numCols + 63) >>> 6);
+   }
+
+
+   /**
+      Finds the squares that uncovering the empty square (row, col) uncovers.  Not to be called by two threads at
+      once.
+      @param row  row of the square
+      @param col  column of the square
+      @return the squares, as row * numCols + col, in no particular order; none if (row, col) isn't covered or is
+              a MINE_GUESS
+      PRE: the square has no mine and no adjacent mines; the field isn't changed by other threads during the call
+    */
+   int[] reveal(int row, int col) {
+      int start = row * numCols + col;
+      if (!claim(start)) {
+         return new int[0];
+      }
+
+      Level found = new Level();
+      found.addEmpty(start);
+      Level frontier = found;
+      while (frontier.numEmpties > 0) {
+         Level next = expand(frontier.empties, frontier.numEmpties);
+         if (frontier != found) {
+            found.addEmpties(frontier);
+         }
+         found.addBorders(next);
+         frontier = next;
+      }
+
+      int[] squares = Arrays.copyOf(found.empties, found.numEmpties + found.numBorders);
+      System.arraycopy(found.borders, 0, squares, found.numEmpties, found.numBorders);
+
+      for (int square : squares) {              // every square claimed is in squares: clear the bitset for next time
+         visited.set(square >>> 6, 0);
+      }
+      return squares;
+   }
+
+
+   // the squares claimed around frontier [0, size): the next frontier and the edge squares
+   private Level expand(final int[] frontier, int size) {
+      if (size <= CHUNK_SIZE) {
+         return expand(frontier, 0, size);
+      }
+
+      List<Callable<Level>> chunks = new ArrayList<Callable<Level>>();
+      for (int chunkStart = 0; chunkStart < size; chunkStart += CHUNK_SIZE) {
+         final int from = chunkStart;
+         final int to = Math.min(chunkStart + CHUNK_SIZE, size);
+         chunks.add(new Callable<Level>() {
+            public Level call() {
+               return expand(frontier, from, to);
+            }
+         });
+      }
+      Level next = new Level();
+      for (Future<Level> chunk : ForkJoinPool.commonPool().invokeAll(chunks)) {
+         try {
+            Level level = chunk.get();
+            next.addEmpties(level);
+            next.addBorders(level);
+         }
+         catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException(e);      // invokeAll has waited for all of them, so this is a bug
+         }
+      }
+      return next;
+   }
+
+
+   private Level expand(int[] frontier, int from, int to) {
+      Level level = new Level();
+      for (int k = from; k < to; k++) {
+         int r = frontier[k] / numCols;
+         int c = frontier[k] % numCols;
+         for (int i = Math.max(0, r - 1); i <= Math.min(numRows - 1, r + 1); i++) {
+            for (int j = Math.max(0, c - 1); j <= Math.min(numCols - 1, c + 1); j++) {
+               int square = i * numCols + j;
+               if (claim(square)) {
+                  if (mineField.numAdjacentMines(i, j) == 0) {
+                     level.addEmpty(square);
+                  }
+                  else {
+                     level.addBorder(square);
+                  }
+               }
+            }
+         }
+      }
+      return level;
+   }
+
+
+   // whether the square can be uncovered by the fill and this call is the first to claim it
+   private boolean claim(int square) {
+      int word = square >>> 6;
+      long bit = 1L << square;
+      long bits = visited.get(word);
+      if ((bits & bit) != 0) {
+         return false;
+      }
+      int status = field.getStatus(square / numCols, square % numCols);
+      if (status != VisibleField.COVERED && status != VisibleField.QUESTION) {
+         return false;
+      }
+      while ((bits & bit) == 0) {
+         if (visited.compareAndSet(word, bits, bits | bit)) {
+            return true;
+         }
+         bits = visited.get(word);
+      }
+      return false;
+   }
+
+
+   // squares claimed by one chunk of a level (or the totals)
+   private static final class Level {
+      int[] empties = new int[16];
+      int numEmpties = 0;
+      int[] borders = new int[16];
+      int numBorders = 0;
+
+      void addEmpty(int square) {
+         if (numEmpties == empties.length) {
+            empties = Arrays.copyOf(empties, numEmpties * 2);
+         }
+         empties[numEmpties++] = square;
+      }
+
+      void addBorder(int square) {
+         if (numBorders == borders.length) {
+            borders = Arrays.copyOf(borders, numBorders * 2);
+         }
+         borders[numBorders++] = square;
+      }
+
+      // adds the empty squares of other
+      void addEmpties(Level other) {
+         if (numEmpties + other.numEmpties > empties.length) {
+            empties = Arrays.copyOf(empties, Math.max(empties.length * 2, numEmpties + other.numEmpties));
+         }
+         System.arraycopy(other.empties, 0, empties, numEmpties, other.numEmpties);
+         numEmpties += other.numEmpties;
+      }
+
+      // adds the edge squares of other
+      void addBorders(Level other) {
+         if (numBorders + other.numBorders > borders.length) {
+            borders = Arrays.copyOf(borders, Math.max(borders.length * 2, numBorders + other.numBorders));
+         }
+         System.arraycopy(other.borders, 0, borders, numBorders, other.numBorders);
+         numBorders += other.numBorders;
+      }
+   }
+
+}
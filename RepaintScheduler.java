@@ -0,0 +1,109 @@
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.Timer;
+
+/**
+   RepaintScheduler class
+   Collects the squares of a board changed since the last frame, and has them repainted on a timer tick at the
+   display's frame rate.  Any number of moves between two ticks cost one repaint, and when more than
+   MAX_SQUARES_REPAINTED_SEPARATELY squares changed, the whole board is repainted once instead of square by square.
+
+   The timer coalesces ticks, so if the event dispatch thread falls behind, frames are skipped rather than queued.
+   It stops on a tick with nothing to repaint, and starts again with the next change.  To be used on the event
+   dispatch thread only.
+ */
+
+class RepaintScheduler implements ActionListener {
+
+   public static final int MAX_SQUARES_REPAINTED_SEPARATELY = 256;   // frames that change more repaint the whole board
+
+   /**
+      What a frame repaints.
+    */
+   interface Target {
+
+      /** Repaint the whole board. */
+      void repaintAll();
+
+      /**
+         Repaint some squares.
+         @param squares  the squares, as row * numCols + col, in entries [0, numSquares)
+         @param numSquares  how many there are, at most MAX_SQUARES_REPAINTED_SEPARATELY
+       */
+      void repaintSquares(int[] squares, int numSquares);
+   }
+
+   private final Target target;
+   private final Timer timer;
+   private final int[] dirtySquares = new int[MAX_SQUARES_REPAINTED_SEPARATELY];  // as row * numCols + col
+   private int numDirty = 0;
+   private boolean allDirty = false;     // too many to repaint one by one (or unknown): repaint the whole board
+
+
+   /**
+      Create the scheduler, with its timer stopped.
+      @param target  what to repaint
+      @param framesPerSecond  how often to repaint while the board is changing
+    */
+   public RepaintScheduler(Target target, int framesPerSecond) {
+      this.target = target;
+      timer = new Timer(1000 / framesPerSecond, this);
+      timer.setCoalesce(true);     // if the event dispatch thread falls behind, skip ticks rather than queue them
+   }
+
+
+   /**
+      Repaint these squares in the next frame.
+      @param squares  the squares, as row * numCols + col, in entries [0, numSquares)
+    */
+   public void squaresChanged(int[] squares, int numSquares) {
+      if (!allDirty) {
+         if (numDirty + numSquares > dirtySquares.length) {
+            allDirty = true;
+         }
+         else {
+            System.arraycopy(squares, 0, dirtySquares, numDirty, numSquares);
+            numDirty += numSquares;
+         }
+      }
+      timer.start();           // no effect if it's already running
+   }
+
+
+   /**
+      Repaint the whole board in the next frame.
+    */
+   public void allChanged() {
+      allDirty = true;
+      timer.start();
+   }
+
+
+   /**
+      @return whether the timer is running: there were changes since the last frame, or that frame had changes
+    */
+   public boolean isRunning() {
+      return timer.isRunning();
+   }
+
+
+   /**
+      A frame: repaint whatever changed since the last one, or stop the timer if nothing did.
+    */
+   public void actionPerformed(ActionEvent e) {
+      if (!allDirty && numDirty == 0) {
+         timer.stop();         // idle until the next change
+         return;
+      }
+      if (allDirty) {
+         target.repaintAll();
+      }
+      else {
+         target.repaintSquares(dirtySquares, numDirty);
+      }
+      numDirty = 0;
+      allDirty = false;
+   }
+
+}
@@ -0,0 +1,116 @@
+/**
+   StateTiles
+      the visible states of a forked VisibleField (see VisibleField.fork): a byte per square, kept in tiles of
+      TileEpochs.TILE_SIZE squares that the forks of a field share until one of them writes to one (copy-on-write).
+
+      The tiles are grouped in pages of 64 tiles.  Forking copies only the array of pages, one reference per 4096
+      squares; the first write to a page or a tile that the writer doesn't own yet copies just that page (64
+      references) or tile (TILE_SIZE bytes).  Each page has an owner token, and a bit per tile for the tiles of the
+      page its owner has copied.  fork gives the parent a new token too, so from then on everything that was there
+      is shared, and read-only, for both.
+
+      A tile that was never written to is null and reads as all 0s, so clear just drops the pages.
+ */
+
+import java.util.Arrays;
+
+final class StateTiles {
+
+   private static final int PAGE_SHIFT = 6;                  // 64 tiles a page: one bit each in Page.ownedTiles
+   private static final int PAGE_TILES = 1 << PAGE_SHIFT;
+   private static final int TILE_MASK = TileEpochs.TILE_SIZE - 1;
+
+   private final Page[] pages;
+   private Object owner = new Object();
+
+
+   /**
+      Create tiles for a board, all 0.
+      @param numCells  number of squares of the board (cells, with any padding)
+    */
+   StateTiles(int numCells) {
+      int numTiles = (numCells + TileEpochs.TILE_SIZE - 1) >>> TileEpochs.TILE_SHIFT;
+      pages = new Page[(numTiles + PAGE_TILES - 1) >>> PAGE_SHIFT];
+   }
+
+
+   private StateTiles(Page[] pages) {
+      this.pages = pages;
+   }
+
+
+   /**
+      @param cell  a square, as its cell in the MineField's CellLayout
+      @return its value
+    */
+   int get(int cell) {
+      Page page = pages[cell >>> (TileEpochs.TILE_SHIFT + PAGE_SHIFT)];
+      if (page == null) {
+         return 0;
+      }
+      byte[] tile = page.tiles[(cell >>> TileEpochs.TILE_SHIFT) & (PAGE_TILES - 1)];
+      return (tile == null) ? 0 : tile[cell & TILE_MASK];
+   }
+
+
+   /**
+      @param cell  a square, as its cell in the MineField's CellLayout
+      @param value  its new value, in [0, 127]
+    */
+   void set(int cell, int value) {
+      int pageIndex = cell >>> (TileEpochs.TILE_SHIFT + PAGE_SHIFT);
+      int tileIndex = (cell >>> TileEpochs.TILE_SHIFT) & (PAGE_TILES - 1);
+      Page page = pages[pageIndex];
+      if (value == 0 && (page == null || page.tiles[tileIndex] == null)) {
+         return;                                             // it reads as 0 already
+      }
+
+      if (page == null) {
+         page = new Page(owner, new byte[PAGE_TILES][]);
+         pages[pageIndex] = page;
+      }
+      else if (page.owner != owner) {
+         page = new Page(owner, page.tiles.clone());         // the tiles are still shared
+         pages[pageIndex] = page;
+      }
+
+      byte[] tile = page.tiles[tileIndex];
+      if ((page.ownedTiles & 1L << tileIndex) == 0) {
+         tile = (tile == null) ? new byte[TileEpochs.TILE_SIZE] : tile.clone();
+         page.tiles[tileIndex] = tile;
+         page.ownedTiles |= 1L << tileIndex;
+      }
+      tile[cell & TILE_MASK] = (byte) value;
+   }
+
+
+   /**
+      Sets every square to 0, in O(number of pages).
+    */
+   void clear() {
+      Arrays.fill(pages, null);
+   }
+
+
+   /**
+      Makes a copy that shares all the tiles with this one; from then on, a write to either copies what it changes.
+      @return the copy
+    */
+   StateTiles fork() {
+      owner = new Object();
+      return new StateTiles(pages.clone());
+   }
+
+
+   private static final class Page {
+      final Object owner;
+      final byte[][] tiles;
+      long ownedTiles = 0;                                   // bit t set: tiles[t] was made by owner, so it may write it
+
+      Page(Object owner, byte[][] tiles) {
+         this.owner = owner;
+         this.tiles = tiles;
+      }
+   }
+
+}
@@ -0,0 +1,352 @@
+/**
+   TerminalMineSweeper -- main class for a text mode minesweeper game, for use over ssh or anywhere else that
+   Swing isn't available.  It is another View and Controller for the same Model (VisibleField and MineField) that
+   GameBoardPanel uses.
+
+   The board is drawn with ANSI escape codes.  After each key press only the squares whose appearance changed are
+   rewritten (with cursor-positioned writes through one buffered output stream), so play stays smooth on huge boards
+   over slow links.  Boards bigger than the terminal are shown through a viewport that scrolls with the cursor.
+
+   To run it from the command line:
+      java TerminalMineSweeper [numRows numCols numMines]
+
+   Keys:
+      arrow keys or h j k l    move the cursor
+      space or enter           open the square under the cursor
+      f                        cycle the guess on the square under the cursor (see VisibleField cycleGuess)
+      H J K L                  scroll the viewport by a page
+      n                        new game
+      q                        quit
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class TerminalMineSweeper {
+
+   private static final int DEFAULT_ROWS = 9;
+   private static final int DEFAULT_COLS = 9;
+   private static final int DEFAULT_MINES = 10;
+
+   private static final int DEFAULT_TERMINAL_ROWS = 24;
+   private static final int DEFAULT_TERMINAL_COLS = 80;
+
+   private static final int CELL_WIDTH = 2;             // each square is drawn as its symbol followed by a space
+   private static final int BOARD_TOP = 2;              // first terminal line of the board (line 1 is the status line)
+   private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+   private static final int NOT_DRAWN = Integer.MIN_VALUE;   // forces a cell to be redrawn
+   private static final int CURSOR_FLAG = 1 << 8;            // added to the drawn code of the cell under the cursor
+
+   private static final String ESC = "\033[";
+   private static final String RESET = ESC + "0m";
+   private static final String[] NUMBER_COLORS = {"0", "1;34", "32", "1;31", "34", "31", "36", "35", "1;30"};
+
+   private final VisibleField visibleField;
+   private boolean userChoseFirstLocation = false;
+   private boolean lost = false;
+
+   private final OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out),
+                                                             OUTPUT_BUFFER_SIZE);
+
+   private final int viewRows;    // size of the viewport, in squares
+   private final int viewCols;
+   private int viewTop = 0;       // board location shown in the top left corner of the viewport
+   private int viewLeft = 0;
+
+   private int cursorRow = 0;     // board location of the cursor
+   private int cursorCol = 0;
+
+   // What is currently on the screen for each viewport position, so we only rewrite the cells that changed
+   private final int[] drawn;
+
+   private String lastStatusLine = null;
+
+
+   /**
+      Creates a terminal game for a minefield with the given dimensions and number of mines.  As in GameBoardPanel
+      the mines are placed when the first square is opened, so the first square is never a mine.
+      @param numRows  number of rows, must be positive
+      @param numCols  number of columns, must be positive
+      @param numMines  number of mines
+      @param terminalRows  height of the terminal in lines
+      @param terminalCols  width of the terminal in characters
+      PRE: numMines < 1/3 of possible field locations
+    */
+   public TerminalMineSweeper(int numRows, int numCols, int numMines, int terminalRows, int terminalCols) {
+      visibleField = new VisibleField(new MineField(numRows, numCols, numMines));
+      viewRows = Math.max(1, Math.min(numRows, terminalRows - BOARD_TOP));
+      viewCols = Math.max(1, Math.min(numCols, terminalCols / CELL_WIDTH));
+      drawn = new int[viewRows * viewCols];
+      Arrays.fill(drawn, NOT_DRAWN);
+   }
+
+
+   public static void main(String[] args) throws IOException {
+      int numRows = DEFAULT_ROWS;
+      int numCols = DEFAULT_COLS;
+      int numMines = DEFAULT_MINES;
+      if (args.length == 3) {
+         numRows = Integer.parseInt(args[0]);
+         numCols = Integer.parseInt(args[1]);
+         numMines = Integer.parseInt(args[2]);
+      }
+
+      int[] size = terminalSize();
+      TerminalMineSweeper game = new TerminalMineSweeper(numRows, numCols, numMines, size[0], size[1]);
+
+      String savedSettings = stty("-g");
+      stty("raw -echo");
+      try {
+         game.run(System.in);
+      }
+      finally {
+         if (savedSettings != null) {
+            stty(savedSettings.trim());
+         }
+      }
+   }
+
+
+   /**
+      Play until the user quits: draw the board, then read and handle one key at a time.
+      @param in  where the keys come from
+    */
+   public void run(InputStream in) throws IOException {
+      write(ESC + "?1049h" + ESC + "2J" + ESC + "?25l");    // alternate screen, clear it, hide the terminal cursor
+      try {
+         redraw();
+         int key;
+         while ((key = readKey(in)) != 'q' && key != -1) {
+            handleKey(key);
+            redraw();
+         }
+      }
+      finally {
+         write(RESET + ESC + "?25h" + ESC + "?1049l");
+         out.flush();
+      }
+   }
+
+
+   // keys that arrive as escape sequences are mapped to the letters with the same meaning
+   private int readKey(InputStream in) throws IOException {
+      int key = in.read();
+      if (key != 27) {
+         return key;
+      }
+      if (in.read() != '[') {
+         return 0;
+      }
+      switch (in.read()) {
+         case 'A': return 'k';
+         case 'B': return 'j';
+         case 'C': return 'l';
+         case 'D': return 'h';
+         default: return 0;
+      }
+   }
+
+
+   private void handleKey(int key) {
+      switch (key) {
+         case 'h': moveCursor(0, -1); break;
+         case 'j': moveCursor(1, 0); break;
+         case 'k': moveCursor(-1, 0); break;
+         case 'l': moveCursor(0, 1); break;
+         case 'H': scroll(0, -viewCols); break;
+         case 'J': scroll(viewRows, 0); break;
+         case 'K': scroll(-viewRows, 0); break;
+         case 'L': scroll(0, viewCols); break;
+         case ' ':
+         case '\r': openSquare(); break;
+         case 'f': changeGuessStatus(); break;
+         case 'n': newGame(); break;
+         default: break;
+      }
+   }
+
+
+   /**
+      Opens the square under the cursor, with the same rules as the GUI (see GameBoardPanel).
+    */
+   private void openSquare() {
+      if (visibleField.isGameOver() ||
+            visibleField.getStatus(cursorRow, cursorCol) == VisibleField.MINE_GUESS ||
+            visibleField.isUncovered(cursorRow, cursorCol)) {
+         return;
+      }
+      if (!userChoseFirstLocation) {
+         userChoseFirstLocation = true;
+         visibleField.getMineField().populateMineField(cursorRow, cursorCol);
+      }
+      lost = !visibleField.uncover(cursorRow, cursorCol);
+   }
+
+
+   private void changeGuessStatus() {
+      if (visibleField.isGameOver() || visibleField.isUncovered(cursorRow, cursorCol)) {
+         return;
+      }
+      visibleField.cycleGuess(cursorRow, cursorCol);
+   }
+
+
+   private void newGame() {
+      visibleField.resetGameDisplay();
+      userChoseFirstLocation = false;
+      lost = false;
+   }
+
+
+   // moves the cursor and scrolls the viewport as little as needed to keep the cursor in it
+   private void moveCursor(int dRow, int dCol) {
+      MineField field = visibleField.getMineField();
+      cursorRow = clamp(cursorRow + dRow, 0, field.numRows() - 1);
+      cursorCol = clamp(cursorCol + dCol, 0, field.numCols() - 1);
+      if (cursorRow < viewTop) { viewTop = cursorRow; }
+      if (cursorRow >= viewTop + viewRows) { viewTop = cursorRow - viewRows + 1; }
+      if (cursorCol < viewLeft) { viewLeft = cursorCol; }
+      if (cursorCol >= viewLeft + viewCols) { viewLeft = cursorCol - viewCols + 1; }
+   }
+
+
+   // scrolls the viewport, and takes the cursor along so it stays on the same place on the screen
+   private void scroll(int dRow, int dCol) {
+      MineField field = visibleField.getMineField();
+      int newTop = clamp(viewTop + dRow, 0, field.numRows() - viewRows);
+      int newLeft = clamp(viewLeft + dCol, 0, field.numCols() - viewCols);
+      cursorRow += newTop - viewTop;
+      cursorCol += newLeft - viewLeft;
+      viewTop = newTop;
+      viewLeft = newLeft;
+   }
+
+
+   /**
+      Bring the screen up to date: rewrites the status line if it changed, and every viewport cell whose symbol or
+      cursor highlight differs from what was drawn there last time.  Everything goes out in one flush.
+    */
+   private void redraw() throws IOException {
+      String status = statusLine();
+      if (!status.equals(lastStatusLine)) {
+         write(ESC + "1;1H" + RESET + ESC + "2K" + status);
+         lastStatusLine = status;
+      }
+
+      int screenRow = -1;      // where the terminal's cursor is after the last write, -1 if unknown
+      int screenCol = -1;
+      for (int r = 0; r < viewRows; r++) {
+         for (int c = 0; c < viewCols; c++) {
+            int row = viewTop + r;
+            int col = viewLeft + c;
+            int code = visibleField.getStatus(row, col);
+            if (row == cursorRow && col == cursorCol) {
+               code += CURSOR_FLAG;
+            }
+            int index = r * viewCols + c;
+            if (drawn[index] != code) {
+               drawn[index] = code;
+               int line = BOARD_TOP + r;
+               int column = 1 + c * CELL_WIDTH;
+               if (line != screenRow || column != screenCol) {     // no need to move when we write the next cell
+                  write(ESC + line + ";" + column + "H");
+               }
+               write(symbol(code));
+               screenRow = line;
+               screenCol = column + CELL_WIDTH;
+            }
+         }
+      }
+      out.flush();
+   }
+
+
+   private String statusLine() {
+      String message = "";
+      if (visibleField.isGameOver()) {
+         message = lost ? "  You lost!" : "  You won!";
+      }
+      MineField field = visibleField.getMineField();
+      return "Mines left: " + Math.max(visibleField.numMinesLeft(), 0) + message +
+             "    [" + cursorRow + "," + cursorCol + "] of " + field.numRows() + "x" + field.numCols() +
+             "    arrows: move  space: open  f: guess  n: new  q: quit";
+   }
+
+
+   /**
+      The escape codes and character(s) that show one square.
+      @param code  the status of the square, plus CURSOR_FLAG if the cursor is on it
+      @return what to write for it, CELL_WIDTH characters wide
+    */
+   private static String symbol(int code) {
+      boolean underCursor = code >= CURSOR_FLAG + VisibleField.QUESTION;
+      int status = underCursor ? code - CURSOR_FLAG : code;
+      String look;
+      String glyph;
+      if (status == VisibleField.COVERED) { look = "37"; glyph = "#"; }
+      else if (status == VisibleField.MINE_GUESS) { look = "1;33"; glyph = "F"; }
+      else if (status == VisibleField.QUESTION) { look = "37"; glyph = "?"; }
+      else if (status == 0) { look = "0"; glyph = "."; }
+      else if (status == VisibleField.MINE) { look = "1;30;47"; glyph = "*"; }
+      else if (status == VisibleField.INCORRECT_GUESS) { look = "1;31"; glyph = "X"; }
+      else if (status == VisibleField.EXPLODED_MINE) { look = "1;37;41"; glyph = "*"; }
+      else if (status > 0) { look = NUMBER_COLORS[status]; glyph = Integer.toString(status); }
+      else { throw new AssertionError(status); }
+
+      return ESC + (underCursor ? look + ";7" : look) + "m" + glyph + RESET + " ";
+   }
+
+
+   private void write(String text) throws IOException {
+      out.write(text.getBytes(StandardCharsets.US_ASCII));
+   }
+
+
+   private static int clamp(int value, int low, int high) {
+      return Math.max(low, Math.min(value, high));
+   }
+
+
+   // lines and columns of the controlling terminal, or a default size if we can't tell
+   private static int[] terminalSize() {
+      String size = stty("size");
+      if (size != null) {
+         String[] parts = size.trim().split("\\s+");
+         if (parts.length == 2) {
+            return new int[] {Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+         }
+      }
+      return new int[] {DEFAULT_TERMINAL_ROWS, DEFAULT_TERMINAL_COLS};
+   }
+
+
+   /**
+      Run stty on the controlling terminal (Java has no API for raw keyboard input).
+      @param arguments  the stty arguments
+      @return what stty printed, or null if it couldn't be run (e.g., no terminal), in which case keys only
+      arrive after the user presses enter
+    */
+   private static String stty(String arguments) {
+      try {
+         Process process = new ProcessBuilder("sh", "-c", "stty " + arguments + " < /dev/tty")
+                              .redirectErrorStream(true).start();
+         String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+         return process.waitFor() == 0 ? output : null;
+      }
+      catch (IOException e) {
+         return null;
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         return null;
+      }
+   }
+
+}
@@ -0,0 +1,77 @@
+/**
+   TileEpochs
+      generation stamps that let MineField and VisibleField reset a whole board in O(1).
+
+      The squares are grouped in tiles of TILE_SIZE consecutive squares, and each tile has a stamp: the epoch it was
+      last written in.  Resetting the board just starts a new epoch, so every tile is stale; the owner reads a square
+      in a stale tile as if it had been reset, and before it writes a square it calls refresh, which tells it when
+      the tile has to be cleared first (once per tile per epoch).
+
+      When the epoch counter wraps around (after 2^32 resets), the stamps are all set back to the current epoch, and
+      the owner does one full clear of the board.
+ */
+
+import java.util.Arrays;
+
+final class TileEpochs {
+
+   static final int TILE_SHIFT = 6;
+   static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+   private final int[] stamps;
+   private int epoch = 0;                  // all tiles are current to begin with
+
+
+   /**
+      Create stamps for a board, with every tile current.
+      @param numSquares  number of squares of the board
+    */
+   TileEpochs(int numSquares) {
+      stamps = new int[(numSquares + TILE_SIZE - 1) >>> TILE_SHIFT];
+   }
+
+
+   /**
+      @param square  a square, as row * numCols + col
+      @return whether the square's tile has been written (or cleared) since the last reset
+    */
+   boolean isCurrent(int square) {
+      return stamps[square >>> TILE_SHIFT] == epoch;
+   }
+
+
+   /**
+      Make the square's tile current, before a write to it.
+      @param square  a square, as row * numCols + col
+      @return true if the tile was stale: the caller must clear squares [tileStart(square), tileStart(square) + TILE_SIZE)
+              (as far as the board goes) before the write
+    */
+   boolean refresh(int square) {
+      int tile = square >>> TILE_SHIFT;
+      if (stamps[tile] == epoch) {
+         return false;
+      }
+      stamps[tile] = epoch;
+      return true;
+   }
+
+
+   /**
+      Start a new epoch, making every tile stale.
+      @return true if the counter wrapped around: then every tile is current again, and the caller must clear the
+              whole board now
+    */
+   boolean advance() {
+      epoch++;
+      if (epoch != 0) {
+         return false;
+      }
+      Arrays.fill(stamps, 0);
+      return true;
+   }
+
+
+   /** @return the first square of the tile of square */
+   static int tileStart(int square) { return square & ~(TILE_SIZE - 1); }
+
+}
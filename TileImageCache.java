@@ -0,0 +1,171 @@
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.BorderFactory;
+import javax.swing.border.Border;
+
+/**
+   TileImageCache class
+   Pre-rendered images of one square in each of its possible visible states (see the public constants in
+   VisibleField).  GameBoardPanel paints the board by copying these images, so repainting does no text layout,
+   font measurement or allocation per square.
+
+   One set of images is kept for each (square size, display scale) pair in use, up to MAX_TILE_SETS of the most
+   recently used ones, so zooming back and forth or moving the window between monitors of different DPI doesn't
+   render the tiles again each time.  Images are rendered at device resolution, so drawing one at the square size
+   through a Graphics with that scale is a plain copy.
+ */
+
+class TileImageCache {
+
+   private static final Border COVERED_BORDER = BorderFactory.createRaisedBevelBorder();
+   private static final Border UNCOVERED_BORDER = BorderFactory.createLoweredBevelBorder();
+
+   // font sizes are for a square of REFERENCE_SIZE, and are scaled with the square
+   private static final int REFERENCE_SIZE = 25;
+   private static final Font DEFAULT_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 24);
+   private static final Font INCORRECT_GUESS_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 36);
+
+   private static final Color EXPLODED_MINE_COLOR = Color.RED;
+   private static final Color MINE_COLOR = Color.BLACK;
+   private static final Color MINE_GUESS_COLOR = Color.YELLOW;
+   private static final Color TEXT_COLOR = Color.BLACK;
+
+   // the visible states are the consecutive values QUESTION ... EXPLODED_MINE
+   private static final int NUM_STATES = VisibleField.EXPLODED_MINE - VisibleField.QUESTION + 1;
+
+   // a handful covers a few zoom levels on a couple of monitors; each set is only NUM_STATES small images
+   private static final int MAX_TILE_SETS = 8;
+
+   private final Component owner;    // the board: gives the background color and the graphics configuration
+
+   // tile sets by "tileSize@scale", least recently used first; the oldest is dropped beyond MAX_TILE_SETS
+   private final Map<String, BufferedImage[]> tileSets = new LinkedHashMap<String, BufferedImage[]>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, BufferedImage[]> eldest) {
+         return size() > MAX_TILE_SETS;
+      }
+   };
+
+   private BufferedImage[] tiles;    // the set for the last call to validate
+   private int tileSize = -1;        // size of a square, in user space units, that tiles was rendered for
+   private double scale = -1;        // display scale tiles was rendered for
+
+
+   /**
+      Creates an empty cache.  The tiles are rendered by the first call to validate.
+      @param owner  the component the tiles are painted on
+    */
+   public TileImageCache(Component owner) {
+      this.owner = owner;
+   }
+
+
+   /**
+      Make sure the tiles are rendered for the given square size and display scale, reusing a cached set if
+      that pair was seen recently and rendering a new set otherwise.
+      @param tileSize  size of a square in user space units
+      @param scale  display scale (device pixels per user space unit) of the Graphics the tiles will be drawn with
+    */
+   public void validate(int tileSize, double scale) {
+      if (tileSize == this.tileSize && scale == this.scale) {
+         return;
+      }
+      this.tileSize = tileSize;
+      this.scale = scale;
+      String key = tileSize + "@" + scale;
+      tiles = tileSets.get(key);
+      if (tiles == null) {
+         tiles = new BufferedImage[NUM_STATES];
+         for (int status = VisibleField.QUESTION; status <= VisibleField.EXPLODED_MINE; status++) {
+            tiles[status - VisibleField.QUESTION] = render(status);
+         }
+         tileSets.put(key, tiles);
+      }
+   }
+
+
+   /**
+      Get the image for a square with the given status.  Should be drawn at tileSize x tileSize (see validate).
+      @param status  a visible status (see VisibleField getStatus)
+      @return the image
+    */
+   public BufferedImage getTile(int status) {
+      return tiles[status - VisibleField.QUESTION];
+   }
+
+
+   /**
+      Draws one square the way the old per-square JLabels looked: a raised or lowered bevel, a background
+      color for mines and guesses, and centered text.
+    */
+   private BufferedImage render(int status) {
+      int pixels = Math.max(1, (int) Math.ceil(tileSize * scale));
+      GraphicsConfiguration config = owner.getGraphicsConfiguration();
+      BufferedImage image = (config != null) ? config.createCompatibleImage(pixels, pixels)
+                                             : new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_RGB);
+      Graphics2D g = image.createGraphics();
+      g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+      g.scale(scale, scale);
+
+      g.setColor(backgroundColor(status));
+      g.fillRect(0, 0, tileSize, tileSize);
+
+      Border border = (status >= 0) ? UNCOVERED_BORDER : COVERED_BORDER;
+      border.paintBorder(owner, g, 0, 0, tileSize, tileSize);
+
+      String text = text(status);
+      if (!text.isEmpty()) {
+         Font font = (status == VisibleField.INCORRECT_GUESS) ? INCORRECT_GUESS_FONT : DEFAULT_FONT;
+         g.setFont(font.deriveFont(font.getSize2D() * tileSize / REFERENCE_SIZE));
+         g.setColor(TEXT_COLOR);
+         FontMetrics metrics = g.getFontMetrics();
+         int x = (tileSize - metrics.stringWidth(text)) / 2;
+         int y = (tileSize - metrics.getHeight()) / 2 + metrics.getAscent();
+         g.drawString(text, x, y);
+      }
+      g.dispose();
+      return image;
+   }
+
+
+   private Color backgroundColor(int status) {
+      if (status == VisibleField.MINE_GUESS) {
+         return MINE_GUESS_COLOR;
+      }
+      else if (status == VisibleField.MINE) {
+         return MINE_COLOR;
+      }
+      else if (status == VisibleField.EXPLODED_MINE) {
+         return EXPLODED_MINE_COLOR;
+      }
+      else {
+         return owner.getBackground();
+      }
+   }
+
+
+   private static String text(int status) {
+      if (status == VisibleField.QUESTION) {
+         return "?";
+      }
+      else if (status == VisibleField.INCORRECT_GUESS) {
+         return "X";
+      }
+      else if (status > 0 && status <= 8) {   // status is the number of neighboring mines
+         return Integer.toString(status);
+      }
+      else {
+         return "";
+      }
+   }
+
+}
@@ -0,0 +1,92 @@
+/**
+   TranspositionCache
+      a fixed-size cache of analysis results (solver verdicts, hints, probabilities ...) keyed by
+      VisibleField.zobristHash, so a position that comes up again -- after an undo, in another branch of a search, or
+      in another copy of the same board -- is looked up instead of analyzed again.
+
+      It's a table of 2^k slots; a hash goes in slot (hash & (2^k - 1)), replacing whatever was there.  So memory use
+      is bounded, and lookups and stores are O(1) and never block: any number of threads can share one cache.  Each
+      slot holds an immutable entry with the full 64-bit hash, so a lookup only returns a value stored for exactly
+      that hash (different positions with the same 64-bit hash are possible but very unlikely).
+ */
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public final class TranspositionCache<V> {
+
+   private final AtomicReferenceArray<Entry<V>> slots;
+   private final int mask;
+
+
+   /**
+      Create an empty cache.
+      @param capacity  number of slots; rounded up to a power of 2.  PRE: 0 < capacity <= 2^30
+    */
+   public TranspositionCache(int capacity) {
+      assert capacity > 0 && capacity <= (1 << 30);
+      int size = Integer.highestOneBit(capacity);
+      if (size < capacity) {
+         size <<= 1;
+      }
+      slots = new AtomicReferenceArray<Entry<V>>(size);
+      mask = size - 1;
+   }
+
+
+   /**
+      Look up the result stored for a position.
+      @param hash  the position's VisibleField.zobristHash()
+      @return the value stored for that hash, or null if there isn't one (never stored, or replaced since)
+    */
+   public V get(long hash) {
+      Entry<V> entry = slots.get(slotOf(hash));
+      return (entry != null && entry.hash == hash) ? entry.value : null;
+   }
+
+
+   /**
+      Store the result for a position, replacing whatever was in its slot.
+      @param hash  the position's VisibleField.zobristHash()
+      @param value  the result; not null
+    */
+   public void put(long hash, V value) {
+      assert value != null;
+      slots.set(slotOf(hash), new Entry<V>(hash, value));
+   }
+
+
+   /**
+      Remove everything from the cache.
+    */
+   public void clear() {
+      for (int i = 0; i < slots.length(); i++) {
+         slots.set(i, null);
+      }
+   }
+
+
+   /**
+      @return the number of slots
+    */
+   public int capacity() {
+      return slots.length();
+   }
+
+
+   // the low bits of the hash are as good as any others (see VisibleField.zobristKey)
+   private int slotOf(long hash) {
+      return (int) hash & mask;
+   }
+
+
+   private static final class Entry<V> {
+      final long hash;
+      final V value;
+
+      Entry(long hash, V value) {
+         this.hash = hash;
+         this.value = value;
+      }
+   }
+
+}
@@ -13,6 +13,8 @@
   outside this class via the getMineField accessor.  
  */
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class VisibleField {
    // ----------------------------------------------------------   
@@ -33,14 +35,53 @@ public class VisibleField {
    public static final int INCORRECT_GUESS = 10;  // is displayed a specific way at the end of losing game
    public static final int EXPLODED_MINE = 11;   // the one you uncovered by mistake (that caused you to lose)
    // ----------------------------------------------------------   
+   
+   /** How a click on an empty square finds the region to uncover (see setRevealMode).  All give the same result */
+   public enum RevealMode {
+      /** Looks the region up in the MineField's openings (labeled for the whole board on the first click of a
+          layout), or, if the player flagged or uncovered part of it, searches one square at a time */
+      OPENINGS,
+      /** Breadth first search spread over all the processors (see ParallelFill) */
+      PARALLEL,
+      /** Grows the region 64 squares at a time on bitboards (see BitboardFill) */
+      BITBOARD
+   }
+   
   
    // Reference to the minefield that the visible field 'covers' 
    private MineField coveredMineField;
    
-   /** 2D array declared to hold the state of all the squares corresponding to the locations of the underlying minefield
-       Represents the visible field */
+   /** Represents the visible field: the state of the square (row, col) is a 3-bit code (see the *_CODE constants) 
+       in bits stateShift .. stateShift + 2 of stateCells [cellOf(row, col)], in the MineField's CellLayout.  If
+       this VisibleField adopted the MineField's state bits (see MineField.adoptStateBits), stateCells is the
+       MineField's cells array and the code shares a byte with the square's mine bit and adjacent mine count;
+       otherwise it's an array of our own.  If the adopted cells are paged (MineField.isPaged), stateCells is null
+       and they are read and written through the MineField (see stateByte). */
+   
+   private byte [] stateCells;
+   private int stateShift;
+   private int numCells;                                                        // No. of cells, with any padding
    
-   private int [][] stateOfSquare ;    
+   /** The state of a square is only valid if its tile is current (see TileEpochs); it is COVERED if not, so
+       resetGameDisplay just starts a new epoch */
+   private TileEpochs stateEpochs;
+   
+   /** Once this field has been forked (see fork), or if it is a fork, its states are in stateTiles instead, shared
+       copy-on-write with the other forks; stateCells and stateEpochs are then not used.  null before that */
+   private StateTiles stateTiles;
+   
+   // Codes for the states of a square in stateCells.  An uncovered number (0-8) is stored as UNCOVERED_CODE, since the
+   // number is the adjacent mine count the MineField keeps in the same square's cell
+   private static final int COVERED_CODE = 0;
+   private static final int MINE_GUESS_CODE = 1;
+   private static final int QUESTION_CODE = 2;
+   private static final int UNCOVERED_CODE = 3;                                 // Codes below this one are covered
+   private static final int MINE_CODE = 4;
+   private static final int INCORRECT_GUESS_CODE = 5;
+   private static final int EXPLODED_MINE_CODE = 6;
+   
+   // Status for each code, except UNCOVERED_CODE
+   private static final int [] STATUS_OF_CODE = {COVERED, MINE_GUESS, QUESTION, 0, MINE, INCORRECT_GUESS, EXPLODED_MINE};
    
    private int numOfRows;                                                       // No. of rows in field
    private int numOfCols;                                                       // No. of columns in field
@@ -51,6 +92,31 @@ public class VisibleField {
    
    // Holds number of squares marked in yellow (MINE_GUESS) by the user
    private int mineGuess;
+   
+   /** Zobrist hash of the statuses of all the squares (see zobristHash), updated by setState */
+   private long zobristHash;
+   
+   /** Registered listeners; replaced (never changed) when one is added or removed, so a listener can remove itself
+       while being called */
+   private VisibleFieldListener [] listeners = new VisibleFieldListener [0];
+   
+   /** Changes made by the current move, reported to the listeners when it's finished.  Only recorded when there are
+       listeners; the arrays are reused from move to move, and only grow */
+   private int [] changedSquares = new int [0];
+   private int [] changedOldStates = new int [0];
+   private int [] changedNewStates = new int [0];
+   private int numChanged = 0;
+   
+   /** How a click on an empty square finds the region to uncover */
+   private RevealMode revealMode = RevealMode.OPENINGS;
+   
+   /** In BITBOARD mode, bitboard of the squares that are uncovered or MINE_GUESS (see BitboardFill), updated by
+       setState; null in the other modes */
+   private long [] blockedBits;
+   
+   /** In PARALLEL mode, the search (see ParallelFill), kept from click to click so its visited bitset is only
+       allocated once; made by the first parallel reveal, null before that and in the other modes */
+   private ParallelFill parallelSearch;
     
    
    /**
@@ -68,21 +134,50 @@ public class VisibleField {
       numOfCols = getMineField().numCols();
       numOfMines = getMineField().numMines();
       
-      // Creating a visible field using a 2D array of the same dimensions as the underlying minefield
-      stateOfSquare = new int [numOfRows][numOfCols];
+      // Keeping the state in the MineField's cells if no other VisibleField does, otherwise in a new array
+      numCells = getMineField().cellLayout().size(numOfRows, numOfCols);
       
-      for (int i = 0; i < numOfRows; i++) {
+      if (getMineField().adoptStateBits()) {
          
-         for (int j = 0; j < numOfCols; j++) {
+         stateCells = getMineField().cells();
+         stateShift = MineField.STATE_SHIFT;
          
-            stateOfSquare [i][j]= COVERED;                                      // Covering up the squares for the initial state                               
-         }
+      }
+      
+      else {
+         
+         stateCells = new byte [numCells];
+         stateShift = 0;
          
       }
+      
+      stateEpochs = new TileEpochs(numCells);
+      coverAll();                                                               // Covering up the squares for the initial state
     
       // No squares are uncovered and no mines are guessed , so game is not over
       numUncoveredSquares = 0;                                                   
       mineGuess = 0;                                                             
+      zobristHash = 0;                                                          // All squares COVERED
+      
+   }
+     
+ 
+   
+   // The copy made by fork: the same states (sharing parent's tiles), counts and reveal mode, with no listeners
+   private VisibleField(VisibleField parent) {                                  // Total no. of lines : 10
+      
+      coveredMineField = parent.coveredMineField;
+      numOfRows = parent.numOfRows;
+      numOfCols = parent.numOfCols;
+      numOfMines = parent.numOfMines;
+      numCells = parent.numCells;
+      stateTiles = parent.stateTiles.fork();
+      
+      numUncoveredSquares = parent.numUncoveredSquares;
+      mineGuess = parent.mineGuess;
+      zobristHash = parent.zobristHash;
+      revealMode = parent.revealMode;
+      blockedBits = (parent.blockedBits == null) ? null : parent.blockedBits.clone();
       
    }
      
@@ -99,23 +194,101 @@ public class VisibleField {
           before populating it with new ones for random MineField and for non-random MineField, we use the same minefield in
           subsequent games. */
       
-      for (int i = 0; i < numOfRows; i++) {
+      coverAll();                                                               // All squares reset to covered state
+      
+      numUncoveredSquares = 0;                                                  // No squares are uncovered and no mines are guessed
+      mineGuess = 0;
+      zobristHash = 0;
+      
+      for (VisibleFieldListener listener : listeners) {
          
-         for (int j = 0; j < numOfCols; j++) {
+         listener.boardReset(this);
+         
+      }
+   
+   }
+  
+  
+   
+   /**
+      Registers a listener to be told about every change to this field (see VisibleFieldListener).
+      @param listener  the listener to add
+    */
+   
+   public void addVisibleFieldListener(VisibleFieldListener listener) {         // Total no. of lines : 2
+      
+      listeners = Arrays.copyOf(listeners, listeners.length + 1);
+      listeners [listeners.length - 1] = listener;
+      
+   }
+  
+  
+   
+   /**
+      Unregisters a listener added with addVisibleFieldListener.  Does nothing if it isn't registered.
+      @param listener  the listener to remove
+    */
+   
+   public void removeVisibleFieldListener(VisibleFieldListener listener) {      // Total no. of lines : 6
+      
+      for (int i = 0; i < listeners.length; i++) {
          
-            stateOfSquare [i][j] = COVERED;                                     // All squares reset to covered state
+         if (listeners [i] == listener) {
+            
+            VisibleFieldListener [] remaining = new VisibleFieldListener [listeners.length - 1];
+            System.arraycopy(listeners, 0, remaining, 0, i);
+            System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+            listeners = remaining;
+            return;
             
          }
          
       }
       
-      numUncoveredSquares = 0;                                                  // No squares are uncovered and no mines are guessed
-      mineGuess = 0;
-   
    }
   
   
    
+   /**
+      Sets how a click on an empty square finds the region to uncover.  OPENINGS (the default) is fastest for
+      ordinary boards; PARALLEL and BITBOARD don't label the openings of the whole board on the first click, so
+      they're faster for the first click on a huge, sparse board.  BITBOARD also keeps a bitboard of the blocked
+      squares, which makes resetGameDisplay O(numRows * numCols / 64) instead of O(1).  On a paged MineField (see
+      MineField.isPaged) the mode is ignored, and the region is searched a row at a time (see squaresScanlineFill).
+      @param mode  the mode
+    */
+   
+   public void setRevealMode(RevealMode mode) {                                 // Total no. of lines : 11
+      
+      revealMode = mode;
+      blockedBits = null;
+      parallelSearch = null;
+      
+      if (mode == RevealMode.BITBOARD) {
+         
+         int words = BitboardFill.wordsPerRow(numOfCols);
+         blockedBits = new long [numOfRows * words];
+         
+         for (int i = 0; i < numOfRows; i++) {
+            
+            for (int j = 0; j < numOfCols; j++) {
+               
+               if (isBlocked(codeOf(cellOf(i,j)))) {
+                  
+                  blockedBits [i * words + (j >>> 6)] |= 1L << j;
+                  
+               }
+               
+            }
+            
+         }
+         
+      }
+      
+   }
+   
+   
+   
    /**
       Returns a reference to the mineField that this VisibleField "covers"
       @return the minefield
@@ -142,7 +315,7 @@ public class VisibleField {
       
       assert getMineField().inRange(row,col);                                   // Checks if the location is within range
       
-      int status = stateOfSquare [row][col];
+      int status = statusOf(cellOf(row,col));
       
       return status;                                                            // Returns status of a particular square
       
@@ -150,6 +323,226 @@ public class VisibleField {
 
    
    
+   /**
+      Copies the status of every square in a rectangular region into an array, a row of the region at a time.  
+      Each status fits in a byte (see the public constants at the beginning of the class).  One call for a region 
+      is much cheaper than a getStatus call for each of its squares.
+      @param firstRow  top row of the region
+      @param firstCol  left column of the region
+      @param height  number of rows in the region
+      @param width  number of columns in the region
+      @param dest  where the statuses go: the status of (firstRow + i, firstCol + j) at dest [offset + i * width + j]
+      @param offset  index in dest of the status of (firstRow, firstCol)
+      PRE: the region is inside the field, and dest has room for height * width statuses from offset
+    */
+   
+   public void copyStatus(int firstRow, int firstCol, int height, int width, byte [] dest, int offset) { // Total no. of lines : 5
+      
+      assert regionInRange(firstRow, firstCol, height, width);
+      
+      for (int i = 0; i < height; i++) {
+         
+         int rowOffset = offset + i * width - firstCol;
+         
+         for (int col = firstCol; col < firstCol + width; col++) {
+            
+            dest [rowOffset + col] = (byte) statusOf(cellOf(firstRow + i, col));
+            
+         }
+         
+      }
+      
+   }
+   
+   
+   
+   /**
+      Copies the status of every square in a rectangular region into a buffer, at its position, in the same order as
+      copyStatus(firstRow, firstCol, height, width, byte [], int).  The position of the buffer is advanced past them.
+      @param firstRow  top row of the region
+      @param firstCol  left column of the region
+      @param height  number of rows in the region
+      @param width  number of columns in the region
+      @param dest  where the statuses go
+      PRE: the region is inside the field, and dest.remaining() >= height * width
+    */
+   
+   public void copyStatus(int firstRow, int firstCol, int height, int width, ByteBuffer dest) { // Total no. of lines : 11
+      
+      assert regionInRange(firstRow, firstCol, height, width);
+      
+      if (dest.hasArray()) {                                                    // Heap buffer: copy straight into its array
+         
+         copyStatus(firstRow, firstCol, height, width, dest.array(), dest.arrayOffset() + dest.position());
+         dest.position(dest.position() + height * width);
+         return;
+         
+      }
+      
+      for (int i = 0; i < height; i++) {
+         
+         for (int col = firstCol; col < firstCol + width; col++) {
+            
+            dest.put((byte) statusOf(cellOf(firstRow + i, col)));
+            
+         }
+         
+      }
+      
+   }
+   
+   
+   
+   /**
+      Sets a bit for each square of a rectangular region that is covered (COVERED, MINE_GUESS or QUESTION), and clears
+      it for the others.  The bits are in the same order as the statuses from copyStatus: the square (firstRow + i,
+      firstCol + j) is bit (k % 64) of dest [k / 64], where k = i * width + j.
+      @param firstRow  top row of the region
+      @param firstCol  left column of the region
+      @param height  number of rows in the region
+      @param width  number of columns in the region
+      @param dest  where the bits go; any bits past the last square of the region in the last word used are cleared
+      PRE: the region is inside the field, and dest.length >= (height * width + 63) / 64
+    */
+   
+   public void coveredMask(int firstRow, int firstCol, int height, int width, long [] dest) { // Total no. of lines : 2
+      
+      assert regionInRange(firstRow, firstCol, height, width);
+      
+      copyMask(firstRow, firstCol, height, width, dest, false);
+      
+   }
+   
+   
+   
+   /**
+      Sets a bit for each square of a rectangular region that is flagged (MINE_GUESS), and clears it for the others.
+      The bits are in the same order as for coveredMask.
+      @param firstRow  top row of the region
+      @param firstCol  left column of the region
+      @param height  number of rows in the region
+      @param width  number of columns in the region
+      @param dest  where the bits go; any bits past the last square of the region in the last word used are cleared
+      PRE: the region is inside the field, and dest.length >= (height * width + 63) / 64
+    */
+   
+   public void flaggedMask(int firstRow, int firstCol, int height, int width, long [] dest) { // Total no. of lines : 2
+      
+      assert regionInRange(firstRow, firstCol, height, width);
+      
+      copyMask(firstRow, firstCol, height, width, dest, true);
+      
+   }
+   
+   
+   
+   /**
+      Sets the status of every square, e.g., to go back to a state saved with copyStatus(0, 0, numRows, numCols, ...).
+      The squares that change are reported to the listeners as one move (see VisibleFieldListener); gameOver is not
+      reported.  Used by GameReplay to jump between checkpoints.
+      The number of mines left is restored from the argument rather than counted from the statuses: after a won game
+      every mine shows as a MINE_GUESS, but only the ones the user marked count as guesses (see numMinesLeft).
+      @param statuses  the statuses, as from copyStatus for the whole field
+      @param minesLeft  numMinesLeft() when the statuses were saved
+      PRE: statuses is a state of this field that can come up in a game
+    */
+   
+   void restoreStatus(byte [] statuses, int minesLeft) {                      // Total no. of lines : 9
+      
+      assert statuses.length == numOfRows * numOfCols;
+      
+      numUncoveredSquares = 0;
+      mineGuess = getMineField().numMines() - minesLeft;
+      
+      for (int square = 0; square < statuses.length; square++) {
+         
+         int state = statuses [square];
+         setState(square / numOfCols, square % numOfCols, state);
+         
+         if (state >= 0 && state <= 8) {
+            
+            numUncoveredSquares ++;
+            
+         }
+         
+      }
+      
+      fireSquaresChanged();
+      
+   }
+   
+   
+   
+   /**
+      Returns a copy of this field to try moves on and then throw away (e.g., in a bot's lookahead search).  It
+      starts in the same state, with the same counts and reveal mode, and from then on neither one sees the other's
+      moves.  They share the MineField, which must not change while both are used (see MineField.frozenCopy), and
+      the memory of every tile of squares until one of them changes a square in it (see StateTiles), so a fork costs
+      one reference per 4096 squares, and each move on it or on this field afterwards the squares it changes, plus a
+      copy of each tile it's the first to change.  (In BITBOARD mode the fork also copies the bitboard of blocked
+      squares.)  The first fork of a field moves its states into tiles, once, in O(numRows * numCols).
+      The fork has no listeners.
+      @return the fork
+    */
+   
+   public VisibleField fork() {                                                 // Total no. of lines : 2
+      
+      if (stateTiles == null) {
+         
+         moveStatesToTiles();
+         
+      }
+      
+      return new VisibleField(this);
+      
+   }
+   
+   
+   
+   /**
+      Returns a 64-bit Zobrist hash of the status of every square: the XOR of zobristKey(square, getStatus(row, col))
+      over all the squares.  It is kept up to date as squares change (one XOR per changed square), so it costs 
+      nothing to ask for.  Fields in the same visible state have the same hash, so it can be used as the key of 
+      a TranspositionCache of analysis results.  It depends only on what's visible, not on where the mines are: 
+      fields with different layouts should not share a cache.
+      @return the hash; 0 when every square is COVERED
+    */
+   
+   public long zobristHash() {                                                  // Total no. of lines : 1
+      
+      return zobristHash;
+      
+   }
+   
+   
+   
+   /**
+      Returns the Zobrist key of one square having one status, for working out the hash of a position without 
+      making the moves: changing square s from status a to status b changes the hash by
+      zobristKey(s, a) ^ zobristKey(s, b).  The keys are computed (with the SplitMix64 finalizer), not stored, so
+      there's no table to fill even for huge fields.
+      @param square  the square, as row * numCols + col
+      @param status  a status (see the public constants at the beginning of the class)
+      @return the key; 0 for COVERED
+    */
+   
+   public static long zobristKey(int square, int status) {                      // Total no. of lines : 6
+      
+      if (status == COVERED) {
+         
+         return 0;
+         
+      }
+      
+      long z = (((long) square << 4 | (status - QUESTION)) + 1) * 0x9E3779B97F4A7C15L;   // never 0
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+      
+   }
+   
+   
+   
    /**
       Returns the the number of mines left to guess.  This has nothing to do with whether the mines guessed are correct
       or not.  Just gives the user an indication of how many more mines the user might want to guess.  This value can
@@ -167,6 +560,20 @@ public class VisibleField {
  
    
    
+   /**
+      Returns the number of squares uncovered so far.  The game is won when this reaches the number of non-mine squares.
+      (Unlike isGameOver, this doesn't look at the squares, so it is cheap enough to call on every frame.)
+      @return the number of uncovered squares
+    */
+   
+   public int numUncoveredSquares() {                                           // Total no. of lines : 1
+      
+      return numUncoveredSquares;
+
+   }
+ 
+   
+   
    /**
       Cycles through covered states for a square, updating number of guesses as necessary.  Call on a COVERED square
       changes its status to MINE_GUESS; call on a MINE_GUESS square changes it to QUESTION;  call on a QUESTION square
@@ -183,27 +590,29 @@ public class VisibleField {
       // Any square with status apart from MINE_GUESS, QUESTION or COVERED, does not respond to a right click
       
       // If square is covered, change status to MINE_GUESS (yellow) on right click 
-      if (stateOfSquare [row][col] == COVERED) {
+      if (statusOf(cellOf(row,col)) == COVERED) {
          
-         stateOfSquare [row][col] = MINE_GUESS; 
+         setState(row,col,MINE_GUESS);
          mineGuess ++;                                                          // Increments value of mines guessed
          
       }
       
       // If square is marked as a guess, change status to QUESTION on right click
-      else if (stateOfSquare [row][col] == MINE_GUESS) {
+      else if (statusOf(cellOf(row,col)) == MINE_GUESS) {
          
-         stateOfSquare [row][col] = QUESTION;
+         setState(row,col,QUESTION);
          mineGuess -- ;                                                         // Decrements value of mines guessed
          
       }
       
       // If square is marked as question, change status to COVERED on right click , no change to no. of mine guesses
-      else if (stateOfSquare [row][col] == QUESTION) {
+      else if (statusOf(cellOf(row,col)) == QUESTION) {
          
-         stateOfSquare [row][col] = COVERED;
+         setState(row,col,COVERED);
          
       }
+      
+      fireSquaresChanged();
     
    }
 
@@ -224,21 +633,28 @@ public class VisibleField {
       PRE: getMineField().inRange(row, col)
     */
    
-   public boolean uncover(int row, int col) {                                   // Total no. of mines : 14
+   public boolean uncover(int row, int col) {                                   // Total no. of mines : 21
       
       assert getMineField().inRange(row, col);
        
       boolean uncover ;
       
+      // JFR event for this click, its duration covers the flood fill and the end of game display
+      GameEvents.UncoverEvent event = new GameEvents.UncoverEvent();
+      event.begin();
+      
+      int uncoveredBefore = numUncoveredSquares;
+      int displayChanges = 0;                                                   // Squares changed by the end of game display
+      
       /** If square has a mine, square's status changed to EXPLODED_MINE leading to loss in game. Calls the losing game display
           function to modify the gameboard display accordingly. Returns false */
       
       if (getMineField().hasMine(row,col)) {                                    
          
-         losingGameDisplay();
+         displayChanges = losingGameDisplay();
          
-         // Assigning the EXPLODED_MINE status to highlight this mine in Red
-         stateOfSquare [row][col] = EXPLODED_MINE;
+         // Assigning the EXPLODED_MINE status to highlight this mine in Red (losingGameDisplay counted it already, as a MINE)
+         setState(row,col,EXPLODED_MINE);
          uncover = false;
          
       }
@@ -249,17 +665,53 @@ public class VisibleField {
          // If square has non-0 adjacent mines, assigns its value to status and increments numUncoveredSquares
          if (getMineField().numAdjacentMines(row,col) != 0) {
         
-            stateOfSquare [row][col] = getMineField().numAdjacentMines(row,col);
+            setState(row,col,getMineField().numAdjacentMines(row,col));
             numUncoveredSquares ++;
            
          }
         
-         /** If square does not have adjacent mines, calls squaresRecursiveFill or recursive function to open up a
+         /** If square does not have adjacent mines, calls squaresRecursiveFill or flood fill function to open up a
              region consisting of other empty squares all the way till the squares with adjacent mines at the boundary of the region. */
              
          else {
            
-            squaresRecursiveFill (row,col); 
+            GameEvents.FloodFillEvent fillEvent = new GameEvents.FloodFillEvent();
+            fillEvent.begin();
+            int uncoveredBeforeFill = numUncoveredSquares;
+            
+            // The region is normally looked up in the MineField's precomputed openings; squaresRecursiveFill is only
+            // needed when the player has already flagged or uncovered part of it
+            if (getMineField().isPaged()) {                                     // The others need memory for the whole board
+               
+               squaresScanlineFill(row,col);
+               
+            }
+            
+            else if (revealMode == RevealMode.PARALLEL) {
+               
+               parallelFill(row,col);
+               
+            }
+            
+            else if (revealMode == RevealMode.BITBOARD) {
+               
+               bitboardFill(row,col);
+               
+            }
+            
+            else if (!uncoverOpening(row,col)) {
+               
+               squaresRecursiveFill (row,col); 
+               
+            }
+            
+            fillEvent.end();
+            if (fillEvent.shouldCommit()) {
+               fillEvent.rows = numOfRows;
+               fillEvent.cols = numOfCols;
+               fillEvent.squaresChanged = numUncoveredSquares - uncoveredBeforeFill;
+               fillEvent.commit();
+            }
            
          }
         
@@ -268,7 +720,31 @@ public class VisibleField {
       }
     
       // Calls winningGameDisplay() to modify game display if winning condition is reached 
-      winningGameDisplay();
+      displayChanges += winningGameDisplay();
+      
+      event.end();
+      if (event.shouldCommit()) {
+         event.rows = numOfRows;
+         event.cols = numOfCols;
+         event.row = row;
+         event.col = col;
+         event.squaresChanged = numUncoveredSquares - uncoveredBefore + displayChanges;
+         event.commit();
+      }
+      
+      fireSquaresChanged();
+      
+      // The game ends on this move if a mine was uncovered, or if this move uncovered the last non-mine square
+      if (listeners.length > 0 && (!uncover || (numUncoveredSquares > uncoveredBefore 
+                                                && numUncoveredSquares == numOfRows * numOfCols - numOfMines))) {
+         
+         for (VisibleFieldListener listener : listeners) {
+            
+            listener.gameOver(this, uncover);
+            
+         }
+         
+      }
                     
       return uncover;     
       
@@ -291,7 +767,7 @@ public class VisibleField {
                                                                  
          for (int j = 0; j < numOfCols; j++ ) {
          
-            if (stateOfSquare [i][j] == EXPLODED_MINE) {
+            if (statusOf(cellOf(i,j)) == EXPLODED_MINE) {
                
                isGameOver = true;
                
@@ -327,7 +803,7 @@ public class VisibleField {
       
       assert getMineField().inRange(row,col);
       
-      if (stateOfSquare [row][col] >= 0) {                                     // Negative status: Covered and Non-Negative status: Uncovered
+      if (statusOf(cellOf(row,col)) >= 0) {                              // Negative status: Covered and Non-Negative status: Uncovered
     
          return true;
          
@@ -343,70 +819,309 @@ public class VisibleField {
    
  
    
-   /**Recursive method that is called when user left clicks on an empty square, that is, one without any adjacent mines.
-      Uses flood-fill algorithm (a variation of DFS) to recursively check all the 8 neighbours of the concerned
-      square. Uncovers all squares that are not a mine or not adjacent to any mine, all the way to the first occurrence
-      of squares with adjacent mines at the boundary of the uncovered region.
+   /**Method that is called when user left clicks on an empty square, that is, one without any adjacent mines.
+      Uncovers the whole opening containing the square by walking the list of its squares that the MineField has 
+      already worked out, without searching the board.  This gives the same result as squaresRecursiveFill only
+      when none of the empty squares of the opening is a MINE_GUESS or already uncovered (either of which would
+      stop the fill there), so in that case nothing is changed and false is returned.
+      Numbered squares around the opening are uncovered unless they are a MINE_GUESS or already uncovered.
       @param row row of the empty square
-      @param col col of the empty square  
+      @param col col of the empty square
+      @return whether the opening was uncovered
     */
    
-   private void squaresRecursiveFill(int row, int col) {                        // Total no. of lines : 20
+   private boolean uncoverOpening(int row, int col) {                           // Total no. of lines : 19
       
-      if (!getMineField().inRange(row,col)) {                                   // Returns if location of square is not in range
+      MineField mineField = getMineField();
+      int opening = mineField.openingOf(row,col);
+      int [] squares = mineField.openingSquares();
+      int borderStart = mineField.openingBorderStart(opening);
+      
+      for (int k = mineField.openingStart(opening); k < borderStart; k++) {
          
-         return;
+         int state = statusOf(cellOf(squares [k] / numOfCols, squares [k] % numOfCols));
+         
+         if (state != COVERED && state != QUESTION) {
+            
+            return false;
+            
+         }
          
       }
       
-      if (isUncovered(row,col)) {                                               // Returns if square is already uncovered 
+      for (int k = mineField.openingStart(opening); k < borderStart; k++) {
+         
+         setState(squares [k] / numOfCols, squares [k] % numOfCols, 0);
          
-         return;
       }
       
-      /** Returns or stops searching in that particular direction if MINE_GUESS is encountered. Such a square is not 
-          uncovered even if it falls within the uncovered region during recursion */
+      numUncoveredSquares += borderStart - mineField.openingStart(opening);
       
-      if (stateOfSquare [row][col] == MINE_GUESS) {                         
-            
-         return;
+      for (int k = borderStart; k < mineField.openingEnd(opening); k++) {
          
-      }
-            
-      int adjacentMines = getMineField().numAdjacentMines(row,col);             
-     
-      // If no. of adjacent mines >= 0, then assigns that value as the status and increments numUncoveredSquares
-      if (adjacentMines >= 0 ) {
-     
-         stateOfSquare [row][col] = adjacentMines;
-         numUncoveredSquares ++ ;
+         int r = squares [k] / numOfCols;
+         int c = squares [k] % numOfCols;
          
-         // Returns on encountering a non-empty square at the region's boundary but still assigns status to it in outer 'if' loop
-         if (adjacentMines != 0) {
+         if (statusOf(cellOf(r,c)) == COVERED || statusOf(cellOf(r,c)) == QUESTION) {
             
-            return;
+            setState(r,c,mineField.numAdjacentMines(r,c));
+            numUncoveredSquares ++;
             
          }
          
       }
-           
-      //Recursive call to function for 8- way connectivity - 1 for each neighbour
       
-      squaresRecursiveFill (row-1, col-1);                                      // North - West neighbour
+      return true;
       
-      squaresRecursiveFill (row-1, col);                                        // North neighbour
+   }
+   
+   
+   
+   /**Method that is called when user left clicks on an empty square in bitboard reveal mode.  Uncovers the same
+      squares as squaresRecursiveFill, found by BitboardFill.
+      @param row row of the empty square
+      @param col col of the empty square  
+    */
+   
+   private void bitboardFill(int row, int col) {                                // Total no. of lines : 11
       
-      squaresRecursiveFill (row-1, col+1);                                      // North - East neighbour
+      long [] squares = BitboardFill.reveal(getMineField().zeroCountBits(), blockedBits, numOfRows, numOfCols, row, col);
+      int words = BitboardFill.wordsPerRow(numOfCols);
       
-      squaresRecursiveFill (row, col-1);                                        // West neighbour
+      for (int w = 0; w < squares.length; w++) {
+         
+         for (long bits = squares [w]; bits != 0; bits &= bits - 1) {           // Each set bit, lowest first
+            
+            int r = w / words;
+            int c = (w % words) * 64 + Long.numberOfTrailingZeros(bits);
+            
+            setState(r,c,getMineField().numAdjacentMines(r,c));
+            numUncoveredSquares ++;
+            
+         }
+         
+      }
       
-      squaresRecursiveFill (row, col+1);                                        // East neighbour
+   }
+   
+   
+   
+   /**Method that is called when user left clicks on an empty square in parallel reveal mode.  Uncovers the same
+      squares as squaresRecursiveFill, found by ParallelFill on several threads, then uncovered on this one.
+      @param row row of the empty square
+      @param col col of the empty square  
+    */
+   
+   private void parallelFill(int row, int col) {                                // Total no. of lines : 8
+      
+      if (parallelSearch == null) {
+         
+         parallelSearch = new ParallelFill(this);
+         
+      }
       
-      squaresRecursiveFill (row+1, col-1);                                      // South - West neighbour
+      int [] squares = parallelSearch.reveal(row, col);
       
-      squaresRecursiveFill (row+1, col);                                        // South neighbour
+      for (int square : squares) {
+         
+         int r = square / numOfCols;
+         int c = square % numOfCols;
+         
+         setState(r,c,getMineField().numAdjacentMines(r,c));
+         
+      }
       
-      squaresRecursiveFill (row+1, col+1);                                      // South - East neighbour
+      numUncoveredSquares += squares.length;
+      
+   }
+   
+   
+   
+   /**Method that is called when user left clicks on an empty square of a paged MineField.  Uncovers the same
+      squares as squaresRecursiveFill, but a run of empty squares along a row at a time: each run found is uncovered
+      along with the numbered squares at its ends, then the rows above and below it are scanned (one column further
+      each way, for 8-way connectivity) for the numbered squares next to it and for the runs of empty squares it
+      touches, one of which is kept to visit later for each run.  So the squares still to visit are only one per run
+      rather than one per square, and the board is read a row at a time, which keeps the paging local.
+      @param row row of the empty square
+      @param col col of the empty square  
+    */
+   
+   private void squaresScanlineFill(int row, int col) {                         // Total no. of lines : 30
+      
+      int [] pending = new int [64];                                            // Runs to visit, one square of each
+      int numPending = 0;
+      
+      pending [numPending++] = row * numOfCols + col;
+      
+      while (numPending > 0) {
+         
+         int square = pending [--numPending];
+         int r = square / numOfCols;
+         int c = square % numOfCols;
+         
+         // Skips a run that was already uncovered (always all of it at once) since it was found
+         if (!isOpenSquare(r,c)) {
+            
+            continue;
+            
+         }
+         
+         int first = c;
+         int last = c;
+         
+         while (first > 0 && isOpenSquare(r,first - 1)) {
+            
+            first --;
+            
+         }
+         
+         while (last < numOfCols - 1 && isOpenSquare(r,last + 1)) {
+            
+            last ++;
+            
+         }
+         
+         for (int j = first; j <= last; j++) {
+            
+            setState(r,j,0);
+            numUncoveredSquares ++;
+            
+         }
+         
+         uncoverIfNumbered(r,first - 1);                                        // Ends of the run
+         uncoverIfNumbered(r,last + 1);
+         
+         for (int i = r - 1; i <= r + 1; i += 2) {
+            
+            if (i < 0 || i >= numOfRows) {
+               
+               continue;
+               
+            }
+            
+            for (int j = Math.max(0, first - 1); j <= Math.min(numOfCols - 1, last + 1); j++) {
+               
+               if (!isOpenSquare(i,j)) {
+                  
+                  uncoverIfNumbered(i,j);
+                  
+               }
+               
+               else if (j == Math.max(0, first - 1) || !isOpenSquare(i,j - 1)) {   // First square of a run
+                  
+                  if (numPending == pending.length) {
+                     
+                     pending = Arrays.copyOf(pending, numPending * 2);
+                     
+                  }
+                  
+                  pending [numPending++] = i * numOfCols + j;
+                  
+               }
+               
+            }
+            
+         }
+         
+      }
+      
+   }
+   
+   
+   
+   // Whether a square is in range, COVERED or QUESTION, and has no adjacent mines (and so no mine, next to a run)
+   private boolean isOpenSquare(int row, int col) {
+      
+      return getMineField().inRange(row,col) && codeOf(cellOf(row,col)) != MINE_GUESS_CODE && !isUncovered(row,col)
+             && getMineField().numAdjacentMines(row,col) == 0 && !getMineField().hasMine(row,col);
+      
+   }
+   
+   
+   
+   // Uncovers a square next to a run of empty squares, if it's in range, COVERED or QUESTION (it has adjacent mines)
+   private void uncoverIfNumbered(int row, int col) {
+      
+      if (getMineField().inRange(row,col) && codeOf(cellOf(row,col)) != MINE_GUESS_CODE && !isUncovered(row,col)) {
+         
+         setState(row,col,getMineField().numAdjacentMines(row,col));
+         numUncoveredSquares ++;
+         
+      }
+      
+   }
+   
+   
+   
+   /**Method that is called when user left clicks on an empty square, that is, one without any adjacent mines,
+      and the opening around it can't be uncovered with uncoverOpening.
+      Uses flood-fill algorithm (a variation of DFS) to check all the 8 neighbours of the concerned
+      square. Uncovers all squares that are not a mine or not adjacent to any mine, all the way to the first occurrence
+      of squares with adjacent mines at the boundary of the uncovered region.
+      The squares still to visit are kept on an explicit stack instead of the call stack, so opening a region of
+      millions of squares cannot overflow the thread's stack.
+      @param row row of the empty square
+      @param col col of the empty square  
+    */
+   
+   private void squaresRecursiveFill(int row, int col) {                        // Total no. of lines : 24
+      
+      int [] pending = new int [64];                                            // Squares to visit, as row * numOfCols + col
+      int numPending = 0;
+      
+      pending [numPending++] = row * numOfCols + col;
+      
+      while (numPending > 0) {
+         
+         int square = pending [--numPending];
+         int r = square / numOfCols;
+         int c = square % numOfCols;
+         
+         /** Skips a square that is already uncovered, or a MINE_GUESS: such a square is not uncovered even if it falls 
+             within the uncovered region, and the search stops in that direction */
+         
+         if (isUncovered(r,c) || statusOf(cellOf(r,c)) == MINE_GUESS) {
+            
+            continue;
+            
+         }
+         
+         int adjacentMines = getMineField().numAdjacentMines(r,c);             
+         
+         // Assigns no. of adjacent mines as the status and increments numUncoveredSquares
+         setState(r,c,adjacentMines);
+         numUncoveredSquares ++ ;
+         
+         // Stops on encountering a non-empty square at the region's boundary, but it still got its status above
+         if (adjacentMines != 0) {
+            
+            continue;
+            
+         }
+         
+         // Visits all in-range neighbours for 8- way connectivity
+         for (int i = r - 1; i <= r + 1; i++) {
+            
+            for (int j = c - 1; j <= c + 1; j++) {
+               
+               if (getMineField().inRange(i,j) && !(i == r && j == c)) {
+                  
+                  if (numPending == pending.length) {
+                     
+                     pending = Arrays.copyOf(pending, numPending * 2);
+                     
+                  }
+                  
+                  pending [numPending++] = i * numOfCols + j;
+                  
+               }
+               
+            }
+            
+         }
+         
+      }
       
    }
    
@@ -417,25 +1132,30 @@ public class VisibleField {
       
       1) Marks a MINE_GUESS as incorrect (X) if it does not contain a mine 
       2) Indicates the location of mines that were not exploded or guessed correctly during the game with a black square
+      @return the number of squares whose status was changed
     */
    
-   private void losingGameDisplay() {                                           // Total no. of lines : 6
+   private int losingGameDisplay() {                                            // Total no. of lines : 9
+      
+      int squaresChanged = 0;
       
       for (int i = 0; i < numOfRows; i++) {
          
          for (int j = 0; j < numOfCols; j++) {
              
             // Checks for an incorrect guess, i.e, user marked it as a MINE_GUESS but it did not contain a mine
-            if (stateOfSquare [i][j] == MINE_GUESS && !getMineField().hasMine(i,j)) {
+            if (statusOf(cellOf(i,j)) == MINE_GUESS && !getMineField().hasMine(i,j)) {
                 
-               stateOfSquare [i][j] = INCORRECT_GUESS;                          // Status changed to INCORRECT_GUESS (X)
+               setState(i,j,INCORRECT_GUESS);                                   // Status changed to INCORRECT_GUESS (X)
+               squaresChanged ++;
                 
             }
              
             // Checks for mines that existed but were not guessed during the game
-            if (stateOfSquare [i][j] != MINE_GUESS && getMineField().hasMine(i,j)) {
+            if (statusOf(cellOf(i,j)) != MINE_GUESS && getMineField().hasMine(i,j)) {
                 
-               stateOfSquare [i][j] = MINE;                                     // Status changed to MINE (black)
+               setState(i,j,MINE);                                              // Status changed to MINE (black)
+               squaresChanged ++;
                 
             }
             
@@ -443,6 +1163,8 @@ public class VisibleField {
          
       }
       
+      return squaresChanged;
+      
    }
    
    
@@ -450,9 +1172,12 @@ public class VisibleField {
    /**The display function that is called by 'uncover' method after a square is left clicked to check if the winning
       condition of the game is achieved. It basically checks if all the non - mine squares have been uncovered successfully. 
       If so, then all mines are highlighted in yellow at the end of the game  - indicating a win
+      @return the number of squares whose status was changed
     */
    
-   private void winningGameDisplay() {                                           // Total no. of lines : 5
+   private int winningGameDisplay() {                                            // Total no. of lines : 8
+      
+      int squaresChanged = 0;
       
       if (numUncoveredSquares == numOfRows * numOfCols - numOfMines) {
               
@@ -462,7 +1187,8 @@ public class VisibleField {
          
                if (getMineField().hasMine(i,j)) {
                   
-                  stateOfSquare [i][j]= MINE_GUESS;                              // If square has mine, marks it in yellow
+                  setState(i,j,MINE_GUESS);                                      // If square has mine, marks it in yellow
+                  squaresChanged ++;
                   
                }
                
@@ -472,16 +1198,289 @@ public class VisibleField {
          
       }
       
+      return squaresChanged;
+      
    }
    
-}
-                  
-           
-     
-     
-     
-    
-     
-          
+   
+   
+   /**Sets the status of one square, recording the change for the listeners if there are any.
+      @param row row of the square
+      @param col col of the square
+      @param state its new status
+    */
+   
+   private void setState(int row, int col, int state) {                         // Total no. of lines : 22
+      
+      int square = row * numOfCols + col;
+      int cell = cellOf(row,col);
+      int oldState = statusOf(cell);
+      
+      int code;
+      
+      switch (state) {
+         case COVERED: code = COVERED_CODE; break;
+         case MINE_GUESS: code = MINE_GUESS_CODE; break;
+         case QUESTION: code = QUESTION_CODE; break;
+         case MINE: code = MINE_CODE; break;
+         case INCORRECT_GUESS: code = INCORRECT_GUESS_CODE; break;
+         case EXPLODED_MINE: code = EXPLODED_MINE_CODE; break;
+         default:                                                               // An uncovered number
+            assert state == getMineField().adjacentMinesAt(cell);
+            code = UNCOVERED_CODE;
+      }
+      
+      if (stateTiles != null) {
+         
+         stateTiles.set(cell, code);
+         
+      }
+      
+      else {
+         
+         if (stateEpochs.refresh(cell)) {                                       // First write to a stale tile
+            
+            clearStates(TileEpochs.tileStart(cell), Math.min(numCells, TileEpochs.tileStart(cell) + TileEpochs.TILE_SIZE));
+            
+         }
+         
+         setStateByte(cell, (stateByte(cell) & ~(0x07 << stateShift)) | (code << stateShift));
+         
+      }
+      
+      if (blockedBits != null) {
+         
+         int word = row * BitboardFill.wordsPerRow(numOfCols) + (col >>> 6);
+         blockedBits [word] = isBlocked(code) ? blockedBits [word] | 1L << col : blockedBits [word] & ~(1L << col);
+         
+      }
+      zobristHash ^= zobristKey(square, oldState) ^ zobristKey(square, state);
+      
+      if (listeners.length == 0 || oldState == state) {
+         
+         return;
+         
+      }
+      
+      if (numChanged == changedSquares.length) {
+         
+         int length = Math.max(64, numChanged * 2);
+         changedSquares = Arrays.copyOf(changedSquares, length);
+         changedOldStates = Arrays.copyOf(changedOldStates, length);
+         changedNewStates = Arrays.copyOf(changedNewStates, length);
+         
+      }
+      
+      changedSquares [numChanged] = square;
+      changedOldStates [numChanged] = oldState;
+      changedNewStates [numChanged] = state;
+      numChanged ++;
+      
+   }
+   
+   
+   
+   /**Reports the changes recorded by setState during the move that just finished to the listeners, if there were
+      any, and starts a new (empty) record.
+    */
+   
+   private void fireSquaresChanged() {                                          // Total no. of lines : 5
+      
+      if (numChanged == 0) {
+         
+         return;
+         
+      }
+      
+      int count = numChanged;
+      numChanged = 0;                                                           // So a move made by a listener starts a new record
+      
+      for (VisibleFieldListener listener : listeners) {
+         
+         listener.squaresChanged(this, changedSquares, changedOldStates, changedNewStates, count);
+         
+      }
+      
+   }
+   
+   
+   
+   /**Builds the mask for coveredMask (flagged false) or flaggedMask (flagged true), 64 squares per word.
+    */
+   
+   private void copyMask(int firstRow, int firstCol, int height, int width, long [] dest, boolean flagged) { // Total no. of lines : 16
+      
+      long word = 0;
+      int bit = 0;
+      int wordIndex = 0;
+      
+      for (int i = 0; i < height; i++) {
+         
+         for (int col = firstCol; col < firstCol + width; col++) {
+            
+            int code = codeOf(cellOf(firstRow + i, col));
+            boolean set = flagged ? code == MINE_GUESS_CODE : code < UNCOVERED_CODE;
+            word |= (set ? 1L : 0L) << bit;
+            
+            if (++bit == 64) {
+               
+               dest [wordIndex++] = word;
+               word = 0;
+               bit = 0;
+               
+            }
+            
+         }
          
- 
\ No newline at end of file
+      }
+      
+      if (bit > 0) {
+         
+         dest [wordIndex] = word;
+         
+      }
+      
+   }
+   
+   
+   
+   // Whether a region given as in copyStatus is all inside the field
+   private boolean regionInRange(int firstRow, int firstCol, int height, int width) {
+      
+      return height >= 0 && width >= 0 && (height == 0 || width == 0 
+             || getMineField().inRange(firstRow, firstCol) && getMineField().inRange(firstRow + height - 1, firstCol + width - 1));
+      
+   }
+   
+   
+   
+   // Status of a square, given as cellOf(row, col) (see the public constants at the beginning of the class)
+   private int statusOf(int cell) {
+      
+      int code = codeOf(cell);
+      
+      return (code == UNCOVERED_CODE) ? getMineField().adjacentMinesAt(cell) : STATUS_OF_CODE [code];
+      
+   }
+   
+   
+   
+   // Code of the state of a square, given as cellOf(row, col)
+   private int codeOf(int cell) {
+      
+      if (stateTiles != null) {
+         
+         return stateTiles.get(cell);
+         
+      }
+      
+      return stateEpochs.isCurrent(cell) ? (stateByte(cell) >> stateShift) & 0x07 : COVERED_CODE;
+      
+   }
+   
+   
+   
+   // Index of the square (row, col) in stateCells
+   private int cellOf(int row, int col) {
+      
+      return coveredMineField.cellOf(row,col);
+      
+   }
+   
+   
+   
+   // Sets every square to COVERED (without recording the changes for the listeners), in O(1) by making every tile
+   // stale (see stateEpochs), except when the epochs wrap around or in BITBOARD mode
+   private void coverAll() {
+      
+      if (stateTiles != null) {
+         
+         stateTiles.clear();
+         
+      }
+      
+      else if (stateEpochs.advance()) {
+         
+         clearStates(0, numCells);
+         
+      }
+      
+      if (blockedBits != null) {
+         
+         Arrays.fill(blockedBits, 0);
+         
+      }
+      
+   }
+   
+   
+   
+   // Before the first fork: copies the states into stateTiles, which hold them from now on (only the tiles with a
+   // square that isn't COVERED get memory)
+   private void moveStatesToTiles() {
+      
+      StateTiles tiles = new StateTiles(numCells);
+      
+      for (int cell = 0; cell < numCells; cell++) {
+         
+         tiles.set(cell, codeOf(cell));
+         
+      }
+      
+      stateTiles = tiles;
+      stateCells = null;
+      stateEpochs = null;
+      
+   }
+   
+   
+   
+   // Whether a square with this code stops a fill: uncovered, or a MINE_GUESS
+   private static boolean isBlocked(int code) {
+      
+      return code >= UNCOVERED_CODE || code == MINE_GUESS_CODE;
+      
+   }
+   
+   
+   
+   // Sets the squares [start, end) to COVERED_CODE, which is 0
+   private void clearStates(int start, int end) {
+      
+      for (int i = start; i < end; i++) {
+         
+         setStateByte(i, stateByte(i) & ~(0x07 << stateShift));
+         
+      }
+      
+   }
+   
+   
+   
+   // The byte of stateCells (or of the MineField's paged cells) that holds the state of a square
+   private int stateByte(int cell) {
+      
+      return (stateCells != null) ? stateCells [cell] : getMineField().cellAt(cell);
+      
+   }
+   
+   
+   
+   // Changes the byte that holds the state of a square
+   private void setStateByte(int cell, int value) {
+      
+      if (stateCells != null) {
+         
+         stateCells [cell] = (byte) value;
+         
+      }
+      
+      else {
+         
+         getMineField().setCellAt(cell, value);
+         
+      }
+      
+   }
+   
+}
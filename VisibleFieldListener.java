@@ -0,0 +1,44 @@
+/**
+   VisibleFieldListener
+   Receives the changes made to a VisibleField, so a View (or a logger, a network session, a solver ...) doesn't have
+   to poll getStatus for every square to find out what a move did.  Register one with
+   VisibleField.addVisibleFieldListener.
+
+   Each move (one uncover or cycleGuess call) that changes any squares is reported with one squaresChanged call,
+   after the move is finished, with all the squares it changed.  A move that ends the game is followed by gameOver.
+   resetGameDisplay is reported with boardReset only (not square by square).
+
+   Listeners are called on the thread that made the move.  The arrays passed to squaresChanged belong to the
+   VisibleField and are reused for the next move: copy out anything needed after the call returns.
+ */
+
+public interface VisibleFieldListener {
+
+   /**
+      Called once per move, with the squares the move changed, in the order they were changed.
+      A square can appear more than once (e.g., the mine you uncover becomes MINE and then EXPLODED_MINE at the end of
+      a losing game); applying the changes in order gives the current state.
+      @param field  the VisibleField that changed
+      @param squares  the squares that changed, as row * numCols + col, in entries [0, numChanged)
+      @param oldStates  the status of each of those squares before the change (see the VisibleField constants)
+      @param newStates  the status of each of those squares after the change
+      @param numChanged  number of changes (at least 1)
+    */
+   void squaresChanged(VisibleField field, int[] squares, int[] oldStates, int[] newStates, int numChanged);
+
+
+   /**
+      Called after the squaresChanged of the move that ended the game.
+      @param field  the VisibleField whose game is over
+      @param won  true if all the non-mine squares were uncovered, false if a mine was uncovered
+    */
+   void gameOver(VisibleField field, boolean won);
+
+
+   /**
+      Called after resetGameDisplay, when every square is COVERED again.
+      @param field  the VisibleField that was reset
+    */
+   void boardReset(VisibleField field);
+
+}
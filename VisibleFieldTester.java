@@ -9,6 +9,28 @@
    To run it from the command line: java VisibleFieldTester
  */
 
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+
 public class VisibleFieldTester {
    
    public static boolean[][] smallMineField = 
@@ -23,8 +45,32 @@ public class VisibleFieldTester {
        {false, true, false, true,true},
        {true, true, true, true,true}};
 
-   public static void main(String[] args) {
+   public static void main(String[] args) throws InterruptedException, InvocationTargetException {
 
+      testAccessors();
+      VisibleField game = testListener();
+      testRegionCopies(game);
+      testZobristHash(game);
+      boolean[][] sparse = sparseLayout();
+      testReveals(sparse);
+      testPagedField();
+      testFork(sparse);
+      testProbabilityEstimator();
+      testGameReplay();
+      testBoardSummary();
+      testBoardPool();
+      SwingUtilities.invokeAndWait(new Runnable() {
+         public void run() {
+            testRepaintScheduler();
+         }
+      });
+      testPooledPanelRecording();
+       
+   }
+   
+   
+   // The accessors of a new field on a fixed layout.
+   private static void testAccessors() {
       System.out.println(" Testing");
 
       VisibleField visible = new VisibleField(new MineField(smallMineField));
@@ -43,7 +89,558 @@ public class VisibleFieldTester {
       System.out.println("numMines() of underlying minefield -- should be unchanged:" + visible.getMineField().numMines());
       
       System.out.println("isUncovered(3,2) is:" +visible.isUncovered(3,2));
-       
+   }
+   
+   
+   // A listener that keeps a copy of the statuses from the changes it's told about stays the same as getStatus over
+   // random games.  Returns the field, in the middle of a game, for the next tests.
+   private static VisibleField testListener() {
+      System.out.println(" Testing VisibleFieldListener -- a copy kept up to date from the changes only");
+      
+      final VisibleField game = new VisibleField(new MineField(30, 40, 150));
+      game.getMineField().populateMineField(15, 20);
+      final int[] copy = new int[30 * 40];
+      Arrays.fill(copy, VisibleField.COVERED);
+      final boolean[] over = new boolean[1];
+      game.addVisibleFieldListener(new VisibleFieldListener() {
+         public void squaresChanged(VisibleField field, int[] squares, int[] oldStates, int[] newStates, int numChanged) {
+            for (int i = 0; i < numChanged; i++) {
+               copy[squares[i]] = newStates[i];
+            }
+         }
+         public void gameOver(VisibleField field, boolean won) { over[0] = true; }
+         public void boardReset(VisibleField field) { Arrays.fill(copy, VisibleField.COVERED); }
+      });
+      Random random = new Random(1);
+      boolean same = true;
+      for (int move = 0; move < 2000; move++) {
+         int row = (move == 0) ? 15 : random.nextInt(30);
+         int col = (move == 0) ? 20 : random.nextInt(40);
+         if (random.nextInt(3) == 0) {
+            game.cycleGuess(row, col);
+         }
+         else if (game.getStatus(row, col) != VisibleField.MINE_GUESS && !game.isUncovered(row, col)) {
+            game.uncover(row, col);
+         }
+         for (int i = 0; i < 30 * 40; i++) {
+            same = same && copy[i] == game.getStatus(i / 40, i % 40);
+         }
+         same = same && over[0] == game.isGameOver();
+         if (game.isGameOver()) {
+            game.resetGameDisplay();
+            over[0] = false;
+         }
+      }
+      System.out.println("copy same as getStatus after every move -- should be true :" + same);
+      return game;
+   }
+   
+   
+   // copyStatus (both kinds), coveredMask and flaggedMask of a region of a 30 x 40 field agree with getStatus.
+   private static void testRegionCopies(VisibleField game) {
+      System.out.println(" Testing copyStatus, coveredMask and flaggedMask on the region rows 5..24, cols 3..32");
+      
+      byte[] statuses = new byte[20 * 30];
+      ByteBuffer buffer = ByteBuffer.allocateDirect(20 * 30);
+      long[] covered = new long[(20 * 30 + 63) / 64];
+      long[] flagged = new long[covered.length];
+      game.copyStatus(5, 3, 20, 30, statuses, 0);
+      game.copyStatus(5, 3, 20, 30, buffer);
+      game.coveredMask(5, 3, 20, 30, covered);
+      game.flaggedMask(5, 3, 20, 30, flagged);
+      boolean sameRegion = buffer.position() == 20 * 30;
+      for (int k = 0; k < 20 * 30; k++) {
+         int status = game.getStatus(5 + k / 30, 3 + k % 30);
+         sameRegion = sameRegion && statuses[k] == status && buffer.get(k) == status
+                      && ((covered[k / 64] >>> (k % 64) & 1) == 1) == (status < 0)
+                      && ((flagged[k / 64] >>> (k % 64) & 1) == 1) == (status == VisibleField.MINE_GUESS);
+      }
+      System.out.println("region same as getStatus -- should be true :" + sameRegion);
+   }
+   
+   
+   // The hash of a 30 x 40 field is the same as recomputed from its statuses, and is found in a TranspositionCache;
+   // resetGameDisplay and resetEmpty clear the board.
+   private static void testZobristHash(VisibleField game) {
+      System.out.println(" Testing zobristHash -- same as recomputed from scratch, and a TranspositionCache");
+      
+      long hash = 0;
+      for (int k = 0; k < 30 * 40; k++) {
+         hash ^= VisibleField.zobristKey(k, game.getStatus(k / 40, k % 40));
+      }
+      TranspositionCache<String> cache = new TranspositionCache<String>(1000);
+      cache.put(game.zobristHash(), "seen");
+      System.out.println("hash same as recomputed -- should be true :" + (hash == game.zobristHash()));
+      System.out.println("cached value -- should be seen :" + cache.get(game.zobristHash()));
+      game.resetGameDisplay();
+      System.out.println("hash after reset -- should be 0 :" + game.zobristHash());
+      boolean allCovered = true;
+      for (int k = 0; k < 30 * 40; k++) {
+         allCovered = allCovered && game.getStatus(k / 40, k % 40) == VisibleField.COVERED;
+      }
+      game.getMineField().resetEmpty();
+      boolean noMines = true;
+      for (int k = 0; k < 30 * 40; k++) {
+         noMines = noMines && !game.getMineField().hasMine(k / 40, k % 40)
+                   && game.getMineField().numAdjacentMines(k / 40, k % 40) == 0;
+      }
+      System.out.println("all covered after reset -- should be true :" + allCovered);
+      System.out.println("no mines after resetEmpty -- should be true :" + noMines);
+      game.getMineField().populateMineField(0, 0);
+      game.uncover(0, 0);
+      System.out.println("uncover after resetEmpty and populate -- should be true :" + game.isUncovered(0, 0));
+   }
+   
+   
+   // A 300 x 300 layout with about 1% mines, none near the middle, so a click there opens a big region.
+   private static boolean[][] sparseLayout() {
+      boolean[][] sparse = new boolean[300][300];
+      Random random = new Random(7);
+      for (int i = 0; i < 300; i++) {
+         for (int j = 0; j < 300; j++) {
+            sparse[i][j] = random.nextInt(100) == 0 && Math.abs(i - 150) + Math.abs(j - 150) > 2;
+         }
+      }
+      return sparse;
+   }
+   
+   
+   // The PARALLEL and BITBOARD reveal modes uncover the same squares as OPENINGS, with flags blocking the region.
+   private static void testReveals(boolean[][] sparse) {
+      System.out.println(" Testing parallel and bitboard reveal -- same squares uncovered as without them, with flags in the way");
+      
+      Random random = new Random(8);
+      VisibleField sequential = new VisibleField(new MineField(sparse));
+      VisibleField parallel = new VisibleField(new MineField(sparse));
+      parallel.setRevealMode(VisibleField.RevealMode.PARALLEL);
+      VisibleField bitboard = new VisibleField(new MineField(sparse));
+      bitboard.setRevealMode(VisibleField.RevealMode.BITBOARD);
+      for (int k = 0; k < 300; k++) {
+         int i = random.nextInt(300);
+         int j = random.nextInt(300);
+         if (Math.abs(i - 150) + Math.abs(j - 150) > 2) {
+            sequential.cycleGuess(i, j);
+            parallel.cycleGuess(i, j);
+            bitboard.cycleGuess(i, j);
+         }
+      }
+      sequential.uncover(150, 150);
+      parallel.uncover(150, 150);
+      bitboard.uncover(150, 150);
+      boolean sameReveal = true;
+      for (int i = 0; i < 300; i++) {
+         for (int j = 0; j < 300; j++) {
+            sameReveal = sameReveal && sequential.getStatus(i, j) == parallel.getStatus(i, j)
+                         && sequential.getStatus(i, j) == bitboard.getStatus(i, j);
+         }
+      }
+      System.out.println("same statuses -- should be true :" + sameReveal);
+   }
+   
+   
+   // A game on a paged 1000 x 1000 field goes the same as in memory, and close deletes the page file.
+   private static void testPagedField() {
+      System.out.println(" Testing a paged field -- same statuses as in memory, with only 4 of its 16 pages in memory");
+      
+      Random random = new Random(9);
+      try {
+         Path pageFile = Files.createTempFile("pages", ".bin");
+         VisibleField inMemory = new VisibleField(new MineField(1000, 1000, 20000, 7, CellLayout.TILED));
+         VisibleField paged = new VisibleField(new MineField(1000, 1000, 20000, 7, CellLayout.TILED, pageFile,
+                                                             13L * PagedCells.PAGE_SIZE));
+         inMemory.getMineField().populateMineField(500, 500);
+         paged.getMineField().populateMineField(500, 500);
+         boolean samePaged = true;
+         for (int k = 0; k < 2000 && !inMemory.isGameOver(); k++) {
+            int i = (k == 0) ? 500 : random.nextInt(1000);
+            int j = (k == 0) ? 500 : random.nextInt(1000);
+            if (k % 4 == 3) {
+               inMemory.cycleGuess(i, j);
+               paged.cycleGuess(i, j);
+            }
+            else if (inMemory.getStatus(i, j) != VisibleField.MINE_GUESS) {
+               samePaged = samePaged && inMemory.uncover(i, j) == paged.uncover(i, j);
+            }
+         }
+         for (int i = 0; i < 1000; i++) {
+            for (int j = 0; j < 1000; j++) {
+               samePaged = samePaged && inMemory.getStatus(i, j) == paged.getStatus(i, j);
+            }
+         }
+         System.out.println("same statuses -- should be true :" + samePaged);
+         paged.getMineField().close();
+         System.out.println("page file deleted by close -- should be true :" + !Files.exists(pageFile));
+      }
+      catch (IOException e) {
+         System.out.println("couldn't create the page file: " + e);
+      }
+   }
+   
+   
+   // Moves on a fork leave the parent as it was, and the fork plays like a field that was never forked.
+   private static void testFork(boolean[][] sparse) {
+      System.out.println(" Testing fork -- moves on a fork don't change the parent, and the fork plays like the parent would");
+      
+      Random random = new Random(10);
+      VisibleField parentField = new VisibleField(new MineField(sparse));
+      parentField.uncover(150, 150);
+      byte[] before = new byte[300 * 300];
+      parentField.copyStatus(0, 0, 300, 300, before, 0);
+      long hashBefore = parentField.zobristHash();
+      VisibleField forked = parentField.fork();
+      VisibleField unforked = new VisibleField(new MineField(sparse));
+      unforked.uncover(150, 150);
+      for (int k = 0; k < 200; k++) {
+         int i = random.nextInt(300);
+         int j = random.nextInt(300);
+         if (!forked.isUncovered(i, j) && !sparse[i][j] && forked.getStatus(i, j) != VisibleField.MINE_GUESS) {
+            forked.uncover(i, j);
+            unforked.uncover(i, j);
+         }
+         else if (!forked.isUncovered(i, j)) {
+            forked.cycleGuess(i, j);
+            unforked.cycleGuess(i, j);
+         }
+      }
+      byte[] after = new byte[300 * 300];
+      parentField.copyStatus(0, 0, 300, 300, after, 0);
+      boolean sameFork = forked.zobristHash() == unforked.zobristHash() && forked.numMinesLeft() == unforked.numMinesLeft();
+      for (int i = 0; i < 300; i++) {
+         for (int j = 0; j < 300; j++) {
+            sameFork = sameFork && forked.getStatus(i, j) == unforked.getStatus(i, j);
+         }
+      }
+      System.out.println("parent unchanged -- should be true :" 
+                         + (Arrays.equals(before, after) && parentField.zobristHash() == hashBefore));
+      System.out.println("fork same as playing without forking -- should be true :" + sameFork);
+   }
+   
+   
+   // With one mine next to an uncovered 1 and three covered squares, each has probability 1/3.
+   private static void testProbabilityEstimator() {
+      System.out.println(" Testing MineProbabilityEstimator -- one mine next to the uncovered 1 in a 2 x 2 field");
+      
+      VisibleField corner = new VisibleField(new MineField(new boolean[][] {{true, false}, {false, false}}));
+      corner.uncover(1, 1);
+      try {
+         MineProbabilityEstimator.Estimate estimate = new MineProbabilityEstimator(corner, 1).estimate(0.01, 2000);
+         for (int u = 0; u < estimate.numUnknown(); u++) {
+            System.out.println("probability of (" + estimate.row(u) + "," + estimate.col(u) + ") -- should be about 0.33 :"
+                               + estimate.probability(u) + " +- " + estimate.halfWidth(u));
+         }
+      }
+      catch (InterruptedException e) {
+         System.out.println("interrupted");
+      }
+   }
+   
+   
+   // Seeking a GameReplay to random moves of a recorded game gives the statuses and the number of mines left the game
+   // had after that move.
+   private static void testGameReplay() {
+      System.out.println(" Testing GameReplay -- seeking around a recorded game gives the same states as playing it");
+      
+      Random random = new Random(11);
+      MineField replayField = new MineField(16, 30, 99, 7);
+      replayField.populateMineField(8, 15);
+      GameRecording recording = new GameRecording(16, 30);
+      recording.setLayout(replayField);
+      VisibleField played = new VisibleField(replayField);
+      List<byte[]> states = new ArrayList<byte[]>();
+      List<Integer> minesLeft = new ArrayList<Integer>();
+      states.add(new byte[16 * 30]);
+      played.copyStatus(0, 0, 16, 30, states.get(0), 0);
+      minesLeft.add(played.numMinesLeft());
+      for (int move = 0; move < 400 && !played.isGameOver(); move++) {
+         int row = (move == 0) ? 8 : random.nextInt(16);
+         int col = (move == 0) ? 15 : random.nextInt(30);
+         if (random.nextInt(4) == 0) {
+            recording.addMove(GameRecording.CYCLE_GUESS, row, col, move * 10);
+            played.cycleGuess(row, col);
+         }
+         else if (played.getStatus(row, col) != VisibleField.MINE_GUESS && !played.isUncovered(row, col)
+                  && (!replayField.hasMine(row, col) || move > 300)) {     // lose near the end, if at all
+            recording.addMove(GameRecording.UNCOVER, row, col, move * 10);
+            played.uncover(row, col);
+         }
+         else {
+            continue;
+         }
+         states.add(new byte[16 * 30]);
+         played.copyStatus(0, 0, 16, 30, states.get(states.size() - 1), 0);
+         minesLeft.add(played.numMinesLeft());
+      }
+      GameReplay gameReplay = new GameReplay(recording, new VisibleField(recording.newMineField()), 8);
+      byte[] replayed = new byte[16 * 30];
+      boolean sameStates = true;
+      boolean sameMinesLeft = true;
+      for (int i = 0; i < 200; i++) {
+         int move = random.nextInt(recording.numMoves() + 1);
+         gameReplay.seek(move);
+         gameReplay.getVisibleField().copyStatus(0, 0, 16, 30, replayed, 0);
+         sameStates = sameStates && Arrays.equals(replayed, states.get(move));
+         sameMinesLeft = sameMinesLeft && gameReplay.getVisibleField().numMinesLeft() == minesLeft.get(move);
+      }
+      System.out.println(recording.numMoves() + " moves, seeks same as played -- should be true :" + sameStates);
+      System.out.println("mines left same as played -- should be true :" + sameMinesLeft);
+   }
+   
+   
+   // The block counts of a BoardSummary, kept up to date square by square with update() while a game is played,
+   // are the same as rebuilt from scratch and as counted from getStatus, at every level, and clear() on reset zeroes them.
+   private static void testBoardSummary() {
+      System.out.println(" Testing BoardSummary -- block counts kept up to date by update() same as counted, at every level");
+      
+      final VisibleField field = new VisibleField(new MineField(100, 75, 400, 12));
+      field.getMineField().populateMineField(50, 37);
+      final BoardSummary updated = new BoardSummary(field);
+      updated.rebuild();
+      field.addVisibleFieldListener(new VisibleFieldListener() {
+         public void squaresChanged(VisibleField changed, int[] squares, int[] oldStates, int[] newStates, int numChanged) {
+            for (int i = 0; i < numChanged; i++) {
+               updated.update(squares[i] / 75, squares[i] % 75, oldStates[i], newStates[i]);
+            }
+         }
+         public void gameOver(VisibleField changed, boolean won) { }
+         public void boardReset(VisibleField changed) {
+            updated.clear();
+         }
+      });
+      Random random = new Random(12);
+      field.uncover(50, 37);
+      for (int move = 0; move < 300 && !field.isGameOver(); move++) {
+         int row = random.nextInt(100);
+         int col = random.nextInt(75);
+         if (random.nextInt(2) == 0) {
+            field.cycleGuess(row, col);
+         }
+         else if (field.getStatus(row, col) != VisibleField.MINE_GUESS && !field.getMineField().hasMine(row, col)) {
+            field.uncover(row, col);
+         }
+      }
+      BoardSummary rebuilt = new BoardSummary(field);
+      rebuilt.rebuild();
+      
+      boolean sameCounts = true;
+      for (int level = BoardSummary.FIRST_LEVEL; level <= updated.topLevel(); level++) {
+         int side = 1 << level;
+         for (int blockRow = 0; blockRow * side < 100; blockRow++) {
+            for (int blockCol = 0; blockCol * side < 75; blockCol++) {
+               int squares = 0;
+               int uncovered = 0;
+               int flagged = 0;
+               for (int i = blockRow * side; i < Math.min(100, (blockRow + 1) * side); i++) {
+                  for (int j = blockCol * side; j < Math.min(75, (blockCol + 1) * side); j++) {
+                     squares++;
+                     uncovered += field.isUncovered(i, j) ? 1 : 0;
+                     flagged += (field.getStatus(i, j) == VisibleField.MINE_GUESS) ? 1 : 0;
+                  }
+               }
+               sameCounts = sameCounts && updated.squaresIn(level, blockRow, blockCol) == squares
+                            && updated.uncovered(level, blockRow, blockCol) == uncovered
+                            && updated.flagged(level, blockRow, blockCol) == flagged
+                            && rebuilt.uncovered(level, blockRow, blockCol) == uncovered
+                            && rebuilt.flagged(level, blockRow, blockCol) == flagged;
+            }
+         }
+      }
+      int top = updated.topLevel();
+      System.out.println("same counts -- should be true :" + (sameCounts && updated.squaresIn(top, 0, 0) == 100 * 75));
+      
+      field.resetGameDisplay();
+      boolean allZero = true;
+      for (int level = BoardSummary.FIRST_LEVEL; level <= top; level++) {
+         for (int blockRow = 0; blockRow << level < 100; blockRow++) {
+            for (int blockCol = 0; blockCol << level < 75; blockCol++) {
+               allZero = allZero && updated.uncovered(level, blockRow, blockCol) == 0
+                         && updated.flagged(level, blockRow, blockCol) == 0;
+            }
+         }
+      }
+      System.out.println("all counts zero after clear() on reset -- should be true :" + allZero);
+   }
+   
+   
+   // A RepaintScheduler repaints the changes of any number of moves once per frame, repaints the whole board instead
+   // when more than MAX_SQUARES_REPAINTED_SEPARATELY squares changed, and stops its timer when a frame has nothing to
+   // do.  Runs on the event dispatch thread, so the timer can't tick in between; the ticks are called directly.
+   private static void testRepaintScheduler() {
+      System.out.println(" Testing RepaintScheduler -- changes between two frames repainted once, many as the whole board");
+      
+      final int[] repaintsAll = new int[1];
+      final List<Integer> repainted = new ArrayList<Integer>();
+      final int[] repaintCalls = new int[1];
+      RepaintScheduler scheduler = new RepaintScheduler(new RepaintScheduler.Target() {
+         public void repaintAll() { repaintsAll[0]++; }
+         public void repaintSquares(int[] squares, int numSquares) {
+            repaintCalls[0]++;
+            for (int i = 0; i < numSquares; i++) {
+               repainted.add(squares[i]);
+            }
+         }
+      }, 60);
+      
+      for (int move = 0; move < 50; move++) {                       // 50 moves of 2 squares before the next frame
+         scheduler.squaresChanged(new int[] {2 * move, 2 * move + 1}, 2);
+      }
+      scheduler.actionPerformed(null);
+      boolean oneFrame = repaintCalls[0] == 1 && repaintsAll[0] == 0 && repainted.size() == 100
+                         && repainted.get(0) == 0 && repainted.get(99) == 99;
+      System.out.println("50 moves, 1 repaint of 100 squares -- should be true :" + oneFrame);
+      
+      for (int move = 0; move < RepaintScheduler.MAX_SQUARES_REPAINTED_SEPARATELY; move++) {
+         scheduler.squaresChanged(new int[] {move, move + 1}, 2);
+      }
+      scheduler.actionPerformed(null);
+      System.out.println("too many squares, 1 whole board repaint -- should be true :" 
+                         + (repaintsAll[0] == 1 && repaintCalls[0] == 1));
+      
+      boolean runningAfterFrame = scheduler.isRunning();
+      scheduler.actionPerformed(null);                              // nothing changed since the last frame
+      System.out.println("idle frame repaints nothing and stops the timer -- should be true :" 
+                         + (runningAfterFrame && !scheduler.isRunning() && repaintsAll[0] == 1 && repaintCalls[0] == 1));
+   }
+   
+   
+   // Boards from a BoardPool are consistent after the first click moves a mine, and the layouts are uniform.
+   private static void testBoardPool() {
+      System.out.println(" Testing BoardPool -- the first click is safe, and the counts are right after a mine moves");
+      
+      BoardPool pool = new BoardPool(30, 40, 300, 4, 1);
+      Random random = new Random(3);
+      boolean consistent = true;
+      for (int game = 0; game < 100; game++) {
+         BoardPool.Board board = pool.take();
+         MineField pooled = board.visibleField().getMineField();
+         int row = random.nextInt(30);
+         int col = random.nextInt(40);
+         board.firstClick(row, col);
+         boolean[][] layout = new boolean[30][40];
+         int numMines = 0;
+         for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 40; j++) {
+               layout[i][j] = pooled.hasMine(i, j);
+               numMines += layout[i][j] ? 1 : 0;
+            }
+         }
+         VisibleField expected = new VisibleField(new MineField(layout));
+         consistent = consistent && numMines == 300 && board.visibleField().uncover(row, col) && expected.uncover(row, col);
+         for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 40; j++) {
+               consistent = consistent && board.visibleField().getStatus(i, j) == expected.getStatus(i, j);
+            }
+         }
+      }
+      pool.shutdown();
+      System.out.println("same as a field made with the final layout -- should be true :" + consistent);
+      
+      System.out.println(" Testing BoardPool -- all 28 layouts of 2 mines on a 3 x 3 board, first click (0,0), equally likely");
+      
+      BoardPool small = new BoardPool(3, 3, 2, 8, 1);
+      Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+      int numBoards = 28 * 2000;
+      for (int game = 0; game < numBoards; game++) {
+         BoardPool.Board board = small.take();
+         board.firstClick(0, 0);
+         MineField pooled = board.visibleField().getMineField();
+         int layout = 0;
+         for (int square = 0; square < 9; square++) {
+            layout |= pooled.hasMine(square / 3, square % 3) ? 1 << square : 0;
+         }
+         Integer count = counts.get(layout);
+         counts.put(layout, (count == null) ? 1 : count + 1);
+      }
+      small.shutdown();
+      double chiSquare = 0;
+      for (int count : counts.values()) {
+         chiSquare += (count - 2000.0) * (count - 2000.0) / 2000.0;
+      }
+      // 27 degrees of freedom: a uniform pool is over 62 about once in 10000 runs
+      System.out.println(counts.size() + " layouts, chi-square " + Math.round(chiSquare) + " -- should be true :" 
+                         + (counts.size() == 28 && !counts.containsKey(1) && chiSquare < 62));
+   }
+   
+   
+   // A GameBoardPanel on pooled boards keeps the layout of a game in its recording after New Game swaps the board,
+   // and stops its pool when it's taken off the screen.  The first click counts once its first board is ready.
+   private static void testPooledPanelRecording() throws InterruptedException, InvocationTargetException {
+      System.out.println(" Testing GameBoardPanel with a BoardPool -- the recording keeps its layout after New Game");
+      
+      // the panel waits for its first board on a SwingWorker, which can only hand it over while the event dispatch
+      // thread is free, so each step runs on that thread from here
+      final GameBoardPanel[] panel = new GameBoardPanel[1];
+      final JComponent[] board = new JComponent[1];
+      final JButton[] newGame = new JButton[1];
+      SwingUtilities.invokeAndWait(new Runnable() {
+         public void run() {
+            panel[0] = new GameBoardPanel(1024, 1024, 2000);
+            Deque<Component> toVisit = new ArrayDeque<Component>();
+            toVisit.add(panel[0]);
+            while (!toVisit.isEmpty()) {
+               Component component = toVisit.remove();
+               if (component instanceof JViewport) {
+                  board[0] = (JComponent) ((JViewport) component).getView();
+               }
+               else if (component instanceof JButton && "new game".equals(((JButton) component).getToolTipText())) {
+                  newGame[0] = (JButton) component;
+               }
+               if (component instanceof Container) {
+                  toVisit.addAll(Arrays.asList(((Container) component).getComponents()));
+               }
+            }
+         }
+      });
+      
+      // clicks are ignored until the first board is ready, and the first one that isn't starts the recording
+      final boolean[] clicked = new boolean[1];
+      for (int wait = 0; wait < 200 && !clicked[0]; wait++) {
+         SwingUtilities.invokeAndWait(new Runnable() {
+            public void run() {
+               board[0].dispatchEvent(new MouseEvent(board[0], MouseEvent.MOUSE_PRESSED, System.currentTimeMillis(), 0,
+                                                     1, 1, 1, false, MouseEvent.BUTTON1));     // opens square (0,0)
+               clicked[0] = panel[0].getRecording() != null;
+            }
+         });
+         Thread.sleep(50);
+      }
+      
+      final MineField[] layouts = new MineField[2];
+      SwingUtilities.invokeAndWait(new Runnable() {
+         public void run() {
+            layouts[0] = panel[0].getRecording().newMineField();
+            newGame[0].doClick();
+            layouts[1] = panel[0].getRecording().newMineField();
+         }
+      });
+      MineField before = layouts[0];
+      MineField after = layouts[1];
+      boolean sameLayout = clicked[0] && !before.hasMine(0, 0);
+      for (int i = 0; i < 1024; i++) {
+         for (int j = 0; j < 1024; j++) {
+            sameLayout = sameLayout && before.hasMine(i, j) == after.hasMine(i, j);
+         }
+      }
+      System.out.println("same layout before and after New Game -- should be true :" + sameLayout);
+      
+      SwingUtilities.invokeAndWait(new Runnable() {
+         public void run() {
+            panel[0].removeNotify();
+         }
+      });
+      boolean stopped = false;
+      for (int wait = 0; wait < 100 && !stopped; wait++) {
+         stopped = true;
+         for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            stopped = stopped && !(thread.getName().startsWith("BoardPool") && thread.isAlive());
+         }
+         try {
+            Thread.sleep(50);
+         }
+         catch (InterruptedException e) {
+            break;
+         }
+      }
+      System.out.println("pool threads stopped by removeNotify -- should be true :" + stopped);
    }
 
 }
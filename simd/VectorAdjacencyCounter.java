@@ -0,0 +1,77 @@
+/**
+   VectorAdjacencyCounter
+      AdjacencyCounter.BEST when the jdk.incubator.vector module is present: the same vertical sum algorithm as
+      AdjacencyCounter.SCALAR, with each row done SPECIES.length() squares at a time.  The mine rows are loaded
+      straight from the boolean[] rows as masks.  unpackCounts masks SPECIES.length() cells at a time.
+
+      Kept out of the main directory so that "javac *.java" there builds without the incubator module; see
+      AdjacencyCounter for how to build and run with it.
+ */
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+final class VectorAdjacencyCounter implements AdjacencyCounter {
+
+   private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+   private static final byte ONE = 1;
+   private static final byte COUNT_MASK = (byte) MineField.COUNT_MASK;
+
+
+   public void count(boolean[][] mines, byte[] counts) {
+      int numRows = mines.length;
+      int numCols = mines[0].length;
+      byte[] columnSums = new byte[numCols + 2];           // vertical sum of column c at index c + 1
+      ByteVector zero = ByteVector.zero(SPECIES);
+      int vectorCols = SPECIES.loopBound(numCols);
+
+      for (int row = 0; row < numRows; row++) {
+         boolean[] above = (row > 0) ? mines[row - 1] : null;
+         boolean[] current = mines[row];
+         boolean[] below = (row < numRows - 1) ? mines[row + 1] : null;
+
+         int col = 0;
+         for (; col < vectorCols; col += SPECIES.length()) {
+            ByteVector sum = zero.add(ONE, VectorMask.fromArray(SPECIES, current, col));
+            if (above != null) {
+               sum = sum.add(ONE, VectorMask.fromArray(SPECIES, above, col));
+            }
+            if (below != null) {
+               sum = sum.add(ONE, VectorMask.fromArray(SPECIES, below, col));
+            }
+            sum.intoArray(columnSums, col + 1);
+         }
+         for (; col < numCols; col++) {
+            columnSums[col + 1] = (byte) ((above != null && above[col] ? 1 : 0) + (current[col] ? 1 : 0)
+                                          + (below != null && below[col] ? 1 : 0));
+         }
+
+         int rowStart = row * numCols;
+         col = 0;
+         for (; col < vectorCols; col += SPECIES.length()) {
+            ByteVector.fromArray(SPECIES, columnSums, col)
+                      .add(ByteVector.fromArray(SPECIES, columnSums, col + 1))
+                      .add(ByteVector.fromArray(SPECIES, columnSums, col + 2))
+                      .sub(ONE, VectorMask.fromArray(SPECIES, current, col))
+                      .intoArray(counts, rowStart + col);
+         }
+         for (; col < numCols; col++) {
+            counts[rowStart + col] = (byte) (columnSums[col] + columnSums[col + 1] + columnSums[col + 2]
+                                             - (current[col] ? 1 : 0));
+         }
+      }
+   }
+
+
+   public void unpackCounts(byte[] cells, byte[] counts, int from, int length) {
+      int i = from;
+      for (int end = from + SPECIES.loopBound(length); i < end; i += SPECIES.length()) {
+         ByteVector.fromArray(SPECIES, cells, i).and(COUNT_MASK).intoArray(counts, i);
+      }
+      for (; i < from + length; i++) {
+         counts[i] = (byte) (cells[i] & COUNT_MASK);
+      }
+   }
+
+}